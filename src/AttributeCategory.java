@@ -0,0 +1,55 @@
+/**
+ * The categorical attributes of a flower. The key is the category name used by
+ * FlowerAttributesCollector and in the attribute columns of FlowerMatrixBuilder; the aliases
+ * are the other spellings in use (SearchEngine and the CLI say "BloomSeasons").
+ */
+public enum AttributeCategory {
+    PLANT_TYPE("PlantType", true),
+    COLORS("Colors", true, "Color"),
+    BLOOMS_SEASONS("BloomsSeasons", true, "BloomSeasons"),
+    SUN_NEEDS("SunNeeds", true),
+    WATER_NEEDS("WaterNeeds", false),
+    MAINTENANCE("Maintenance", false);
+
+    private static final AttributeCategory[] VALUES = values(); // values() copies the array on every call
+
+    private final String key;
+    private final boolean multiValued;
+    private final String[] aliases;
+
+    AttributeCategory(String key, boolean multiValued, String... aliases) {
+        this.key = key;
+        this.multiValued = multiValued;
+        this.aliases = aliases;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    // true for list attributes (plant types, colors, ...), false for single values (water needs, maintenance)
+    public boolean isMultiValued() {
+        return multiValued;
+    }
+
+    /**
+     * Finds the category with the given key or alias, ignoring case. Allocates nothing.
+     * @return the category, or null if the key is unknown.
+     */
+    public static AttributeCategory fromKey(String key) {
+        if (key == null) {
+            return null;
+        }
+        for (AttributeCategory category : VALUES) {
+            if (category.key.equalsIgnoreCase(key)) {
+                return category;
+            }
+            for (String alias : category.aliases) {
+                if (alias.equalsIgnoreCase(key)) {
+                    return category;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,115 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * A process-wide dictionary that gives every (category, value) pair a small int id,
+ * so that a flower can keep its categorical attributes as int arrays instead of its own
+ * string lists. Ids are dense per category and never change once assigned.
+ * Values are stored exactly as given; callers normalize (lowercase, trim) before interning.
+ */
+public class AttributeDictionary {
+    private static final AttributeDictionary INSTANCE = new AttributeDictionary();
+
+    private final Vocabulary[] vocabularies;
+
+    private AttributeDictionary() {
+        vocabularies = new Vocabulary[AttributeCategory.values().length];
+        for (int i = 0; i < vocabularies.length; i++) {
+            vocabularies[i] = new Vocabulary();
+        }
+    }
+
+    public static AttributeDictionary getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the id of a value, assigning the next free id if the value is new.
+     */
+    public int intern(AttributeCategory category, String value) {
+        return vocabularies[category.ordinal()].intern(value);
+    }
+
+    public int[] internAll(AttributeCategory category, List<String> values) {
+        int[] ids = new int[values.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = intern(category, values.get(i));
+        }
+        return ids;
+    }
+
+    /**
+     * Looks up the id of a value without assigning one.
+     * @return the id, or -1 if the value has never been interned.
+     */
+    public int idOf(AttributeCategory category, String value) {
+        Integer id = vocabularies[category.ordinal()].ids.get(value);
+        return id == null ? -1 : id;
+    }
+
+    public String valueOf(AttributeCategory category, int id) {
+        return vocabularies[category.ordinal()].values[id];
+    }
+
+    // number of distinct values seen so far in the category
+    public int size(AttributeCategory category) {
+        return vocabularies[category.ordinal()].ids.size();
+    }
+
+    /**
+     * A read-only list view that decodes the ids on access.
+     */
+    public List<String> asList(AttributeCategory category, int[] ids) {
+        return new ValueList(vocabularies[category.ordinal()], ids);
+    }
+
+    private static class Vocabulary {
+        final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+        volatile String[] values = new String[16];
+
+        int intern(String value) {
+            Integer id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+            synchronized (this) {
+                id = ids.get(value);
+                if (id == null) {
+                    id = ids.size();
+                    String[] current = values;
+                    if (id == current.length) {
+                        current = Arrays.copyOf(current, current.length * 2);
+                    }
+                    current[id] = value;
+                    values = current;
+                    // published after the value, so whoever reads the id can also read the value
+                    ids.put(value, id);
+                }
+                return id;
+            }
+        }
+    }
+
+    private static class ValueList extends AbstractList<String> implements RandomAccess {
+        private final Vocabulary vocabulary;
+        private final int[] ids;
+
+        ValueList(Vocabulary vocabulary, int[] ids) {
+            this.vocabulary = vocabulary;
+            this.ids = ids;
+        }
+
+        @Override
+        public String get(int index) {
+            return vocabulary.values[ids[index]];
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+import java.util.Arrays;
+
+/**
+ * A 0/1 feature matrix with one bit per attribute: every row (flower) is a run of longs in one
+ * flat long[], so a 100k x 400 matrix takes 5 MB instead of the 160 MB of an int[][].
+ * Dot products, norms and Jaccard similarity are popcounts over the AND / OR of two rows.
+ * The dense int[][] and double[][] forms are only built when a consumer asks for them.
+ */
+public class BitFeatureMatrix {
+    private final int rows;
+    private final int columns;
+    private final int wordsPerRow;
+    private final long[] bits;
+
+    public BitFeatureMatrix(int rows, int columns) {
+        if (rows < 0 || columns < 0) {
+            throw new IllegalArgumentException("Negative matrix size " + rows + "x" + columns);
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.wordsPerRow = (columns + 63) >>> 6;
+        this.bits = new long[rows * wordsPerRow];
+    }
+
+    /**
+     * Packs a dense matrix; every non-zero entry becomes a set bit.
+     */
+    public static BitFeatureMatrix fromIntMatrix(int[][] matrix) {
+        BitFeatureMatrix packed = new BitFeatureMatrix(matrix.length, matrix.length == 0 ? 0 : matrix[0].length);
+        for (int row = 0; row < matrix.length; row++) {
+            if (matrix[row].length != packed.columns) {
+                throw new IllegalArgumentException("Row " + row + " has " + matrix[row].length + " columns, expected " + packed.columns);
+            }
+            for (int column = 0; column < packed.columns; column++) {
+                if (matrix[row][column] != 0) {
+                    packed.set(row, column);
+                }
+            }
+        }
+        return packed;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    public void set(int row, int column) {
+        checkColumn(column);
+        bits[row * wordsPerRow + (column >>> 6)] |= 1L << column;
+    }
+
+    public void clear(int row, int column) {
+        checkColumn(column);
+        bits[row * wordsPerRow + (column >>> 6)] &= ~(1L << column);
+    }
+
+    public boolean get(int row, int column) {
+        checkColumn(column);
+        return (bits[row * wordsPerRow + (column >>> 6)] & (1L << column)) != 0;
+    }
+
+    private void checkColumn(int column) {
+        if (column < 0 || column >= columns) {
+            throw new IndexOutOfBoundsException("Column " + column + " of " + columns);
+        }
+    }
+
+    /**
+     * The number of set bits of a row, which is also its squared Euclidean norm.
+     */
+    public int cardinality(int row) {
+        int count = 0;
+        for (int w = row * wordsPerRow, end = w + wordsPerRow; w < end; w++) {
+            count += Long.bitCount(bits[w]);
+        }
+        return count;
+    }
+
+    public double norm(int row) {
+        return Math.sqrt(cardinality(row));
+    }
+
+    /**
+     * The dot product of two rows: the number of attributes both have.
+     */
+    public int dot(int rowA, int rowB) {
+        int count = 0;
+        int a = rowA * wordsPerRow;
+        int b = rowB * wordsPerRow;
+        for (int w = 0; w < wordsPerRow; w++) {
+            count += Long.bitCount(bits[a + w] & bits[b + w]);
+        }
+        return count;
+    }
+
+    /**
+     * Cosine similarity of two rows, 0 if either has no attribute.
+     */
+    public double cosine(int rowA, int rowB) {
+        int cardinalityA = cardinality(rowA);
+        int cardinalityB = cardinality(rowB);
+        if (cardinalityA == 0 || cardinalityB == 0) {
+            return 0;
+        }
+        return dot(rowA, rowB) / Math.sqrt((double) cardinalityA * cardinalityB);
+    }
+
+    /**
+     * Jaccard similarity of two rows, |A and B| / |A or B|; 0 if neither has an attribute.
+     */
+    public double jaccard(int rowA, int rowB) {
+        int both = 0;
+        int either = 0;
+        int a = rowA * wordsPerRow;
+        int b = rowB * wordsPerRow;
+        for (int w = 0; w < wordsPerRow; w++) {
+            both += Long.bitCount(bits[a + w] & bits[b + w]);
+            either += Long.bitCount(bits[a + w] | bits[b + w]);
+        }
+        return either == 0 ? 0 : (double) both / either;
+    }
+
+    /**
+     * A copy of the packed words of a row; bit c of the row is bit (c % 64) of word c / 64.
+     */
+    public long[] row(int row) {
+        return Arrays.copyOfRange(bits, row * wordsPerRow, (row + 1) * wordsPerRow);
+    }
+
+    /**
+     * The set columns of a row in ascending order, the row as a feature set.
+     */
+    public int[] columnsOf(int row) {
+        int[] columns = new int[cardinality(row)];
+        int n = 0;
+        for (int column = nextSetBit(row, 0); column >= 0; column = nextSetBit(row, column + 1)) {
+            columns[n++] = column;
+        }
+        return columns;
+    }
+
+    public int[][] toIntMatrix() {
+        int[][] dense = new int[rows][columns];
+        for (int row = 0; row < rows; row++) {
+            for (int column = nextSetBit(row, 0); column >= 0; column = nextSetBit(row, column + 1)) {
+                dense[row][column] = 1;
+            }
+        }
+        return dense;
+    }
+
+    public double[][] toDoubleMatrix() {
+        double[][] dense = new double[rows][columns];
+        for (int row = 0; row < rows; row++) {
+            for (int column = nextSetBit(row, 0); column >= 0; column = nextSetBit(row, column + 1)) {
+                dense[row][column] = 1.0;
+            }
+        }
+        return dense;
+    }
+
+    // the first set column of a row at or after from, -1 if there is none
+    public int nextSetBit(int row, int from) {
+        if (from >= columns) {
+            return -1;
+        }
+        int base = row * wordsPerRow;
+        int w = from >>> 6;
+        long word = bits[base + w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == wordsPerRow) {
+                return -1;
+            }
+            word = bits[base + w];
+        }
+    }
+
+    // bytes held by the packed bits
+    public long sizeInBytes() {
+        return 8L * bits.length;
+    }
+}
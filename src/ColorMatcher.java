@@ -0,0 +1,228 @@
+import java.util.*;
+
+/**
+ * An immutable trie over the color vocabulary, used to pull standard color names out of
+ * free-text color descriptions. Terms are matched on whole words, case-insensitively, and
+ * may span several words ("navy blue"); the longest term starting at a word wins.
+ * A description is scanned once, without regexes, and nothing but the result list is allocated.
+ */
+public class ColorMatcher {
+    // symbols 0-25 are 'a'-'z', SEPARATOR stands for any run of non-word characters
+    private static final int SEPARATOR = 26;
+    private static final int ALPHABET = 27;
+    private static final int ROOT = 0;
+
+    public static final ColorMatcher DEFAULT = new ColorMatcher(defaultVocabulary());
+
+    private final int[] transitions; // transitions[node * ALPHABET + symbol], -1 if absent
+    private final String[] outputs;  // standard color for a node that ends a term, otherwise null
+
+    /**
+     * Builds a matcher from a map of color terms to the standard color they stand for.
+     */
+    public ColorMatcher(Map<String, String> vocabulary) {
+        List<int[]> nodes = new ArrayList<>();
+        List<String> nodeOutputs = new ArrayList<>();
+        nodes.add(newNode());
+        nodeOutputs.add(null);
+
+        for (Map.Entry<String, String> term : vocabulary.entrySet()) {
+            int node = ROOT;
+            String key = term.getKey().toLowerCase().trim();
+            boolean pendingSeparator = false;
+            for (int i = 0; i < key.length(); i++) {
+                char c = key.charAt(i);
+                if (!isWordChar(c)) {
+                    pendingSeparator = true;
+                    continue;
+                }
+                if (c < 'a' || c > 'z') {
+                    throw new IllegalArgumentException("Color terms may only contain letters: " + term.getKey());
+                }
+                if (pendingSeparator) {
+                    node = child(nodes, nodeOutputs, node, SEPARATOR);
+                    pendingSeparator = false;
+                }
+                node = child(nodes, nodeOutputs, node, c - 'a');
+            }
+            if (node != ROOT) {
+                nodeOutputs.set(node, term.getValue());
+            }
+        }
+
+        this.transitions = new int[nodes.size() * ALPHABET];
+        for (int i = 0; i < nodes.size(); i++) {
+            System.arraycopy(nodes.get(i), 0, transitions, i * ALPHABET, ALPHABET);
+        }
+        this.outputs = nodeOutputs.toArray(new String[0]);
+    }
+
+    /**
+     * Extracts the standard color of every color term in the description, in order of appearance.
+     */
+    public List<String> extract(CharSequence description) {
+        List<String> colors = new ArrayList<>();
+        int length = description.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !isWordChar(description.charAt(i))) {
+                i++;
+            }
+            if (i == length) {
+                break;
+            }
+
+            // walk the trie from this word start, remembering the longest complete term
+            String match = null;
+            int matchEnd = -1;
+            int node = ROOT;
+            int pos = i;
+            while (pos < length && node >= 0) {
+                char c = Character.toLowerCase(description.charAt(pos));
+                if (isWordChar(c)) {
+                    node = c >= 'a' && c <= 'z' ? transitions[node * ALPHABET + (c - 'a')] : -1;
+                    pos++;
+                    boolean wordEnds = pos == length || !isWordChar(description.charAt(pos));
+                    if (node >= 0 && wordEnds && outputs[node] != null) {
+                        match = outputs[node];
+                        matchEnd = pos;
+                    }
+                } else {
+                    node = transitions[node * ALPHABET + SEPARATOR];
+                    while (pos < length && !isWordChar(description.charAt(pos))) {
+                        pos++;
+                    }
+                }
+            }
+
+            if (match != null) {
+                colors.add(match);
+                i = matchEnd;
+            } else {
+                while (i < length && isWordChar(description.charAt(i))) {
+                    i++;
+                }
+            }
+        }
+        return colors;
+    }
+
+    // same notion of a word as the old [^a-z0-9\s] split: ASCII letters and digits
+    private static boolean isWordChar(char c) {
+        char lower = Character.toLowerCase(c);
+        return (lower >= 'a' && lower <= 'z') || (lower >= '0' && lower <= '9');
+    }
+
+    private static int[] newNode() {
+        int[] node = new int[ALPHABET];
+        Arrays.fill(node, -1);
+        return node;
+    }
+
+    private static int child(List<int[]> nodes, List<String> nodeOutputs, int node, int symbol) {
+        int next = nodes.get(node)[symbol];
+        if (next < 0) {
+            next = nodes.size();
+            nodes.get(node)[symbol] = next;
+            nodes.add(newNode());
+            nodeOutputs.add(null);
+        }
+        return next;
+    }
+
+    /*
+     * Maps similar color terms to standard color names.
+     */
+    private static Map<String, String> defaultVocabulary() {
+        Map<String, String> colorMap = new HashMap<>();
+        colorMap.put("red", "red");
+        colorMap.put("scarlet", "red");
+        colorMap.put("rose", "red");
+        colorMap.put("crimson", "red");
+        colorMap.put("maroon", "red");
+        colorMap.put("ruby", "red");
+        colorMap.put("rust", "red");
+        colorMap.put("burgundy", "red");
+        colorMap.put("raspberry", "red");
+        colorMap.put("brick red", "red");
+        colorMap.put("wine red", "red");
+
+        colorMap.put("purple", "purple");
+        colorMap.put("plum", "purple");
+        colorMap.put("violet", "purple");
+        colorMap.put("lavender", "purple");
+        colorMap.put("lilac", "purple");
+        colorMap.put("mauve", "purple");
+        colorMap.put("amethyst", "purple");
+
+        colorMap.put("pink", "pink");
+        colorMap.put("fuchsia", "pink");
+        colorMap.put("salmon", "pink");
+        colorMap.put("peach", "pink");
+        colorMap.put("coral", "pink");
+        colorMap.put("magenta", "pink");
+        colorMap.put("hot pink", "pink");
+
+        colorMap.put("blue", "blue");
+        colorMap.put("teal", "blue");
+        colorMap.put("cyan", "blue");
+        colorMap.put("cerulean", "blue");
+        colorMap.put("azure", "blue");
+        colorMap.put("aqua", "blue");
+        colorMap.put("turquoise", "blue");
+        colorMap.put("cobalt", "blue");
+        colorMap.put("sapphire", "blue");
+        colorMap.put("indigo", "blue");
+        colorMap.put("aquamarine", "blue");
+        colorMap.put("navy", "blue");
+        colorMap.put("denim", "blue");
+        colorMap.put("navy blue", "blue");
+        colorMap.put("sky blue", "blue");
+        colorMap.put("royal blue", "blue");
+
+        colorMap.put("green", "green");
+        colorMap.put("peridot", "green");
+        colorMap.put("emerald", "green");
+        colorMap.put("jade", "green");
+        colorMap.put("olive", "green");
+        colorMap.put("lime", "green");
+        colorMap.put("lime green", "green");
+
+        colorMap.put("ochre", "yellow");
+        colorMap.put("yellow", "yellow");
+        colorMap.put("khaki", "yellow");
+        colorMap.put("golden", "yellow");
+        colorMap.put("mustard", "yellow");
+        colorMap.put("golden yellow", "yellow");
+        colorMap.put("lemon yellow", "yellow");
+
+        colorMap.put("orange", "orange");
+        colorMap.put("amber", "orange");
+        colorMap.put("saffron", "orange");
+        colorMap.put("copper", "orange");
+        colorMap.put("bronze", "orange");
+        colorMap.put("burnt orange", "orange");
+
+        colorMap.put("brown", "brown");
+        colorMap.put("beige", "brown");
+        colorMap.put("chocolate", "brown");
+        colorMap.put("tan", "brown");
+        colorMap.put("sepia", "brown");
+
+        colorMap.put("white", "white");
+        colorMap.put("ivory", "white");
+        colorMap.put("cream", "white");
+        colorMap.put("off white", "white");
+
+        colorMap.put("grey", "grey");
+        colorMap.put("silver", "grey");
+        colorMap.put("charcoal", "grey");
+
+        colorMap.put("black", "black");
+        colorMap.put("jet black", "black");
+
+        // a known color that has no standard name of its own
+        colorMap.put("gold", "gold");
+        return colorMap;
+    }
+}
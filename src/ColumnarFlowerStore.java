@@ -0,0 +1,508 @@
+import java.util.*;
+
+/*
+ * A struct-of-arrays alternative to FlowerDatabase. Every flower gets a dense ordinal and each
+ * attribute lives in its own column indexed by that ordinal:
+ *   - minZone / maxZone as int[], height and soil pH ranges as four doubles per flower
+ *   - one packed bitset column per AttributeCategory (bit = dictionary id), so "does flower i
+ *     have value v" is a single word test and a scan over all flowers is a sequential walk
+ *   - name, color text and aliases as offsets into one shared char pool
+ *   - descriptions off-heap in a DescriptionStore, one handle per flower
+ *   - the attribute ids in their original order in a shared int pool, for the list getters
+ * Callers still get Flower objects, as read-only views that decode from the columns.
+ * Deleted flowers are tombstoned; their ordinals and pool space are not reused.
+ */
+public class ColumnarFlowerStore implements IFlowerDatabase {
+    private static final AttributeDictionary DICTIONARY = AttributeDictionary.getInstance();
+    private static final AttributeCategory[] CATEGORIES = AttributeCategory.values();
+
+    // string fields, two ints (offset, length) each in stringRefs; length -1 means null
+    private static final int NAME = 0;
+    private static final int COLORS = 1;
+    private static final int ALIASES = 2; // aliases joined with ALIAS_SEPARATOR
+    private static final int STRING_FIELDS = 3;
+    private static final char ALIAS_SEPARATOR = '\u001F';
+    private static final int MEASURES = 4;
+
+    private int count; // ordinals handed out, including deleted ones
+    private int liveCount;
+    private final BitSet live = new BitSet();
+
+    private int[] minZone = new int[16];
+    private int[] maxZone = new int[16];
+    private double[] measures = new double[16 * MEASURES]; // min/max height, min/max soil pH
+    private final long[][] attributeBits = new long[CATEGORIES.length][];
+    private final int[] wordsPerFlower = new int[CATEGORIES.length];
+
+    private char[] charPool = new char[1024];
+    private int charCount;
+    private int[] stringRefs = new int[16 * STRING_FIELDS * 2];
+    private final DescriptionStore descriptions = new DescriptionStore(false);
+    private long[] descHandles = new long[16];
+
+    private int[] idPool = new int[256];
+    private int idCount;
+    private int[] idRefs = new int[16 * CATEGORIES.length * 2];
+
+    private final Map<String, Integer> nameToOrdinal = new HashMap<>(); // primary names and aliases
+    private Flower[] views = new Flower[16];
+    private final FlowerChangeNotifier notifier = new FlowerChangeNotifier();
+
+    public ColumnarFlowerStore() {
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            wordsPerFlower[c] = 1;
+            attributeBits[c] = new long[minZone.length];
+        }
+    }
+
+    /**
+     * Copies every flower of an existing database into a new columnar store.
+     */
+    public static ColumnarFlowerStore copyOf(IFlowerDatabase database) {
+        ColumnarFlowerStore store = new ColumnarFlowerStore();
+        for (Map.Entry<String, Flower> entry : database.getFlowersMap().entrySet()) {
+            Flower flower = entry.getValue();
+            store.addFlower(entry.getKey(), flower.getAlias() == null ? Collections.emptyList() : flower.getAlias(), flower);
+        }
+        return store;
+    }
+
+    @Override
+    public void loadFlowersFromCSV(String filepath) {
+        // parse with the regular loader, then move the flowers into columns
+        FlowerDatabase staging = new FlowerDatabase();
+        staging.loadFlowersFromCSV(filepath);
+        batchUpdate(() -> {
+            for (Map.Entry<String, Flower> entry : staging.getFlowersMap().entrySet()) {
+                addFlower(entry.getKey(), entry.getValue().getAlias(), entry.getValue());
+            }
+        });
+    }
+
+    @Override
+    public void addFlower(String primaryName, List<String> aliases, Flower flower) {
+        primaryName = primaryName.toLowerCase();
+        Integer existing = nameToOrdinal.get(primaryName);
+        Flower replaced = null;
+        if (existing != null && primaryName.equals(getString(existing, NAME))) {
+            replaced = tombstone(existing); // replacing a flower tombstones its old row
+        }
+
+        int ordinal = count++;
+        ensureCapacity(count);
+        minZone[ordinal] = flower.getMinZone();
+        maxZone[ordinal] = flower.getMaxZone();
+        measures[ordinal * MEASURES] = flower.getMinHeightCm();
+        measures[ordinal * MEASURES + 1] = flower.getMaxHeightCm();
+        measures[ordinal * MEASURES + 2] = flower.getMinSoilPh();
+        measures[ordinal * MEASURES + 3] = flower.getMaxSoilPh();
+
+        List<String> normalizedAliases = new ArrayList<>();
+        for (String alias : aliases) {
+            normalizedAliases.add(alias.toLowerCase());
+        }
+        setString(ordinal, NAME, primaryName);
+        descHandles[ordinal] = descriptions.put(flower.getDesc());
+        setString(ordinal, COLORS, flower.getColors());
+        setString(ordinal, ALIASES, String.join(String.valueOf(ALIAS_SEPARATOR), normalizedAliases));
+
+        for (AttributeCategory category : CATEGORIES) {
+            setAttributeIds(ordinal, category, flower.getAttributeIds(category));
+        }
+
+        live.set(ordinal);
+        liveCount++;
+        nameToOrdinal.put(primaryName, ordinal);
+        for (String alias : normalizedAliases) {
+            nameToOrdinal.put(alias, ordinal);
+        }
+        Flower added = getFlower(ordinal);
+        notifier.fire(replaced == null ? FlowerChange.added(added) : FlowerChange.replaced(replaced, added));
+    }
+
+    @Override
+    public void deleteFlower(String name) {
+        Integer ordinal = nameToOrdinal.get(name.toLowerCase());
+        if (ordinal == null) {
+            return;
+        }
+        notifier.fire(FlowerChange.removed(tombstone(ordinal)));
+    }
+
+    // returns the view listeners knew the flower by; it keeps reading the (retained) columns
+    private Flower tombstone(int ordinal) {
+        Flower view = getFlower(ordinal);
+        // names may have been taken over by a newer flower since, only drop our own mappings
+        nameToOrdinal.remove(getString(ordinal, NAME), ordinal);
+        for (String alias : getAliases(ordinal)) {
+            nameToOrdinal.remove(alias, ordinal);
+        }
+        live.clear(ordinal);
+        liveCount--;
+        views[ordinal] = null;
+        return view;
+    }
+
+    @Override
+    public void addListener(IFlowerDatabaseListener listener) {
+        notifier.addListener(listener);
+    }
+
+    @Override
+    public void removeListener(IFlowerDatabaseListener listener) {
+        notifier.removeListener(listener);
+    }
+
+    @Override
+    public void batchUpdate(Runnable edits) {
+        notifier.batch(edits);
+    }
+
+    @Override
+    public boolean hasFlower(String name) {
+        return nameToOrdinal.containsKey(name.toLowerCase());
+    }
+
+    @Override
+    public Flower getFlower(String name) {
+        Integer ordinal = nameToOrdinal.get(name.toLowerCase());
+        return ordinal == null ? null : getFlower(ordinal);
+    }
+
+    /**
+     * Returns the view of the flower with the given ordinal, or null if it was deleted.
+     */
+    public Flower getFlower(int ordinal) {
+        if (!isLive(ordinal)) {
+            return null;
+        }
+        Flower view = views[ordinal];
+        if (view == null) {
+            view = new ColumnFlower(ordinal);
+            views[ordinal] = view;
+        }
+        return view;
+    }
+
+    /**
+     * A read-only map from primary names to flower views, backed by the columns.
+     */
+    @Override
+    public Map<String, Flower> getFlowersMap() {
+        return new AbstractMap<String, Flower>() {
+            @Override
+            public Set<Entry<String, Flower>> entrySet() {
+                return new AbstractSet<Entry<String, Flower>>() {
+                    @Override
+                    public Iterator<Entry<String, Flower>> iterator() {
+                        return new Iterator<Entry<String, Flower>>() {
+                            private int next = live.nextSetBit(0);
+
+                            @Override
+                            public boolean hasNext() {
+                                return next >= 0;
+                            }
+
+                            @Override
+                            public Entry<String, Flower> next() {
+                                if (next < 0) {
+                                    throw new NoSuchElementException();
+                                }
+                                int ordinal = next;
+                                next = live.nextSetBit(ordinal + 1);
+                                return new AbstractMap.SimpleImmutableEntry<>(getString(ordinal, NAME), getFlower(ordinal));
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return liveCount;
+                    }
+                };
+            }
+
+            @Override
+            public Flower get(Object key) {
+                Integer ordinal = nameToOrdinal.get(key);
+                return ordinal != null && getString(ordinal, NAME).equals(key) ? getFlower(ordinal) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return get(key) != null;
+            }
+        };
+    }
+
+    ///////////////////////////////////////////////////////////////
+    //                    Column access and scans                //
+    ///////////////////////////////////////////////////////////////
+
+    // number of ordinals handed out so far; valid ordinals are [0, ordinalCount())
+    public int ordinalCount() {
+        return count;
+    }
+
+    public int size() {
+        return liveCount;
+    }
+
+    public boolean isLive(int ordinal) {
+        return ordinal >= 0 && ordinal < count && live.get(ordinal);
+    }
+
+    public int getMinZone(int ordinal) {
+        return minZone[ordinal];
+    }
+
+    public int getMaxZone(int ordinal) {
+        return maxZone[ordinal];
+    }
+
+    public boolean hasAttribute(int ordinal, AttributeCategory category, int id) {
+        int c = category.ordinal();
+        if (id < 0 || id >= wordsPerFlower[c] * 64) {
+            return false;
+        }
+        return (attributeBits[c][ordinal * wordsPerFlower[c] + (id >>> 6)] & (1L << id)) != 0;
+    }
+
+    /**
+     * Collects the ordinals of all live flowers that have the given value, walking the
+     * category's bit column from start to end.
+     */
+    public BitSet scanAttribute(AttributeCategory category, String value) {
+        BitSet matches = new BitSet(count);
+        int id = DICTIONARY.idOf(category, value);
+        int c = category.ordinal();
+        if (id < 0 || id >= wordsPerFlower[c] * 64) {
+            return matches;
+        }
+        long[] column = attributeBits[c];
+        int stride = wordsPerFlower[c];
+        long mask = 1L << id;
+        for (int ordinal = 0, word = id >>> 6; ordinal < count; ordinal++, word += stride) {
+            if ((column[word] & mask) != 0) {
+                matches.set(ordinal);
+            }
+        }
+        matches.and(live);
+        return matches;
+    }
+
+    /**
+     * Collects the ordinals of all live flowers that can grow in the given zone.
+     */
+    public BitSet scanZone(int zone) {
+        BitSet matches = new BitSet(count);
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            if (minZone[ordinal] <= zone && zone <= maxZone[ordinal]) {
+                matches.set(ordinal);
+            }
+        }
+        matches.and(live);
+        return matches;
+    }
+
+    ///////////////////////////////////////////////////////////////
+    //                    Column maintenance                     //
+    ///////////////////////////////////////////////////////////////
+
+    private void ensureCapacity(int flowers) {
+        if (flowers <= minZone.length) {
+            return;
+        }
+        int capacity = Math.max(flowers, minZone.length + (minZone.length >> 1));
+        minZone = Arrays.copyOf(minZone, capacity);
+        maxZone = Arrays.copyOf(maxZone, capacity);
+        measures = Arrays.copyOf(measures, capacity * MEASURES);
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            attributeBits[c] = Arrays.copyOf(attributeBits[c], capacity * wordsPerFlower[c]);
+        }
+        stringRefs = Arrays.copyOf(stringRefs, capacity * STRING_FIELDS * 2);
+        descHandles = Arrays.copyOf(descHandles, capacity);
+        idRefs = Arrays.copyOf(idRefs, capacity * CATEGORIES.length * 2);
+        views = Arrays.copyOf(views, capacity);
+    }
+
+    private void setString(int ordinal, int field, String value) {
+        int ref = (ordinal * STRING_FIELDS + field) * 2;
+        if (value == null) {
+            stringRefs[ref] = 0;
+            stringRefs[ref + 1] = -1;
+            return;
+        }
+        if (charCount + value.length() > charPool.length) {
+            charPool = Arrays.copyOf(charPool, Math.max(charCount + value.length(), charPool.length * 2));
+        }
+        value.getChars(0, value.length(), charPool, charCount);
+        stringRefs[ref] = charCount;
+        stringRefs[ref + 1] = value.length();
+        charCount += value.length();
+    }
+
+    private String getString(int ordinal, int field) {
+        int ref = (ordinal * STRING_FIELDS + field) * 2;
+        int length = stringRefs[ref + 1];
+        return length < 0 ? null : new String(charPool, stringRefs[ref], length);
+    }
+
+    private List<String> getAliases(int ordinal) {
+        String joined = getString(ordinal, ALIASES);
+        if (joined.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(joined.split(String.valueOf(ALIAS_SEPARATOR))));
+    }
+
+    private void setAttributeIds(int ordinal, AttributeCategory category, int[] ids) {
+        int ref = (ordinal * CATEGORIES.length + category.ordinal()) * 2;
+        if (ids == null) {
+            idRefs[ref] = 0;
+            idRefs[ref + 1] = -1;
+            return;
+        }
+        if (idCount + ids.length > idPool.length) {
+            idPool = Arrays.copyOf(idPool, Math.max(idCount + ids.length, idPool.length * 2));
+        }
+        System.arraycopy(ids, 0, idPool, idCount, ids.length);
+        idRefs[ref] = idCount;
+        idRefs[ref + 1] = ids.length;
+        idCount += ids.length;
+
+        int c = category.ordinal();
+        for (int id : ids) {
+            if (id >= wordsPerFlower[c] * 64) {
+                widen(c, id / 64 + 1);
+            }
+            attributeBits[c][ordinal * wordsPerFlower[c] + (id >>> 6)] |= 1L << id;
+        }
+    }
+
+    private int[] readAttributeIds(int ordinal, AttributeCategory category) {
+        int ref = (ordinal * CATEGORIES.length + category.ordinal()) * 2;
+        int length = idRefs[ref + 1];
+        return length < 0 ? null : Arrays.copyOfRange(idPool, idRefs[ref], idRefs[ref] + length);
+    }
+
+    // re-packs a category's column when the dictionary outgrows its words per flower
+    private void widen(int c, int words) {
+        int oldWords = wordsPerFlower[c];
+        long[] old = attributeBits[c];
+        long[] widened = new long[minZone.length * words];
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            System.arraycopy(old, ordinal * oldWords, widened, ordinal * words, oldWords);
+        }
+        attributeBits[c] = widened;
+        wordsPerFlower[c] = words;
+    }
+
+    /**
+     * A flower that reads every field from the store's columns.
+     */
+    private class ColumnFlower extends ReadOnlyFlower {
+        private final int ordinal;
+
+        ColumnFlower(int ordinal) {
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        public String getPrimaryName() {
+            return getString(ordinal, NAME);
+        }
+
+        @Override
+        public List<String> getAlias() {
+            return getAliases(ordinal);
+        }
+
+        @Override
+        public String getDesc() {
+            return descriptions.get(descHandles[ordinal]);
+        }
+
+        @Override
+        public String getColors() {
+            return getString(ordinal, COLORS);
+        }
+
+        @Override
+        public int getMinZone() {
+            return minZone[ordinal];
+        }
+
+        @Override
+        public int getMaxZone() {
+            return maxZone[ordinal];
+        }
+
+        @Override
+        public double getMinHeightCm() {
+            return measures[ordinal * MEASURES];
+        }
+
+        @Override
+        public double getMaxHeightCm() {
+            return measures[ordinal * MEASURES + 1];
+        }
+
+        @Override
+        public double getMinSoilPh() {
+            return measures[ordinal * MEASURES + 2];
+        }
+
+        @Override
+        public double getMaxSoilPh() {
+            return measures[ordinal * MEASURES + 3];
+        }
+
+        @Override
+        public List<String> getPlantTypes() {
+            return values(AttributeCategory.PLANT_TYPE);
+        }
+
+        @Override
+        public List<String> getColorList() {
+            return values(AttributeCategory.COLORS);
+        }
+
+        @Override
+        public List<String> getBloomsSeasons() {
+            return values(AttributeCategory.BLOOMS_SEASONS);
+        }
+
+        @Override
+        public List<String> getSunNeeds() {
+            return values(AttributeCategory.SUN_NEEDS);
+        }
+
+        @Override
+        public String getWaterNeeds() {
+            int[] ids = readAttributeIds(ordinal, AttributeCategory.WATER_NEEDS);
+            return ids == null ? null : DICTIONARY.valueOf(AttributeCategory.WATER_NEEDS, ids[0]);
+        }
+
+        @Override
+        public String getMaintenance() {
+            int[] ids = readAttributeIds(ordinal, AttributeCategory.MAINTENANCE);
+            return ids == null ? null : DICTIONARY.valueOf(AttributeCategory.MAINTENANCE, ids[0]);
+        }
+
+        @Override
+        public int[] getAttributeIds(AttributeCategory category) {
+            return readAttributeIds(ordinal, category);
+        }
+
+        @Override
+        public boolean hasAttribute(AttributeCategory category, int id) {
+            return ColumnarFlowerStore.this.hasAttribute(ordinal, category, id);
+        }
+
+        private List<String> values(AttributeCategory category) {
+            int[] ids = readAttributeIds(ordinal, category);
+            return ids == null ? null : DICTIONARY.asList(category, ids);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * A symmetric N x N matrix with a zero diagonal, stored as its upper triangle in one float[]
+ * of N(N-1)/2 cells: a quarter of the memory of the double[N][N] that
+ * CosineSimilarityCalculator.calculateCosineSimilarityMatrix returns. Holds the same values,
+ * 1 - cosine similarity for every pair of rows.
+ * Row by row the cells are (0,1) (0,2) ... (0,N-1) (1,2) ... (N-2,N-1).
+ */
+public class CondensedSimilarityMatrix {
+    // the largest array the JVM reliably allocates
+    private static final long MAX_CELLS = Integer.MAX_VALUE - 8;
+
+    private final int size;
+    private final float[] values;
+
+    public CondensedSimilarityMatrix(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative size " + size);
+        }
+        long cells = cells(size);
+        if (cells > MAX_CELLS) {
+            throw new IllegalArgumentException(size + " rows need " + cells + " cells, more than one array holds");
+        }
+        this.size = size;
+        this.values = new float[(int) cells];
+    }
+
+    // number of cells of the upper triangle of a size x size matrix
+    public static long cells(int size) {
+        return (long) size * (size - 1) / 2;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public float get(int i, int j) {
+        if (i == j) {
+            checkRow(i);
+            return 0;
+        }
+        return values[index(Math.min(i, j), Math.max(i, j))];
+    }
+
+    public void set(int i, int j, float value) {
+        if (i == j) {
+            throw new IllegalArgumentException("The diagonal is always 0");
+        }
+        values[index(Math.min(i, j), Math.max(i, j))] = value;
+    }
+
+    // i < j
+    private int index(int i, int j) {
+        checkRow(j);
+        if (i < 0) {
+            throw new IndexOutOfBoundsException("Row " + i + " of " + size);
+        }
+        return (int) ((long) i * (2L * size - i - 1) / 2 + (j - i - 1));
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+    }
+
+    /**
+     * Expands to the full double[N][N] form, e.g. for printSimilarityScores.
+     */
+    public double[][] toDenseMatrix() {
+        double[][] dense = new double[size][size];
+        int cell = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = i + 1; j < size; j++) {
+                dense[i][j] = values[cell];
+                dense[j][i] = values[cell];
+                cell++;
+            }
+        }
+        return dense;
+    }
+
+    public long sizeInBytes() {
+        return 4L * values.length;
+    }
+}
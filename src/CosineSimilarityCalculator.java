@@ -1,6 +1,8 @@
 import java.util.*;
+import java.util.stream.LongStream;
 
 public class CosineSimilarityCalculator {
+    private static final int BLOCK = 64; // rows per tile side of the condensed calculation
 
     /**
      * Calculates the cosine similarity between two vectors / flowers.
@@ -50,6 +52,110 @@ public class CosineSimilarityCalculator {
         return similarityMatrix;
     }
 
+    /**
+     * Cosine similarity of two rows of a packed matrix, from popcounts instead of a loop over
+     * every attribute.
+     */
+    public static double cosineSimilarity(BitFeatureMatrix matrix, int rowA, int rowB) {
+        return matrix.cosine(rowA, rowB);
+    }
+
+    /**
+     * Same as calculateCosineSimilarityMatrix(int[][]) for a packed matrix: 1 - cosine
+     * similarity for every pair of rows, 0 on the diagonal.
+     */
+    public static double[][] calculateCosineSimilarityMatrix(BitFeatureMatrix matrix) {
+        int numberOfRows = matrix.rows();
+        double[] norms = new double[numberOfRows];
+        for (int i = 0; i < numberOfRows; i++) {
+            norms[i] = matrix.norm(i);
+        }
+        double[][] similarityMatrix = new double[numberOfRows][numberOfRows];
+        for (int i = 0; i < numberOfRows; i++) {
+            for (int j = i + 1; j < numberOfRows; j++) {
+                double cosine = norms[i] == 0 || norms[j] == 0 ? 0 : matrix.dot(i, j) / (norms[i] * norms[j]);
+                similarityMatrix[i][j] = 1.0 - cosine;
+                similarityMatrix[j][i] = 1.0 - cosine;
+            }
+        }
+        return similarityMatrix;
+    }
+
+    /**
+     * Blocked, parallel version of calculateCosineSimilarityMatrix with the same values, in a
+     * condensed float buffer. Every norm is computed once; the upper triangle is cut into
+     * BLOCK x BLOCK tiles that run on the common fork-join pool, so the rows of a tile pair
+     * stay in cache while they are compared.
+     */
+    public static CondensedSimilarityMatrix calculateCondensedCosineMatrix(int[][] matrix) {
+        int numberOfRows = matrix.length;
+        double[] norms = new double[numberOfRows];
+        for (int i = 0; i < numberOfRows; i++) {
+            if (matrix[i].length != matrix[0].length) {
+                throw new IllegalArgumentException("Vectors must be of the same length");
+            }
+            norms[i] = Math.sqrt(dot(matrix[i], matrix[i]));
+        }
+        CondensedSimilarityMatrix result = new CondensedSimilarityMatrix(numberOfRows);
+        forEachTile(numberOfRows, (i, j) -> result.set(i, j, distance(dot(matrix[i], matrix[j]), norms[i], norms[j])));
+        return result;
+    }
+
+    /**
+     * Same as calculateCondensedCosineMatrix(int[][]) for a packed matrix, where every dot
+     * product is a popcount of the AND of two rows.
+     */
+    public static CondensedSimilarityMatrix calculateCondensedCosineMatrix(BitFeatureMatrix matrix) {
+        int numberOfRows = matrix.rows();
+        double[] norms = new double[numberOfRows];
+        for (int i = 0; i < numberOfRows; i++) {
+            norms[i] = matrix.norm(i);
+        }
+        CondensedSimilarityMatrix result = new CondensedSimilarityMatrix(numberOfRows);
+        forEachTile(numberOfRows, (i, j) -> result.set(i, j, distance(matrix.dot(i, j), norms[i], norms[j])));
+        return result;
+    }
+
+    private interface PairAction {
+        void apply(int i, int j);
+    }
+
+    // runs action on every pair i < j, one task per tile of the upper triangle
+    private static void forEachTile(int numberOfRows, PairAction action) {
+        int blocks = (numberOfRows + BLOCK - 1) / BLOCK;
+        long tiles = (long) blocks * (blocks + 1) / 2;
+        LongStream.range(0, tiles).parallel().forEach(tile -> {
+            // tile t is (bi, bj) with bi <= bj, numbered row by row like the condensed cells
+            int bi = 0;
+            long remaining = tile;
+            while (remaining >= blocks - bi) {
+                remaining -= blocks - bi;
+                bi++;
+            }
+            int bj = bi + (int) remaining;
+            int iEnd = Math.min(numberOfRows, (bi + 1) * BLOCK);
+            int jEnd = Math.min(numberOfRows, (bj + 1) * BLOCK);
+            for (int i = bi * BLOCK; i < iEnd; i++) {
+                for (int j = Math.max(i + 1, bj * BLOCK); j < jEnd; j++) {
+                    action.apply(i, j);
+                }
+            }
+        });
+    }
+
+    // a plain counted loop over ints, which the JIT compiles to SIMD adds and multiplies
+    private static int dot(int[] a, int[] b) {
+        int sum = 0;
+        for (int k = 0; k < a.length; k++) {
+            sum += a[k] * b[k];
+        }
+        return sum;
+    }
+
+    private static float distance(double dot, double normA, double normB) {
+        return (float) (normA == 0 || normB == 0 ? 1.0 : 1.0 - dot / (normA * normB));
+    }
+
     /**
      * Prints the cosine similarity scores for each flower with every other flower.
      * @param similarityMatrix The matrix containing similarity scores.
@@ -0,0 +1,124 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*
+ * Keeps the long HTML descriptions of flowers outside the Java heap, in direct byte buffers,
+ * optionally deflate-compressed. A description is written once and addressed by a long handle
+ * (segment index in the high half, offset in the low half); the String is only rebuilt when
+ * someone asks for it. Every record starts with its stored size and its UTF-8 size, the two
+ * differ exactly when the record is compressed.
+ */
+public class DescriptionStore {
+    public static final long NO_DESCRIPTION = -1L;
+    private static final int SEGMENT_BYTES = 8 * 1024 * 1024;
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private final boolean compressed;
+    private final List<ByteBuffer> segments = new CopyOnWriteArrayList<>(); // read without locking
+    private ByteBuffer current;
+    private long storedBytes;
+    private long rawBytes;
+
+    public DescriptionStore(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    /**
+     * Copies a description into off-heap memory.
+     * @return the handle to read it back with, or NO_DESCRIPTION for null.
+     */
+    public long put(String description) {
+        if (description == null) {
+            return NO_DESCRIPTION;
+        }
+        byte[] raw = description.getBytes(StandardCharsets.UTF_8);
+        byte[] stored = compressed ? deflate(raw) : raw;
+        if (stored.length >= raw.length) {
+            stored = raw; // not worth it for short descriptions
+        }
+        return append(raw.length, stored);
+    }
+
+    /**
+     * Rebuilds the description behind a handle.
+     */
+    public String get(long handle) {
+        if (handle == NO_DESCRIPTION) {
+            return null;
+        }
+        ByteBuffer segment = segments.get((int) (handle >>> 32));
+        int offset = (int) handle;
+        int storedLength = segment.getInt(offset);
+        int rawLength = segment.getInt(offset + 4);
+        byte[] stored = new byte[storedLength];
+        segment.get(offset + RECORD_HEADER_BYTES, stored); // absolute read, safe for concurrent readers
+        byte[] raw = storedLength == rawLength ? stored : inflate(stored, rawLength);
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    // bytes held off-heap, including record headers
+    public long getStoredBytes() {
+        return storedBytes;
+    }
+
+    // UTF-8 size of everything that was put, before compression
+    public long getRawBytes() {
+        return rawBytes;
+    }
+
+    private synchronized long append(int rawLength, byte[] stored) {
+        int recordBytes = RECORD_HEADER_BYTES + stored.length;
+        if (current == null || current.remaining() < recordBytes) {
+            current = ByteBuffer.allocateDirect(Math.max(SEGMENT_BYTES, recordBytes));
+            segments.add(current);
+        }
+        long handle = ((long) (segments.size() - 1) << 32) | current.position();
+        current.putInt(stored.length).putInt(rawLength).put(stored);
+        storedBytes += recordBytes;
+        rawBytes += rawLength;
+        return handle;
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2);
+            byte[] chunk = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] stored, int rawLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored);
+            byte[] raw = new byte[rawLength];
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, read, rawLength - read);
+                if (inflated == 0 && inflater.needsInput()) {
+                    throw new DataFormatException("Truncated description record");
+                }
+                read += inflated;
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt description record", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
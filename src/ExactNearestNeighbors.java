@@ -0,0 +1,133 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Exact k nearest neighbors by brute force, the ground truth to measure approximate indexes
+ * such as QuadTree.findKApproximateNearestNeighbors against. Works either on points (e.g. the
+ * t-SNE coordinates, Euclidean distance) or on the rows of a FlowerMatrixBuilder matrix
+ * (cosine distance, 1 - cosine similarity, as in CosineSimilarityCalculator).
+ * A query scores every other row: large inputs are cut into chunks scored in parallel, each
+ * into its own bounded heap, and the heaps are merged at the end.
+ */
+public class ExactNearestNeighbors {
+    private static final int CHUNK = 4096; // rows per parallel task
+
+    private final int size;
+    private final Distance distance;
+    private final List<String> names;
+    private final Map<String, Integer> rowOfName;
+
+    // distance between two rows
+    private interface Distance {
+        double between(int a, int b);
+    }
+
+    /**
+     * @param points One point per flower, e.g. TSNEProcessor.getTsneResults().
+     * @param names The flower of each point, in the same order.
+     */
+    public ExactNearestNeighbors(double[][] points, List<String> names) {
+        this(points.length, (a, b) -> euclidean(points[a], points[b]), names);
+    }
+
+    /**
+     * @param matrix The flower x attribute matrix, see FlowerMatrixBuilder.buildBitMatrix.
+     * @param names The flower of each row, see FlowerMatrixBuilder.getFlowerNames.
+     */
+    public ExactNearestNeighbors(BitFeatureMatrix matrix, List<String> names) {
+        this(matrix.rows(), cosineDistance(matrix), names);
+    }
+
+    private ExactNearestNeighbors(int size, Distance distance, List<String> names) {
+        if (names.size() != size) {
+            throw new IllegalArgumentException(size + " rows but " + names.size() + " names");
+        }
+        this.size = size;
+        this.distance = distance;
+        this.names = names;
+        this.rowOfName = new HashMap<>();
+        for (int row = 0; row < size; row++) {
+            rowOfName.put(names.get(row), row);
+        }
+    }
+
+    private static Distance cosineDistance(BitFeatureMatrix matrix) {
+        double[] norms = new double[matrix.rows()];
+        for (int row = 0; row < norms.length; row++) {
+            norms[row] = matrix.norm(row);
+        }
+        // clamped, rounding leaves identical rows at about -1e-16
+        return (a, b) -> norms[a] == 0 || norms[b] == 0 ? 1 : Math.max(0, 1 - matrix.dot(a, b) / (norms[a] * norms[b]));
+    }
+
+    private static double euclidean(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            double d = a[i] - b[i];
+            sum += d * d;
+        }
+        return Math.sqrt(sum);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double distance(int rowA, int rowB) {
+        return distance.between(rowA, rowB);
+    }
+
+    // the row of a flower, -1 if there is none
+    public int rowOf(String flowerName) {
+        Integer row = rowOfName.get(flowerName);
+        return row == null ? -1 : row;
+    }
+
+    /**
+     * The k rows nearest to a row, excluding itself, nearest first (ties by lower row).
+     */
+    public int[] nearest(int row, int k) {
+        if (size <= CHUNK) {
+            return scoreChunk(row, k, 0, size).drainIds();
+        }
+        int chunks = (size + CHUNK - 1) / CHUNK;
+        return IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> scoreChunk(row, k, chunk * CHUNK, Math.min(size, (chunk + 1) * CHUNK)))
+                .reduce((a, b) -> {
+                    a.offerAll(b);
+                    return a;
+                })
+                .get().drainIds();
+    }
+
+    // the heap keeps the largest scores, so a score is the negated distance
+    private TopKSimilarity.BoundedHeap scoreChunk(int row, int k, int start, int end) {
+        TopKSimilarity.BoundedHeap heap = new TopKSimilarity.BoundedHeap(k);
+        for (int candidate = start; candidate < end; candidate++) {
+            if (candidate != row) {
+                heap.offer(candidate, (float) -distance.between(row, candidate));
+            }
+        }
+        return heap;
+    }
+
+    /**
+     * The k flowers nearest to a flower by name, nearest first; the exact counterpart of
+     * QuadTree.findKApproximateNearestNeighbors. Empty if the flower is unknown.
+     */
+    public List<String> findKNearestNeighbors(String flowerName, int k) {
+        int row = rowOf(flowerName);
+        if (row < 0) {
+            return Collections.emptyList();
+        }
+        List<String> neighbors = new ArrayList<>(k);
+        for (int neighbor : nearest(row, k)) {
+            neighbors.add(names.get(neighbor));
+        }
+        return neighbors;
+    }
+}
@@ -0,0 +1,38 @@
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The flowers matching a search, plus for each requested category how many of them have each
+ * value of that category.
+ */
+public class FacetedResult {
+    private final Set<Flower> flowers;
+    private final Map<String, Map<String, Integer>> facets;
+
+    FacetedResult(Set<Flower> flowers, Map<String, Map<String, Integer>> facets) {
+        this.flowers = flowers;
+        this.facets = Collections.unmodifiableMap(facets);
+    }
+
+    public Set<Flower> getFlowers() {
+        return flowers;
+    }
+
+    /**
+     * @return every value of the category mapped to the number of matching flowers that have
+     * it, most frequent first; empty if the category was not requested or is not indexed.
+     */
+    public Map<String, Integer> getCounts(String category) {
+        return facets.getOrDefault(category, Collections.emptyMap());
+    }
+
+    public Map<String, Map<String, Integer>> getFacets() {
+        return facets;
+    }
+
+    @Override
+    public String toString() {
+        return flowers.size() + " flowers " + facets;
+    }
+}
@@ -4,22 +4,30 @@ import java.util.stream.Collectors;
 
 /**
  * The class for a detailed flower information derived from the dataset.
+ * Categorical attributes (plant types, colors, seasons, sun, water, maintenance) are kept as
+ * ids from the shared AttributeDictionary; their getters decode them into read-only views.
  */
 public class Flower {
+    private static final AttributeDictionary DICTIONARY = AttributeDictionary.getInstance();
 
     private String name; // primary name ,
     private List<String> alias; // a list of alias
                                 //e.g. Alstroemeria (Peruvian lily; Lily of the Incas)
-    private String desc; // Description of this flower
-    private List<String> plantTypes; // Types of the flower, e.g. Climbers, Perennials, Shrubs
+    private String desc; // Description of this flower, unless it is kept in descStore
+    private DescriptionStore descStore; // off-heap home of the description, if any
+    private long descHandle = DescriptionStore.NO_DESCRIPTION;
     private String colors; // Description of the colors of the flower
-    private List<String> colorList; // a list of extracted colors from the colors String
     private int minZone;
     private int maxZone;
-    private List<String> bloomsSeasons; // Seasons that the flower blooms in
-    private List<String> sunNeeds; // Sun needs that the flower fits, e.g. [full sun, partial sun]
-    private String waterNeeds; // Water needs of the flower
-    private String maintenance; // Overall maintenance, e.g. hard, easy
+    // parsed from the Height and SoilNeeds texts, NaN when the text states no figure
+    private double minHeightCm = Double.NaN;
+    private double maxHeightCm = Double.NaN;
+    private double minSoilPh = Double.NaN;
+    private double maxSoilPh = Double.NaN;
+    // attribute ids per AttributeCategory ordinal, null if unset:
+    // plant types (e.g. Climbers, Perennials), extracted colors, bloom seasons,
+    // sun needs (e.g. [full sun, partial sun]), water needs and maintenance (one id each)
+    private final int[][] attributeIds = new int[AttributeCategory.values().length][];
 
 
     // a simple constructor
@@ -38,15 +46,15 @@ public class Flower {
         this.name = name;
         this.alias = alias;
         this.desc = desc;
-        this.plantTypes = plantTypes;
         this.colors = colors;
-        this.colorList = colorList;
         this.minZone = minZone;
         this.maxZone = maxZone;
-        this.bloomsSeasons = bloomsSeasons;
-        this.sunNeeds = sunNeeds;
-        this.waterNeeds = waterNeeds;
-        this.maintenance = maintenance;
+        setAttribute(AttributeCategory.PLANT_TYPE, plantTypes);
+        setAttribute(AttributeCategory.COLORS, colorList);
+        setAttribute(AttributeCategory.BLOOMS_SEASONS, bloomsSeasons);
+        setAttribute(AttributeCategory.SUN_NEEDS, sunNeeds);
+        setAttribute(AttributeCategory.WATER_NEEDS, waterNeeds);
+        setAttribute(AttributeCategory.MAINTENANCE, maintenance);
     }
 
 
@@ -60,11 +68,11 @@ public class Flower {
     }
 
     public String getDesc() {
-        return desc;
+        return descStore != null ? descStore.get(descHandle) : desc;
     }
 
     public List<String> getPlantTypes() {
-        return plantTypes;
+        return getAttributeValues(AttributeCategory.PLANT_TYPE);
     }
 
     public String getColors() {
@@ -72,7 +80,7 @@ public class Flower {
     }
 
     public List<String> getColorList() {
-        return colorList;
+        return getAttributeValues(AttributeCategory.COLORS);
     }
 
     public int getMinZone() {
@@ -83,20 +91,36 @@ public class Flower {
         return maxZone;
     }
 
+    public double getMinHeightCm() {
+        return minHeightCm;
+    }
+
+    public double getMaxHeightCm() {
+        return maxHeightCm;
+    }
+
+    public double getMinSoilPh() {
+        return minSoilPh;
+    }
+
+    public double getMaxSoilPh() {
+        return maxSoilPh;
+    }
+
     public List<String> getBloomsSeasons() {
-        return bloomsSeasons;
+        return getAttributeValues(AttributeCategory.BLOOMS_SEASONS);
     }
 
     public List<String> getSunNeeds() {
-        return sunNeeds;
+        return getAttributeValues(AttributeCategory.SUN_NEEDS);
     }
 
     public String getWaterNeeds() {
-        return waterNeeds;
+        return getAttributeValue(AttributeCategory.WATER_NEEDS);
     }
 
     public String getMaintenance() {
-        return maintenance;
+        return getAttributeValue(AttributeCategory.MAINTENANCE);
     }
 
     // setters
@@ -111,10 +135,22 @@ public class Flower {
 
     public void setDesc(String desc) {
         this.desc = desc.toLowerCase();
+        this.descStore = null;
+    }
+
+    /**
+     * Moves the description off the heap: getDesc() will rebuild it from the store on every call.
+     * @param store The store holding the description.
+     * @param handle The handle the store returned for it.
+     */
+    public void setDescriptionSource(DescriptionStore store, long handle) {
+        this.descStore = store;
+        this.descHandle = handle;
+        this.desc = null;
     }
 
     public void setPlantTypes(List<String> plantTypes) {
-        this.plantTypes = plantTypes.stream().map(String::toLowerCase).collect(Collectors.toList());
+        setAttribute(AttributeCategory.PLANT_TYPE, plantTypes.stream().map(String::toLowerCase).collect(Collectors.toList()));
     }
 
     public void setColors(String colors) {
@@ -122,7 +158,7 @@ public class Flower {
     }
 
     public void setColorList(List<String> colorList) {
-        this.colorList = colorList.stream().map(String::toLowerCase).collect(Collectors.toList());
+        setAttribute(AttributeCategory.COLORS, colorList.stream().map(String::toLowerCase).collect(Collectors.toList()));
     }
 
     public void setMinZone(int minZone) {
@@ -133,37 +169,97 @@ public class Flower {
         this.maxZone = maxZone;
     }
 
+    /**
+     * @param min The lowest height in centimetres, NaN if unknown.
+     * @param max The highest height in centimetres, NaN if unknown.
+     */
+    public void setHeightCm(double min, double max) {
+        this.minHeightCm = min;
+        this.maxHeightCm = max;
+    }
+
+    public void setSoilPh(double min, double max) {
+        this.minSoilPh = min;
+        this.maxSoilPh = max;
+    }
+
     public void setBloomsSeasons(List<String> bloomsSeasons) {
-        this.bloomsSeasons = bloomsSeasons.stream().map(String::toLowerCase).collect(Collectors.toList());
+        setAttribute(AttributeCategory.BLOOMS_SEASONS, bloomsSeasons.stream().map(String::toLowerCase).collect(Collectors.toList()));
     }
 
     public void setSunNeeds(List<String> sunNeeds) {
-        this.sunNeeds = sunNeeds.stream().map(String::toLowerCase).collect(Collectors.toList());
+        setAttribute(AttributeCategory.SUN_NEEDS, sunNeeds.stream().map(String::toLowerCase).collect(Collectors.toList()));
     }
 
     public void setWaterNeeds(String waterNeeds) {
-        this.waterNeeds = waterNeeds.toLowerCase();
+        setAttribute(AttributeCategory.WATER_NEEDS, waterNeeds.toLowerCase());
     }
 
     public void setMaintenance(String maintenance) {
-        this.maintenance = maintenance.toLowerCase();
+        setAttribute(AttributeCategory.MAINTENANCE, maintenance.toLowerCase());
+    }
+
+    // attribute ids
+
+    /**
+     * Returns the dictionary ids of the flower's values in a category (a single id for water
+     * needs and maintenance), or null if the category is unset. The array must not be modified.
+     */
+    public int[] getAttributeIds(AttributeCategory category) {
+        return attributeIds[category.ordinal()];
+    }
+
+    /**
+     * Checks whether the flower has the value with the given dictionary id in a category.
+     */
+    public boolean hasAttribute(AttributeCategory category, int id) {
+        int[] ids = getAttributeIds(category);
+        if (ids == null || id < 0) {
+            return false;
+        }
+        for (int own : ids) {
+            if (own == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<String> getAttributeValues(AttributeCategory category) {
+        int[] ids = attributeIds[category.ordinal()];
+        return ids == null ? null : DICTIONARY.asList(category, ids);
+    }
+
+    private String getAttributeValue(AttributeCategory category) {
+        int[] ids = attributeIds[category.ordinal()];
+        return ids == null ? null : DICTIONARY.valueOf(category, ids[0]);
+    }
+
+    private void setAttribute(AttributeCategory category, List<String> values) {
+        attributeIds[category.ordinal()] = values == null ? null : DICTIONARY.internAll(category, values);
+    }
+
+    private void setAttribute(AttributeCategory category, String value) {
+        attributeIds[category.ordinal()] = value == null ? null : new int[]{DICTIONARY.intern(category, value)};
     }
 
-    // only for debugging usage
+    // only for debugging usage; goes through the getters so that lazily decoded flowers work too
     public String getAllDetails() {
         ArrayList<String> res = new ArrayList<>();
-        res.add("Name: " + this.name);
-        res.add("Aliases: " + (this.alias != null ? String.join(", ", this.alias) : "None"));
-        res.add("Description: " + this.desc);
-        res.add("Plant Types: " + (this.plantTypes != null ? String.join(", ", this.plantTypes) : "None"));
-        res.add("Colors: " + this.colors);
-        res.add("ColorList: " + (this.colorList != null ? String.join(", ", this.colorList) : "None"));
-        res.add("Min Zone: " + this.minZone);
-        res.add("Max Zone: " + this.maxZone);
-        res.add("Blooms Seasons: " + (this.bloomsSeasons != null ? String.join(", ", this.bloomsSeasons) : "None"));
-        res.add("Sun Needs: " + (this.sunNeeds != null ? String.join(", ", this.sunNeeds) : "None"));
-        res.add("Water Needs: " + this.waterNeeds);
-        res.add("Maintenance: " + this.maintenance);
+        res.add("Name: " + getPrimaryName());
+        res.add("Aliases: " + (getAlias() != null ? String.join(", ", getAlias()) : "None"));
+        res.add("Description: " + getDesc());
+        res.add("Plant Types: " + (getPlantTypes() != null ? String.join(", ", getPlantTypes()) : "None"));
+        res.add("Colors: " + getColors());
+        res.add("ColorList: " + (getColorList() != null ? String.join(", ", getColorList()) : "None"));
+        res.add("Min Zone: " + getMinZone());
+        res.add("Max Zone: " + getMaxZone());
+        res.add("Height (cm): " + getMinHeightCm() + " - " + getMaxHeightCm());
+        res.add("Soil pH: " + getMinSoilPh() + " - " + getMaxSoilPh());
+        res.add("Blooms Seasons: " + (getBloomsSeasons() != null ? String.join(", ", getBloomsSeasons()) : "None"));
+        res.add("Sun Needs: " + (getSunNeeds() != null ? String.join(", ", getSunNeeds()) : "None"));
+        res.add("Water Needs: " + getWaterNeeds());
+        res.add("Maintenance: " + getMaintenance());
         return String.join("\n", res);
     }
 }
\ No newline at end of file
@@ -2,9 +2,9 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 public class FlowerAttributesCollector {
-    private FlowerDatabase flowerDatabase;
+    private IFlowerDatabase flowerDatabase;
 
-    public FlowerAttributesCollector(FlowerDatabase flowerDatabase) {
+    public FlowerAttributesCollector(IFlowerDatabase flowerDatabase) {
         this.flowerDatabase = flowerDatabase;
     }
 
@@ -0,0 +1,561 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/*
+ * A compressed bitmap of flower ordinals, laid out the way Roaring bitmaps are: the 32-bit
+ * ordinal space is cut into chunks of 2^16 keyed by the high 16 bits, and each chunk is either
+ * a sorted char[] of low bits (sparse, up to 4096 values) or a 1024-word long[] bitmap (dense).
+ * AND / OR / ANDNOT work chunk by chunk, word by word for dense chunks, so intersecting
+ * postings never hashes or boxes anything.
+ */
+public class FlowerBitmap {
+    private static final int ARRAY_MAX = 4096; // above this a dense chunk is smaller than a sorted array
+    private static final int CHUNK_WORDS = 1024;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    public FlowerBitmap() {
+        this.keys = new char[4];
+        this.containers = new Container[4];
+    }
+
+    /**
+     * Builds a bitmap holding every ordinal in [from, to).
+     */
+    public static FlowerBitmap range(int from, int to) {
+        FlowerBitmap bitmap = new FlowerBitmap();
+        for (int i = from; i < to; i++) {
+            bitmap.add(i);
+        }
+        return bitmap;
+    }
+
+    public static FlowerBitmap of(int... ordinals) {
+        FlowerBitmap bitmap = new FlowerBitmap();
+        for (int ordinal : ordinals) {
+            bitmap.add(ordinal);
+        }
+        return bitmap;
+    }
+
+    public void add(int ordinal) {
+        char key = (char) (ordinal >>> 16);
+        int i = findKey(key);
+        if (i < 0) {
+            i = -i - 1;
+            insertContainer(i, key, new ArrayContainer());
+        }
+        containers[i] = containers[i].add((char) ordinal);
+    }
+
+    public void remove(int ordinal) {
+        int i = findKey((char) (ordinal >>> 16));
+        if (i < 0) {
+            return;
+        }
+        Container container = containers[i].remove((char) ordinal);
+        if (container.cardinality() == 0) {
+            removeContainer(i);
+        } else {
+            containers[i] = container;
+        }
+    }
+
+    public boolean contains(int ordinal) {
+        int i = findKey((char) (ordinal >>> 16));
+        return i >= 0 && containers[i].contains((char) ordinal);
+    }
+
+    public int getCardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the smallest ordinal >= from in the bitmap, or -1 if there is none.
+     */
+    public int nextSetBit(int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        int i = findKey((char) (from >>> 16));
+        if (i >= 0) {
+            int low = containers[i].nextSetBit(from & 0xFFFF);
+            if (low >= 0) {
+                return (keys[i] << 16) | low;
+            }
+            i++;
+        } else {
+            i = -i - 1;
+        }
+        return i < size ? (keys[i] << 16) | containers[i].nextSetBit(0) : -1;
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            int high = keys[i] << 16;
+            containers[i].forEach(high, action);
+        }
+    }
+
+    public int[] toArray() {
+        int[] ordinals = new int[getCardinality()];
+        int[] next = {0};
+        forEach(ordinal -> ordinals[next[0]++] = ordinal);
+        return ordinals;
+    }
+
+    public FlowerBitmap copy() {
+        FlowerBitmap copy = new FlowerBitmap();
+        copy.keys = Arrays.copyOf(keys, Math.max(size, 4));
+        copy.containers = new Container[copy.keys.length];
+        for (int i = 0; i < size; i++) {
+            copy.containers[i] = containers[i].copy();
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    public static FlowerBitmap and(FlowerBitmap a, FlowerBitmap b) {
+        FlowerBitmap result = new FlowerBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Container container = a.containers[i].and(b.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.appendContainer(a.keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts |a AND b| without building the intersection.
+     */
+    public static int andCardinality(FlowerBitmap a, FlowerBitmap b) {
+        int cardinality = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                cardinality += a.containers[i].andCardinality(b.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return cardinality;
+    }
+
+    public static FlowerBitmap or(FlowerBitmap a, FlowerBitmap b) {
+        FlowerBitmap result = new FlowerBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.size || j < b.size) {
+            if (j == b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+                result.appendContainer(a.keys[i], a.containers[i].copy());
+                i++;
+            } else if (i == a.size || a.keys[i] > b.keys[j]) {
+                result.appendContainer(b.keys[j], b.containers[j].copy());
+                j++;
+            } else {
+                result.appendContainer(a.keys[i], a.containers[i].or(b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public static FlowerBitmap andNot(FlowerBitmap a, FlowerBitmap b) {
+        FlowerBitmap result = new FlowerBitmap();
+        int j = 0;
+        for (int i = 0; i < a.size; i++) {
+            while (j < b.size && b.keys[j] < a.keys[i]) {
+                j++;
+            }
+            Container container = j < b.size && b.keys[j] == a.keys[i]
+                    ? a.containers[i].andNot(b.containers[j])
+                    : a.containers[i].copy();
+            if (container.cardinality() > 0) {
+                result.appendContainer(a.keys[i], container);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof FlowerBitmap)) {
+            return false;
+        }
+        return Arrays.equals(toArray(), ((FlowerBitmap) o).toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    ///////////////////////////////////////////////////////////////
+    //                    Chunk bookkeeping                      //
+    ///////////////////////////////////////////////////////////////
+
+    private int findKey(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertContainer(int i, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = container;
+        size++;
+    }
+
+    private void appendContainer(char key, Container container) {
+        insertContainer(size, key, container);
+    }
+
+    private void removeContainer(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+        containers[--size] = null;
+    }
+
+    ///////////////////////////////////////////////////////////////
+    //                    Containers                             //
+    ///////////////////////////////////////////////////////////////
+
+    // the 2^16 low bits of one chunk; mutators return the container to keep (it may change kind)
+    private abstract static class Container {
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract int nextSetBit(int from); // -1 if none
+
+        abstract void forEach(int high, IntConsumer action);
+
+        abstract Container copy();
+
+        abstract BitmapContainer toBitmap();
+
+        Container and(Container other) {
+            if (this instanceof ArrayContainer) {
+                return ((ArrayContainer) this).filter(other, true);
+            }
+            if (other instanceof ArrayContainer) {
+                return ((ArrayContainer) other).filter(this, true);
+            }
+            return ((BitmapContainer) this).combine((BitmapContainer) other, Op.AND);
+        }
+
+        int andCardinality(Container other) {
+            if (this instanceof BitmapContainer && other instanceof BitmapContainer) {
+                long[] a = ((BitmapContainer) this).words;
+                long[] b = ((BitmapContainer) other).words;
+                int cardinality = 0;
+                for (int w = 0; w < CHUNK_WORDS; w++) {
+                    cardinality += Long.bitCount(a[w] & b[w]);
+                }
+                return cardinality;
+            }
+            ArrayContainer array = (ArrayContainer) (this instanceof ArrayContainer ? this : other);
+            Container probe = array == this ? other : this;
+            int cardinality = 0;
+            for (int k = 0; k < array.cardinality; k++) {
+                if (probe.contains(array.values[k])) {
+                    cardinality++;
+                }
+            }
+            return cardinality;
+        }
+
+        Container or(Container other) {
+            if (this instanceof ArrayContainer && other instanceof ArrayContainer) {
+                return ((ArrayContainer) this).union((ArrayContainer) other);
+            }
+            return toBitmap().combine(other.toBitmap(), Op.OR);
+        }
+
+        Container andNot(Container other) {
+            if (this instanceof ArrayContainer) {
+                return ((ArrayContainer) this).filter(other, false);
+            }
+            return ((BitmapContainer) this).combine(other.toBitmap(), Op.AND_NOT);
+        }
+    }
+
+    private enum Op { AND, OR, AND_NOT }
+
+    private static class ArrayContainer extends Container {
+        char[] values;
+        int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX) {
+                return toBitmap().add(value);
+            }
+            i = -i - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int nextSetBit(int from) {
+            int i = Arrays.binarySearch(values, 0, cardinality, (char) from);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            return i < cardinality ? values[i] : -1;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int k = 0; k < cardinality; k++) {
+                action.accept(high | values[k]);
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 4)), cardinality);
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int k = 0; k < cardinality; k++) {
+                bitmap.words[values[k] >>> 6] |= 1L << values[k];
+            }
+            bitmap.cardinality = cardinality;
+            return bitmap;
+        }
+
+        // keep (keep == true) or drop (keep == false) the values that are in other
+        ArrayContainer filter(Container other, boolean keep) {
+            char[] kept = new char[Math.max(cardinality, 4)];
+            int n = 0;
+            for (int k = 0; k < cardinality; k++) {
+                if (other.contains(values[k]) == keep) {
+                    kept[n++] = values[k];
+                }
+            }
+            return new ArrayContainer(kept, n);
+        }
+
+        Container union(ArrayContainer other) {
+            char[] merged = new char[cardinality + other.cardinality];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < cardinality && j < other.cardinality) {
+                char a = values[i];
+                char b = other.values[j];
+                if (a == b) {
+                    i++;
+                    j++;
+                }
+                else if (a < b) {
+                    i++;
+                } else {
+                    j++;
+                }
+                merged[n++] = a <= b ? a : b;
+            }
+            while (i < cardinality) {
+                merged[n++] = values[i++];
+            }
+            while (j < other.cardinality) {
+                merged[n++] = other.values[j++];
+            }
+            ArrayContainer union = new ArrayContainer(merged, n);
+            return n > ARRAY_MAX ? union.toBitmap() : union;
+        }
+    }
+
+    private static class BitmapContainer extends Container {
+        final long[] words = new long[CHUNK_WORDS];
+        int cardinality;
+
+        @Override
+        Container add(char value) {
+            long before = words[value >>> 6];
+            words[value >>> 6] = before | (1L << value);
+            if (before != words[value >>> 6]) {
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long before = words[value >>> 6];
+            words[value >>> 6] = before & ~(1L << value);
+            if (before != words[value >>> 6]) {
+                cardinality--;
+            }
+            return cardinality <= ARRAY_MAX ? toArray() : this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int nextSetBit(int from) {
+            int w = from >>> 6;
+            if (w >= CHUNK_WORDS) {
+                return -1;
+            }
+            long word = words[w] & (-1L << from);
+            while (true) {
+                if (word != 0) {
+                    return (w << 6) + Long.numberOfTrailingZeros(word);
+                }
+                if (++w == CHUNK_WORDS) {
+                    return -1;
+                }
+                word = words[w];
+            }
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int w = 0; w < CHUNK_WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    action.accept(high | (w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            BitmapContainer copy = new BitmapContainer();
+            System.arraycopy(words, 0, copy.words, 0, CHUNK_WORDS);
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            return this;
+        }
+
+        ArrayContainer toArray() {
+            char[] values = new char[Math.max(cardinality, 4)];
+            int n = 0;
+            for (int w = 0; w < CHUNK_WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    values[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, n);
+        }
+
+        Container combine(BitmapContainer other, Op op) {
+            BitmapContainer result = new BitmapContainer();
+            int cardinality = 0;
+            for (int w = 0; w < CHUNK_WORDS; w++) {
+                long word;
+                switch (op) {
+                    case AND:
+                        word = words[w] & other.words[w];
+                        break;
+                    case OR:
+                        word = words[w] | other.words[w];
+                        break;
+                    default:
+                        word = words[w] & ~other.words[w];
+                }
+                result.words[w] = word;
+                cardinality += Long.bitCount(word);
+            }
+            result.cardinality = cardinality;
+            return cardinality <= ARRAY_MAX ? result.toArray() : result;
+        }
+    }
+}
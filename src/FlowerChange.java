@@ -0,0 +1,49 @@
+/**
+ * One change to the contents of a flower database, as delivered to an IFlowerDatabaseListener.
+ */
+public class FlowerChange {
+    public enum Type { ADD, REMOVE, REPLACE }
+
+    private final Type type;
+    private final Flower oldFlower;
+    private final Flower newFlower;
+
+    public FlowerChange(Type type, Flower oldFlower, Flower newFlower) {
+        this.type = type;
+        this.oldFlower = oldFlower;
+        this.newFlower = newFlower;
+    }
+
+    public static FlowerChange added(Flower flower) {
+        return new FlowerChange(Type.ADD, null, flower);
+    }
+
+    public static FlowerChange removed(Flower flower) {
+        return new FlowerChange(Type.REMOVE, flower, null);
+    }
+
+    public static FlowerChange replaced(Flower oldFlower, Flower newFlower) {
+        return new FlowerChange(Type.REPLACE, oldFlower, newFlower);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    // the flower that was removed or replaced, null for ADD
+    public Flower getOldFlower() {
+        return oldFlower;
+    }
+
+    // the flower that was added or took the old one's place, null for REMOVE
+    public Flower getNewFlower() {
+        return newFlower;
+    }
+
+    @Override
+    public String toString() {
+        return type + "(" + (oldFlower == null ? "" : oldFlower.getPrimaryName())
+                + (type == Type.REPLACE ? " -> " : "")
+                + (newFlower == null ? "" : newFlower.getPrimaryName()) + ")";
+    }
+}
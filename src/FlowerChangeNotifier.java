@@ -0,0 +1,66 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Listener bookkeeping shared by the flower databases. Changes made while a batch is open are
+ * held back and delivered together when the outermost batch ends.
+ */
+public class FlowerChangeNotifier {
+    private final List<IFlowerDatabaseListener> listeners = new CopyOnWriteArrayList<>();
+    private List<FlowerChange> pending = new ArrayList<>();
+    private int batchDepth;
+
+    public void addListener(IFlowerDatabaseListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(IFlowerDatabaseListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void fire(FlowerChange change) {
+        if (listeners.isEmpty()) {
+            return; // nobody to tell, don't even buffer
+        }
+        if (batchDepth > 0) {
+            pending.add(change);
+        } else {
+            deliver(Collections.singletonList(change));
+        }
+    }
+
+    public void beginBatch() {
+        batchDepth++;
+    }
+
+    public void endBatch() {
+        if (batchDepth == 0) {
+            throw new IllegalStateException("No batch is open");
+        }
+        if (--batchDepth == 0 && !pending.isEmpty()) {
+            List<FlowerChange> changes = pending;
+            pending = new ArrayList<>();
+            deliver(Collections.unmodifiableList(changes));
+        }
+    }
+
+    /**
+     * Runs the edits as one batch; listeners hear about them once the edits return or throw.
+     */
+    public void batch(Runnable edits) {
+        beginBatch();
+        try {
+            edits.run();
+        } finally {
+            endBatch();
+        }
+    }
+
+    private void deliver(List<FlowerChange> changes) {
+        for (IFlowerDatabaseListener listener : listeners) {
+            listener.onFlowersChanged(changes);
+        }
+    }
+}
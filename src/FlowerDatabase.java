@@ -1,7 +1,19 @@
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import org.apache.commons.csv.CSVFormat;
@@ -16,9 +28,24 @@ import org.apache.commons.csv.CSVRecord;
  */
 
 public class FlowerDatabase implements IFlowerDatabase {
+    private static final CSVFormat CSV_FORMAT = CSVFormat.DEFAULT
+            .builder()
+            .setHeader()
+            .setIgnoreHeaderCase(true)
+            .setTrim(true)
+            .build();
+    private static final int MIN_CHUNK_BYTES = 64 * 1024;
+    private static final long MAX_CHUNK_BYTES = 256L * 1024 * 1024; // well under the 2 GB of one mapping
+    private static final int SCAN_WINDOW_BYTES = 64 * 1024 * 1024;
+    // bump whenever parseRecord, ColorMatcher or MeasurementParser derive different fields,
+    // so snapshots written by the old parser are not served any more
+    static final int PARSER_REVISION = 3; // 3: widths are told apart by the words around each figure
+
     private final Map<String, Flower> flowersMap; // Maps primary names to Flower objects
     private final Map<String, String> nameToPrimaryMap; // Maps any name (primary or alias) to primary name
     private final Map<String, List<String>> primaryToAliasesMap; // Maps primary name to list of aliases
+    private DescriptionStore descriptionStore; // when set, descriptions are loaded off-heap
+    private final FlowerChangeNotifier notifier = new FlowerChangeNotifier();
 
     public FlowerDatabase() {
         this.flowersMap = new HashMap<>();
@@ -26,61 +53,297 @@ public class FlowerDatabase implements IFlowerDatabase {
         this.primaryToAliasesMap = new HashMap<>();
     }
 
+    /**
+     * Makes the CSV loaders keep the HTML descriptions off the heap. Only the detail view reads
+     * them, so the heap then scales with the structured attributes instead of the prose.
+     * Must be called before loading.
+     * @param compressed Whether to deflate the descriptions as well.
+     */
+    public void useOffHeapDescriptions(boolean compressed) {
+        this.descriptionStore = new DescriptionStore(compressed);
+    }
+
+    public DescriptionStore getDescriptionStore() {
+        return descriptionStore;
+    }
+
     public void loadFlowersFromCSV(String filepath) {
-        try (Reader reader = new FileReader(filepath)) {
-            CSVFormat format = CSVFormat.DEFAULT
-                .builder()
-                .setHeader()
-                .setIgnoreHeaderCase(true)
-                .setTrim(true)
-                .build();
-
-            CSVParser csvParser = new CSVParser(reader, format);
+        notifier.beginBatch();
+        try (Reader reader = new FileReader(filepath, StandardCharsets.UTF_8);
+             CSVParser csvParser = new CSVParser(reader, CSV_FORMAT)) {
             for (CSVRecord csvRecord : csvParser) {
-                // get name
-                String nameString = csvRecord.get("Name").toLowerCase().trim();
-                ArrayList<String> names = parseName(nameString);
-                String name = names.get(0).toLowerCase().trim(); // primary name
-                names.remove(0);
-                // get other info
-                String desc = csvRecord.get("Desc").trim();
-                List<String> plantTypes = Arrays.stream(csvRecord.get("PlantType").toLowerCase().split(","))
-                        .map(String::trim)
-                        .collect(Collectors.toList());
-                String colors = csvRecord.get("Color").toLowerCase().trim();
-                List<String> colorList = extractColors(colors);
-
-                // get hardiness zone info
-                String zoneRange = csvRecord.get("HardinessZones").trim();
-                String[] zones = zoneRange.split("-");
-                int minZone = Integer.parseInt(zones[0].trim());
-                int maxZone = Integer.parseInt(zones[1].trim());
-
-                List<String> bloomsSeasons = Arrays.stream(csvRecord.get("BloomsIn").toLowerCase().split(","))
-                        .map(String::trim)
-                        .collect(Collectors.toList());
-                List<String> sunNeeds = Arrays.stream(csvRecord.get("SunNeeds").toLowerCase().split(","))
-                        .map(String::trim)
-                        .collect(Collectors.toList());
-                String waterNeeds = csvRecord.get("WaterNeeds").toLowerCase().trim();
-                String maintenance = csvRecord.get("Maintenance").toLowerCase().trim();
-
-                // construct a flower instance
-                Flower flower = new Flower(name, names, desc, plantTypes, colors, colorList, minZone,
-                       maxZone, bloomsSeasons, sunNeeds, waterNeeds, maintenance);
+                ParsedRecord parsed = parseRecord(csvRecord);
 
                 // ########### debug #######################
-                // System.out.println(flower.getAllDetails());
+                // System.out.println(parsed.flower.getAllDetails());
 
                 // add it into the map
-                addFlower(name, names, flower);
+                addFlower(parsed.primaryName, parsed.aliases, parsed.flower);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            notifier.endBatch();
+        }
+    }
+
+    /**
+     * Multi-stage version of loadFlowersFromCSV for large catalogs.
+     * 1. Split: the file is memory-mapped and cut into record-aligned chunks. Quotes are
+     *    tracked while scanning, so a newline inside the quoted HTML of "Desc" never ends a chunk.
+     * 2. Parse: every chunk is parsed and normalized (split, lowercase, extractColors)
+     *    on its own task of a fork-join pool.
+     * 3. Merge: the parsed chunks are added to the name maps in file order on the calling
+     *    thread, so the result is the same as the sequential loader's.
+     * @param filepath The path to the CSV file containing flower data.
+     * @param parallelism The number of worker threads used for the parse stage.
+     * @return a throughput report, or null if the file could not be loaded.
+     */
+    public IngestionReport loadFlowersFromCSVParallel(String filepath, int parallelism) {
+        return loadFlowersFromCSVParallel(filepath, parallelism, 0);
+    }
+
+    // chunkBytes <= 0 picks a chunk size from the file size and the parallelism
+    IngestionReport loadFlowersFromCSVParallel(String filepath, int parallelism, int chunkBytes) {
+        return loadFlowersFromCSVParallel(filepath, parallelism, chunkBytes, SCAN_WINDOW_BYTES);
+    }
+
+    // scanWindowBytes is how much of the file the split stage maps at a time
+    IngestionReport loadFlowersFromCSVParallel(String filepath, int parallelism, int chunkBytes, int scanWindowBytes) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)) {
+            // stage 1: split into record-aligned chunks
+            long splitStart = System.nanoTime();
+            long size = channel.size();
+            long headerEnd = nextRecordBoundary(channel, 0, scanWindowBytes);
+            String[] header = parseHeader(channel, headerEnd);
+            long targetChunkBytes = chunkBytes > 0 ? chunkBytes
+                    // a few chunks per thread keeps the pool busy when record sizes are uneven
+                    : Math.min(MAX_CHUNK_BYTES, Math.max(MIN_CHUNK_BYTES, (size - headerEnd) / (parallelism * 4L)));
+            List<long[]> chunks = splitIntoChunks(channel, headerEnd, targetChunkBytes, scanWindowBytes);
+            CSVFormat chunkFormat = CSV_FORMAT.builder().setHeader(header).setSkipHeaderRecord(false).build();
+
+            // stage 2: parse and normalize the chunks in parallel, each mapped on its own
+            long parseStart = System.nanoTime();
+            List<Callable<List<ParsedRecord>>> tasks = new ArrayList<>();
+            for (long[] chunk : chunks) {
+                tasks.add(() -> parseChunk(map(channel, chunk[0], chunk[1]), chunkFormat));
+            }
+            List<Future<List<ParsedRecord>>> parsedChunks = pool.invokeAll(tasks);
+
+            // stage 3: merge into the name maps in file order
+            long mergeStart = System.nanoTime();
+            long records = 0;
+            notifier.beginBatch();
+            try {
+                for (Future<List<ParsedRecord>> parsedChunk : parsedChunks) {
+                    for (ParsedRecord parsed : parsedChunk.get()) {
+                        addFlower(parsed.primaryName, parsed.aliases, parsed.flower);
+                        records++;
+                    }
+                }
+            } finally {
+                notifier.endBatch();
             }
-            csvParser.close();
+            long mergeEnd = System.nanoTime();
+
+            return new IngestionReport(records, size, chunks.size(), parallelism,
+                    parseStart - splitStart, mergeStart - parseStart, mergeEnd - mergeStart);
+        } catch (IOException | ExecutionException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdown();
+        }
+        return null;
+    }
+
+    /**
+     * Loads the catalog from a binary snapshot of the CSV when one exists and is current,
+     * otherwise parses the CSV and (re)writes the snapshot for the next start.
+     * Flowers served from the snapshot are read-only views over the memory-mapped file.
+     * Start-up is still linear in the catalog: the CSV is hashed to check the snapshot, and
+     * every flower is added (and indexed by the listeners). What it saves is the CSV parsing
+     * and the heap copies of the fields.
+     * @param csvPath The path to the CSV file containing flower data.
+     * @param snapshotPath The path of the snapshot that caches the CSV.
+     * @return true if the flowers came from the snapshot, false if the CSV had to be parsed.
+     */
+    public boolean loadFlowersWithSnapshot(String csvPath, String snapshotPath) {
+        Path snapshotFile = Paths.get(snapshotPath);
+        byte[] csvHash;
+        try {
+            csvHash = FlowerSnapshot.hashFile(Paths.get(csvPath));
         } catch (IOException e) {
             e.printStackTrace();
+            return false;
+        }
+
+        if (Files.exists(snapshotFile)) {
+            try {
+                FlowerSnapshot snapshot = FlowerSnapshot.open(snapshotFile);
+                if (snapshot.matches(csvHash, PARSER_REVISION)) {
+                    batchUpdate(() -> {
+                        for (int i = 0; i < snapshot.size(); i++) {
+                            Flower flower = snapshot.getFlower(i);
+                            addFlower(flower.getPrimaryName(), flower.getAlias(), flower);
+                        }
+                    });
+                    return true;
+                }
+            } catch (IOException e) {
+                // unreadable or from an older version: rebuild it from the CSV below
+                e.printStackTrace();
+            }
+        }
+
+        loadFlowersFromCSV(csvPath);
+        try {
+            FlowerSnapshot.write(snapshotFile, csvHash, PARSER_REVISION, flowersMap.values());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Helper function: turns one CSV record into a normalized flower.
+     */
+    private ParsedRecord parseRecord(CSVRecord csvRecord) {
+        // get name
+        String nameString = csvRecord.get("Name").toLowerCase().trim();
+        ArrayList<String> names = parseName(nameString);
+        String name = names.get(0).toLowerCase().trim(); // primary name
+        names.remove(0);
+        // get other info
+        String desc = csvRecord.get("Desc").trim();
+        List<String> plantTypes = Arrays.stream(csvRecord.get("PlantType").toLowerCase().split(","))
+                .map(String::trim)
+                .collect(Collectors.toList());
+        String colors = csvRecord.get("Color").toLowerCase().trim();
+        List<String> colorList = extractColors(colors);
+
+        // get hardiness zone info
+        String zoneRange = csvRecord.get("HardinessZones").trim();
+        String[] zones = zoneRange.split("-");
+        int minZone = Integer.parseInt(zones[0].trim());
+        int maxZone = Integer.parseInt(zones[1].trim());
+
+        List<String> bloomsSeasons = Arrays.stream(csvRecord.get("BloomsIn").toLowerCase().split(","))
+                .map(String::trim)
+                .collect(Collectors.toList());
+        List<String> sunNeeds = Arrays.stream(csvRecord.get("SunNeeds").toLowerCase().split(","))
+                .map(String::trim)
+                .collect(Collectors.toList());
+        String waterNeeds = csvRecord.get("WaterNeeds").toLowerCase().trim();
+        String maintenance = csvRecord.get("Maintenance").toLowerCase().trim();
+
+        // construct a flower instance
+        Flower flower = new Flower(name, names, descriptionStore == null ? desc : null, plantTypes, colors,
+                colorList, minZone, maxZone, bloomsSeasons, sunNeeds, waterNeeds, maintenance);
+        double[] height = csvRecord.isMapped("Height") ? MeasurementParser.parseHeightCm(csvRecord.get("Height")) : null;
+        if (height != null) {
+            flower.setHeightCm(height[0], height[1]);
+        }
+        double[] soilPh = csvRecord.isMapped("SoilNeeds") ? MeasurementParser.parseSoilPh(csvRecord.get("SoilNeeds")) : null;
+        if (soilPh != null) {
+            flower.setSoilPh(soilPh[0], soilPh[1]);
+        }
+        if (descriptionStore != null) {
+            flower.setDescriptionSource(descriptionStore, descriptionStore.put(desc));
+        }
+        return new ParsedRecord(name, names, flower);
+    }
+
+    private List<ParsedRecord> parseChunk(ByteBuffer chunk, CSVFormat chunkFormat) throws IOException {
+        List<ParsedRecord> parsed = new ArrayList<>();
+        String text = StandardCharsets.UTF_8.decode(chunk).toString();
+        try (CSVParser csvParser = CSVParser.parse(text, chunkFormat)) {
+            for (CSVRecord csvRecord : csvParser) {
+                parsed.add(parseRecord(csvRecord));
+            }
+        }
+        return parsed;
+    }
+
+    private String[] parseHeader(FileChannel channel, long headerEnd) throws IOException {
+        String headerLine = StandardCharsets.UTF_8.decode(map(channel, 0, headerEnd)).toString();
+        try (CSVParser csvParser = CSVParser.parse(headerLine, CSVFormat.DEFAULT.builder().setTrim(true).build())) {
+            return csvParser.getRecords().get(0).values();
+        }
+    }
+
+    // maps [start, end) of the file; a single mapping is limited to 2 GB, so chunks are capped below that
+    private static MappedByteBuffer map(FileChannel channel, long start, long end) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    }
+
+    /*
+     * Helper function: cuts [start, end of file) into chunks of roughly chunkBytes that all end
+     * on a record boundary. The scan is a single sequential pass because the quote state at an
+     * arbitrary offset can't be known without reading everything before it. It maps the file
+     * one window at a time and carries the quote state across windows, so offsets are longs and
+     * files above 2 GB split like any other.
+     */
+    private List<long[]> splitIntoChunks(FileChannel channel, long start, long chunkBytes, int scanWindowBytes)
+            throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        long limit = channel.size();
+        long chunkStart = start;
+        boolean inQuotes = false;
+        for (long windowStart = start; windowStart < limit; windowStart += scanWindowBytes) {
+            MappedByteBuffer window = map(channel, windowStart, Math.min(limit, windowStart + scanWindowBytes));
+            for (int i = 0; i < window.limit(); i++) {
+                byte b = window.get(i);
+                if (b == '"') {
+                    inQuotes = !inQuotes; // an escaped "" flips twice, which leaves the state unchanged
+                } else if (b == '\n' && !inQuotes && windowStart + i + 1 - chunkStart >= chunkBytes) {
+                    chunks.add(new long[]{chunkStart, windowStart + i + 1});
+                    chunkStart = windowStart + i + 1;
+                }
+            }
         }
+        if (chunkStart < limit) {
+            chunks.add(new long[]{chunkStart, limit});
+        }
+        return chunks;
     }
 
+    private long nextRecordBoundary(FileChannel channel, long from, int scanWindowBytes) throws IOException {
+        long limit = channel.size();
+        boolean inQuotes = false;
+        for (long windowStart = from; windowStart < limit; windowStart += scanWindowBytes) {
+            MappedByteBuffer window = map(channel, windowStart, Math.min(limit, windowStart + scanWindowBytes));
+            for (int i = 0; i < window.limit(); i++) {
+                byte b = window.get(i);
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n' && !inQuotes) {
+                    return windowStart + i + 1;
+                }
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * A flower parsed from one record, together with the names it is registered under.
+     */
+    private static class ParsedRecord {
+        final String primaryName;
+        final List<String> aliases;
+        final Flower flower;
+
+        ParsedRecord(String primaryName, List<String> aliases, Flower flower) {
+            this.primaryName = primaryName;
+            this.aliases = aliases;
+            this.flower = flower;
+        }
+    }
 
     /**
      * Helper function: names parsed from a string format: "Primary Name (Alias1; Alias2)"
@@ -103,120 +366,22 @@ public class FlowerDatabase implements IFlowerDatabase {
      *  mapping variations of colors to standard color names.
      */
     public List<String> extractColors(String colorDescription) {
-        // Dictionary to map similar color terms to standard color names
-        Map<String, String> colorMap = new HashMap<>();
-        colorMap.put("red", "red");
-        colorMap.put("scarlet", "red");
-        colorMap.put("rose", "red");
-        colorMap.put("crimson", "red");
-        colorMap.put("maroon", "red");
-        colorMap.put("ruby", "red");
-        colorMap.put("rust", "red");
-        colorMap.put("burgundy", "red");
-        colorMap.put("raspberry", "red");
-
-        colorMap.put("purple", "purple");
-        colorMap.put("plum", "purple");
-        colorMap.put("violet", "purple");
-        colorMap.put("lavender", "purple");
-        colorMap.put("lilac", "purple");
-        colorMap.put("mauve", "purple");
-        colorMap.put("amethyst", "purple");
-
-        colorMap.put("pink", "pink");
-        colorMap.put("fuchsia", "pink");
-        colorMap.put("salmon", "pink");
-        colorMap.put("peach", "pink");
-        colorMap.put("coral", "pink");
-        colorMap.put("magenta", "pink");
-
-        colorMap.put("blue", "blue");
-        colorMap.put("teal", "blue");
-        colorMap.put("cyan", "blue");
-        colorMap.put("cerulean", "blue");
-        colorMap.put("azure", "blue");
-        colorMap.put("aqua", "blue");
-        colorMap.put("turquoise", "blue");
-        colorMap.put("cobalt", "blue");
-        colorMap.put("sapphire", "blue");
-        colorMap.put("indigo", "blue");
-        colorMap.put("aquamarine", "blue");
-        colorMap.put("navy", "blue");
-        colorMap.put("denim", "blue");
-
-        colorMap.put("green", "green");
-        colorMap.put("peridot", "green");
-        colorMap.put("emerald", "green");
-        colorMap.put("jade", "green");
-        colorMap.put("olive", "green");
-        colorMap.put("lime", "green");
-
-        colorMap.put("ochre", "yellow");
-        colorMap.put("yellow", "yellow");
-        colorMap.put("khaki", "yellow");
-        colorMap.put("golden", "yellow");
-        colorMap.put("mustard", "yellow");
-
-        colorMap.put("orange", "orange");
-        colorMap.put("amber", "orange");
-        colorMap.put("saffron", "orange");
-        colorMap.put("copper", "orange");
-        colorMap.put("bronze", "orange");
-
-        colorMap.put("brown", "brown");
-        colorMap.put("beige", "brown");
-        colorMap.put("chocolate", "brown");
-        colorMap.put("tan", "brown");
-        colorMap.put("sepia", "brown");
-
-        colorMap.put("white", "white");
-        colorMap.put("ivory", "white");
-        colorMap.put("cream", "white");
-
-        colorMap.put("grey", "grey");
-        colorMap.put("silver", "grey");
-        colorMap.put("charcoal", "grey");
-
-        colorMap.put("black", "black");
-
-        Set<String> knownColors = new HashSet<>(Arrays.asList(
-                "white", "cream", "yellow", "purple", "orange", "pink", "red", "blue",
-                "green", "black", "lavender", "maroon", "violet", "brown", "gold", "scarlet",
-                "salmon", "rose", "lilac", "mauve", "crimson", "cyan", "magenta", "ivory",
-                "beige", "turquoise", "teal", "grey", "silver", "peach", "coral", "fuchsia",
-                "lime", "olive", "chocolate", "tan", "navy", "denim", "charcoal", "rust",
-                "burgundy", "mustard", "indigo", "saffron", "aquamarine", "khaki", "golden",
-                "raspberry", "plum", "ochre", "cerulean", "azure", "jade", "emerald", "amber",
-                "ruby", "sepia", "copper", "bronze", "cobalt", "sapphire", "peridot", "amethyst"
-        ));
-
-        List<String> extractedColors = new ArrayList<>();
-        String[] words = colorDescription.toLowerCase().replaceAll("[^a-z0-9\\s]+", " ").split("\\s+");
-        for (String word : words) {
-            if (colorMap.containsKey(word)) {
-                word = colorMap.get(word); // Map to a standard color if applicable
-            }
-            if (knownColors.contains(word)) {
-                extractedColors.add(word);
-            }
-        }
-        return extractedColors;
+        return ColorMatcher.DEFAULT.extract(colorDescription);
     }
 
-
-
     public void addFlower(String primaryName, List<String> aliases, Flower flower) {
         primaryName = primaryName.toLowerCase();
         List<String> normalizedAliases = aliases.stream()
                 .map(String::toLowerCase)
                 .collect(Collectors.toList());
 
-        flowersMap.put(primaryName, flower);
+        Flower previous = flowersMap.put(primaryName, flower);
         primaryToAliasesMap.put(primaryName, normalizedAliases);
         nameToPrimaryMap.put(primaryName, primaryName);
         for (String alias : normalizedAliases) {
             nameToPrimaryMap.put(alias, primaryName);
         }
+        notifier.fire(previous == null ? FlowerChange.added(flower) : FlowerChange.replaced(previous, flower));
     }
 
     public Flower getFlower(String name) {
@@ -235,9 +400,12 @@ public class FlowerDatabase implements IFlowerDatabase {
             for (String alias : aliases) {
                 nameToPrimaryMap.remove(alias);
             }
-            flowersMap.remove(primaryName);
+            Flower removed = flowersMap.remove(primaryName);
             primaryToAliasesMap.remove(primaryName);
             nameToPrimaryMap.remove(primaryName);
+            if (removed != null) {
+                notifier.fire(FlowerChange.removed(removed));
+            }
         }
     }
 
@@ -249,6 +417,18 @@ public class FlowerDatabase implements IFlowerDatabase {
         return flowersMap;
     }
 
+    public void addListener(IFlowerDatabaseListener listener) {
+        notifier.addListener(listener);
+    }
+
+    public void removeListener(IFlowerDatabaseListener listener) {
+        notifier.removeListener(listener);
+    }
+
+    public void batchUpdate(Runnable edits) {
+        notifier.batch(edits);
+    }
+
     public String getPrimaryName(String primOrAlias) {
         return this.nameToPrimaryMap.get(primOrAlias);
     }
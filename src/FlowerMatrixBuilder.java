@@ -1,27 +1,51 @@
 import java.util.*;
+import java.util.stream.IntStream;
 
-public class FlowerMatrixBuilder {
-    private FlowerDatabase flowerDatabase;
-    private Map<String, Set<String>> attributeOptions;
-    private List<Flower> flowers;
-    private List<String> attributes;
-    private List<String> flowerNames; // List to store flower names in the order of matrix rows
+/*
+ * Keeps the 0/1 flower x attribute matrix of a database up to date as the database changes.
+ * The builder listens to the database: an added flower appends a row, a deleted one leaves a
+ * tombstone row, and a replaced one keeps its row. Attribute values first seen in a new flower
+ * get columns at the end, so existing columns are never renumbered. Tombstones are squeezed out
+ * by compact(), which runs once they make up a quarter of the rows or when called; reading the
+ * matrix or the flower names never renumbers rows, it skips the tombstones instead.
+ * Every change batch bumps the version; consumers holding their own per-row state ask
+ * getChangesSince(version) and update only the rows listed there.
+ * Like the databases, the builder is not synchronized.
+ */
+public class FlowerMatrixBuilder implements IFlowerDatabaseListener {
+    private static final int MIN_ZONE = 1;
+    private static final int MAX_ZONE = 13;
+    private static final int MIN_TOMBSTONES_TO_COMPACT = 32;
 
+    private IFlowerDatabase flowerDatabase;
+    private List<String> attributes; // append-only, the matrix columns in order
+    private Map<String, Integer> attributeColumns; // attribute -> column, e.g. "SunNeeds:shade" -> 35
+    // column of every dictionary id, per AttributeCategory ordinal; -1 until the id is resolved
+    private int[][] columnsById;
 
-    public FlowerMatrixBuilder(FlowerDatabase flowerDatabase) {
+    // row -> flower and its columns; a deleted flower's row holds null and no columns
+    private List<Flower> rowFlowers;
+    private List<int[]> rowFeatures;
+    private long[] rowVersions; // the version that last changed each row
+    private Map<Flower, Integer> rowOf;
+    private int tombstones;
+    private long version;
+    private long compactionVersion; // rows were renumbered at this version
+    private List<String> flowerNames; // names of the rows, null when rows changed since
+
+
+    public FlowerMatrixBuilder(IFlowerDatabase flowerDatabase) {
         this.flowerDatabase = flowerDatabase;
-        this.flowerNames = new ArrayList<>();
         FlowerAttributesCollector collector = new FlowerAttributesCollector(flowerDatabase);
-        this.attributeOptions = collector.collectAttributeOptions();
-        initializeFlowersAndAttributes();
+        initializeFlowersAndAttributes(collector.collectAttributeOptions());
+        flowerDatabase.addListener(this);
     }
 
-    private void initializeFlowersAndAttributes() {
-        this.flowers = new ArrayList<>(flowerDatabase.getFlowersMap().values());
+    private void initializeFlowersAndAttributes(Map<String, Set<String>> attributeOptions) {
         this.attributes = new ArrayList<>();
 
         // Adding specific zone attributes
-        for (int i = 1; i <= 13; i++) {
+        for (int i = MIN_ZONE; i <= MAX_ZONE; i++) {
             this.attributes.add("Zone" + i);
         }
 
@@ -31,34 +55,149 @@ public class FlowerMatrixBuilder {
             Collections.sort(sortedValues);
             sortedValues.forEach(value -> attributes.add(key + ":" + value));
         });
+        indexColumns();
+
+        rowFlowers = new ArrayList<>();
+        rowFeatures = new ArrayList<>();
+        rowVersions = new long[16];
+        rowOf = new IdentityHashMap<>();
+        for (Flower flower : flowerDatabase.getFlowersMap().values()) {
+            appendRow(flower);
+        }
     }
 
-    public int[][] buildMatrix() {
-        int numFlowers = flowers.size();
-        int numAttributes = attributes.size();
-        int[][] matrix = new int[numFlowers][numAttributes];
-
-        for (int i = 0; i < numFlowers; i++) {
-            Flower flower = flowers.get(i);
-            flowerNames.add(flower.getPrimaryName().toLowerCase()); // Store the order of the flower in matrix
-
-            // ####### debugging
-            //System.out.println(flower.getPrimaryName());
-
-            for (int j = 0; j < numAttributes; j++) {
-                String attribute = attributes.get(j);
-                if (attribute.startsWith("Zone")) {
-                    int zone = Integer.parseInt(attribute.substring(4));
-                    matrix[i][j] = (zone >= flower.getMinZone() && zone <= flower.getMaxZone()) ? 1 : 0;
-                } else {
-                    if (isAttributePresent(flower, attribute)) {
-                        matrix[i][j] = 1;
+    // resolves every attribute string once, so that filling a row is only int lookups
+    private void indexColumns() {
+        attributeColumns = new HashMap<>();
+        AttributeDictionary dictionary = AttributeDictionary.getInstance();
+        AttributeCategory[] categories = AttributeCategory.values();
+        columnsById = new int[categories.length][];
+        for (AttributeCategory category : categories) {
+            columnsById[category.ordinal()] = new int[dictionary.size(category)];
+            Arrays.fill(columnsById[category.ordinal()], -1);
+        }
+        for (int column = 0; column < attributes.size(); column++) {
+            String attribute = attributes.get(column);
+            attributeColumns.put(attribute, column);
+            int colon = attribute.indexOf(':');
+            AttributeCategory category = colon < 0 ? null : AttributeCategory.fromKey(attribute.substring(0, colon));
+            if (category == null) {
+                continue; // a zone, placed by its number
+            }
+            int id = dictionary.idOf(category, attribute.substring(colon + 1));
+            int[] columns = columnsById[category.ordinal()];
+            if (id >= 0 && id < columns.length) {
+                columns[id] = column;
+            }
+        }
+    }
+
+    /**
+     * Applies database changes to the rows: appends, tombstones or refreshes only the rows of
+     * the changed flowers, then compacts if tombstones have piled up.
+     */
+    public void onFlowersChanged(List<FlowerChange> changes) {
+        version++;
+        for (FlowerChange change : changes) {
+            switch (change.getType()) {
+                case ADD:
+                    appendRow(change.getNewFlower());
+                    break;
+                case REMOVE:
+                    Integer removed = rowOf.remove(change.getOldFlower());
+                    if (removed != null) {
+                        rowFlowers.set(removed, null);
+                        rowFeatures.set(removed, new int[0]);
+                        rowVersions[removed] = version;
+                        tombstones++;
+                    }
+                    break;
+                case REPLACE:
+                    Integer row = rowOf.remove(change.getOldFlower());
+                    if (row == null) {
+                        appendRow(change.getNewFlower());
                     } else {
-                        matrix[i][j] = 0;
+                        rowOf.put(change.getNewFlower(), row);
+                        rowFlowers.set(row, change.getNewFlower());
+                        rowFeatures.set(row, resolveFeatures(change.getNewFlower()));
+                        rowVersions[row] = version;
                     }
-                }
+                    break;
+                default:
+            }
+        }
+        flowerNames = null;
+        if (tombstones >= MIN_TOMBSTONES_TO_COMPACT && 4 * tombstones >= rowFlowers.size()) {
+            compact();
+        }
+    }
+
+    private void appendRow(Flower flower) {
+        Integer existing = rowOf.get(flower);
+        int row = existing != null ? existing : rowFlowers.size();
+        if (existing == null) {
+            rowFlowers.add(flower);
+            rowFeatures.add(null);
+            rowOf.put(flower, row);
+            if (row == rowVersions.length) {
+                rowVersions = Arrays.copyOf(rowVersions, 2 * row);
             }
         }
+        rowFeatures.set(row, resolveFeatures(flower));
+        rowVersions[row] = version;
+    }
+
+    /**
+     * Drops the tombstone rows, renumbering the live ones in their current order. Consumers
+     * that asked for changes before this see isRebuildRequired.
+     */
+    public void compact() {
+        if (tombstones == 0) {
+            return;
+        }
+        version++;
+        List<Flower> liveFlowers = new ArrayList<>(rowFlowers.size() - tombstones);
+        List<int[]> liveFeatures = new ArrayList<>(rowFlowers.size() - tombstones);
+        rowOf.clear();
+        for (int row = 0; row < rowFlowers.size(); row++) {
+            Flower flower = rowFlowers.get(row);
+            if (flower != null) {
+                rowOf.put(flower, liveFlowers.size());
+                liveFlowers.add(flower);
+                liveFeatures.add(rowFeatures.get(row));
+            }
+        }
+        rowFlowers = liveFlowers;
+        rowFeatures = liveFeatures;
+        rowVersions = new long[Math.max(16, liveFlowers.size())];
+        Arrays.fill(rowVersions, version);
+        tombstones = 0;
+        compactionVersion = version;
+        flowerNames = null;
+    }
+
+    /**
+     * Builds the 0/1 flower x attribute matrix in its dense form.
+     * Prefer buildBitMatrix, which takes a 32nd of the memory.
+     */
+    public int[][] buildMatrix() {
+        return buildBitMatrix().toIntMatrix();
+    }
+
+    /**
+     * Builds the flower x attribute matrix with one bit per attribute; rows are in the order of
+     * getFlowerNames() and columns in the order of getAttributes(). Tombstones are skipped, so
+     * the rows are exactly the live flowers: matrix row i is builder row getLiveRows()[i].
+     * Rows are copied from the columns kept per row, in parallel (they never share a word).
+     */
+    public BitFeatureMatrix buildBitMatrix() {
+        int[] liveRows = getLiveRows();
+        BitFeatureMatrix matrix = new BitFeatureMatrix(liveRows.length, attributes.size());
+        IntStream.range(0, liveRows.length).parallel().forEach(i -> {
+            for (int column : rowFeatures.get(liveRows[i])) {
+                matrix.set(i, column);
+            }
+        });
 
         // ### Debugging method call
         // printAttributeIndexes();
@@ -66,35 +205,161 @@ public class FlowerMatrixBuilder {
         return matrix;
     }
 
-    private boolean isAttributePresent(Flower flower, String attribute) {
-        String[] parts = attribute.split(":");
-        if (parts.length < 2) return false; // guard against bad splits
-        String category = parts[0];
-        String value = parts[1];
+    /**
+     * The columns a flower would have set in the matrix, ascending; the flower as a feature set.
+     * Works for flowers the builder has not seen, though values without a column are left out.
+     */
+    public int[] getFeatures(Flower flower) {
+        Integer row = rowOf.get(flower);
+        if (row != null) {
+            return rowFeatures.get(row).clone();
+        }
+        return collectColumns(flower, false);
+    }
+
+    // a row's columns; values seen for the first time get new columns at the end
+    private int[] resolveFeatures(Flower flower) {
+        return collectColumns(flower, true);
+    }
+
+    private int[] collectColumns(Flower flower, boolean addColumns) {
+        List<Integer> columns = new ArrayList<>();
+        for (int zone = Math.max(MIN_ZONE, flower.getMinZone()); zone <= Math.min(MAX_ZONE, flower.getMaxZone()); zone++) {
+            columns.add(zone - MIN_ZONE);
+        }
+        for (AttributeCategory category : AttributeCategory.values()) {
+            int[] ids = flower.getAttributeIds(category);
+            if (ids == null) {
+                continue;
+            }
+            for (int id : ids) {
+                int column = columnOf(category, id, addColumns);
+                if (column >= 0) {
+                    columns.add(column);
+                }
+            }
+        }
+        return columns.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+    }
+
+    private int columnOf(AttributeCategory category, int id, boolean addColumn) {
+        if (id < 0) {
+            return -1;
+        }
+        int[] columns = columnsById[category.ordinal()];
+        if (id >= columns.length) {
+            int size = Math.max(id + 1, AttributeDictionary.getInstance().size(category));
+            columns = Arrays.copyOf(columns, size);
+            Arrays.fill(columns, columnsById[category.ordinal()].length, size, -1);
+            columnsById[category.ordinal()] = columns;
+        }
+        if (columns[id] >= 0) {
+            return columns[id];
+        }
+        // same lowercase form as FlowerAttributesCollector gives the initial columns
+        String attribute = category.getKey() + ":" + AttributeDictionary.getInstance().valueOf(category, id).toLowerCase();
+        Integer column = attributeColumns.get(attribute);
+        if (column == null) {
+            if (!addColumn) {
+                return -1;
+            }
+            column = attributes.size();
+            attributes.add(attribute);
+            attributeColumns.put(attribute, column);
+        }
+        columns[id] = column;
+        return column;
+    }
+
+    // the live rows in order, the builder row of every matrix row; all rows when there are no tombstones
+    public int[] getLiveRows() {
+        if (tombstones == 0) {
+            return IntStream.range(0, rowFlowers.size()).toArray();
+        }
+        return IntStream.range(0, rowFlowers.size()).filter(row -> rowFlowers.get(row) != null).toArray();
+    }
+
+    // the number of rows, tombstones included
+    public int getRowCount() {
+        return rowFlowers.size();
+    }
+
+    public int getTombstoneCount() {
+        return tombstones;
+    }
+
+    // false for the row of a deleted flower that has not been compacted away yet
+    public boolean isLive(int row) {
+        return rowFlowers.get(row) != null;
+    }
+
+    // the flower of a row, null for a tombstone
+    public Flower getFlower(int row) {
+        return rowFlowers.get(row);
+    }
+
+    // the row of a flower, -1 if the builder has none for it
+    public int getRow(Flower flower) {
+        Integer row = rowOf.get(flower);
+        return row == null ? -1 : row;
+    }
+
+    // the set columns of a row, ascending; empty for a tombstone
+    public int[] getRowFeatures(int row) {
+        return rowFeatures.get(row).clone();
+    }
 
-        switch (category) {
-            case "PlantType":
-                return flower.getPlantTypes().contains(value);
-            case "Colors":
-                return flower.getColorList().contains(value);
-            case "BloomsSeasons":
-                return flower.getBloomsSeasons().contains(value);
-            case "SunNeeds":
-                return flower.getSunNeeds().contains(value);
-            case "WaterNeeds":
-                return flower.getWaterNeeds().equals(value);
-            case "Maintenance":
-                return flower.getMaintenance().equals(value);
-            default:
-                return false;
+    // bumped by every change batch and every compaction
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * The rows that changed after the given version, e.g. one a consumer read earlier from
+     * getVersion or getToVersion. Takes one pass over the row versions.
+     */
+    public MatrixRowChanges getChangesSince(long sinceVersion) {
+        if (sinceVersion < compactionVersion) {
+            return new MatrixRowChanges(sinceVersion, version, true, IntStream.range(0, rowFlowers.size()).toArray());
         }
+        int[] changed = IntStream.range(0, rowFlowers.size()).filter(row -> rowVersions[row] > sinceVersion).toArray();
+        return new MatrixRowChanges(sinceVersion, version, false, changed);
     }
 
+    /**
+     * Stops following the database; the rows stay as they are.
+     */
+    public void detach() {
+        flowerDatabase.removeListener(this);
+    }
+
+    /**
+     * The column of an attribute such as "Zone7" or "SunNeeds:shade", or -1 if it has none.
+     */
+    public int getColumn(String attribute) {
+        Integer column = attributeColumns.get(attribute);
+        return column == null ? -1 : column;
+    }
+
+    // a read-only view of the columns; grows as new attribute values are seen
     public List<String> getAttributes() {
-        return this.attributes;
+        return Collections.unmodifiableList(this.attributes);
     }
 
+    /**
+     * The names of the matrix rows, the same however often the matrix is built while the
+     * database does not change. Tombstones are skipped, like in buildBitMatrix.
+     */
     public List<String> getFlowerNames() {
+        if (flowerNames == null) {
+            List<String> names = new ArrayList<>(rowFlowers.size() - tombstones);
+            for (Flower flower : rowFlowers) {
+                if (flower != null) {
+                    names.add(flower.getPrimaryName().toLowerCase()); // Store the order of the flower in matrix
+                }
+            }
+            flowerNames = Collections.unmodifiableList(names);
+        }
         return flowerNames;
     }
 
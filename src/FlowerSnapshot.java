@@ -0,0 +1,441 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/*
+ * A compact, versioned binary image of the flower catalog. The file is opened through
+ * read-only memory-mapped FileChannel segments, so several JVMs on one host share the same
+ * pages, and every field of a flower is decoded from the mapping only when its getter is called.
+ * Opening it is not O(1): the caller still hashes the CSV and registers every flower's names.
+ *
+ * Layout (big endian):
+ *   header:  magic, version, 32-byte SHA-256 of the source CSV, parser revision, flower count
+ *   index:   absolute offset of every record, as a long
+ *   record:  minZone, maxZone, min/max height and min/max soil pH as doubles (NaN if unknown),
+ *            offset of each field from the start of the record, then the field payloads
+ * A string is its UTF-8 byte length followed by the bytes, a list is its size followed by
+ * its strings; -1 stands for null in both.
+ */
+public class FlowerSnapshot {
+    private static final int MAGIC = 0x4646534E; // "FFSN"
+    private static final int VERSION = 3; // 2 added the height and soil pH ranges, 3 long offsets and the parser revision
+    private static final int HASH_BYTES = 32;
+    private static final int HEADER_BYTES = 4 + 4 + HASH_BYTES + 4 + 4;
+    private static final int SEGMENT_SHIFT = 30; // 1 GB mappings, a single buffer can't address more than 2 GB
+    private static final int INDEX_CHUNK = 8192; // offsets written per buffer
+
+    // record fields, in the order their offsets are stored
+    private static final int NAME = 0;
+    private static final int ALIAS = 1;
+    private static final int DESC = 2;
+    private static final int PLANT_TYPES = 3;
+    private static final int COLORS = 4;
+    private static final int COLOR_LIST = 5;
+    private static final int BLOOMS_SEASONS = 6;
+    private static final int SUN_NEEDS = 7;
+    private static final int WATER_NEEDS = 8;
+    private static final int MAINTENANCE = 9;
+    private static final int FIELD_COUNT = 10;
+    private static final int FIXED_BYTES = 4 + 4 + 4 * 8; // zones, then height and pH ranges
+
+    private final ByteBuffer[] segments;
+    private final int segmentShift;
+    private final long length;
+    private final byte[] sourceHash;
+    private final int parserRevision;
+    private final int size;
+
+    private FlowerSnapshot(ByteBuffer[] segments, int segmentShift, long length) throws IOException {
+        this.segments = segments;
+        this.segmentShift = segmentShift;
+        this.length = length;
+        if (length < HEADER_BYTES || getInt(0) != MAGIC) {
+            throw new IOException("Not a flower snapshot");
+        }
+        if (getInt(4) != VERSION) {
+            throw new IOException("Unsupported flower snapshot version " + getInt(4));
+        }
+        this.sourceHash = new byte[HASH_BYTES];
+        get(8, sourceHash);
+        this.parserRevision = getInt(8 + HASH_BYTES);
+        this.size = getInt(8 + HASH_BYTES + 4);
+        if (size < 0 || HEADER_BYTES + 8L * size > length) {
+            throw new IOException("Truncated flower snapshot");
+        }
+    }
+
+    /**
+     * Maps an existing snapshot file into memory.
+     * @param path The snapshot file.
+     * @return the opened snapshot.
+     * @throws IOException if the file can't be read or is not a snapshot of this version.
+     */
+    public static FlowerSnapshot open(Path path) throws IOException {
+        return open(path, SEGMENT_SHIFT);
+    }
+
+    // maps the file in segments of 2^segmentShift bytes; small segments let tests cross their boundaries
+    static FlowerSnapshot open(Path path, int segmentShift) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the mappings stay valid after the channel is closed
+            long length = channel.size();
+            long segmentBytes = 1L << segmentShift;
+            ByteBuffer[] segments = new ByteBuffer[(int) ((length + segmentBytes - 1) >>> segmentShift)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << segmentShift;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentBytes, length - start));
+            }
+            return new FlowerSnapshot(segments, segmentShift, length);
+        }
+    }
+
+    /**
+     * Writes the given flowers as a snapshot of the CSV with the given hash, parsed by the given
+     * revision of the parser. Records are streamed to the file, which is written next to the
+     * target and moved into place, so readers never see a partial file.
+     */
+    public static void write(Path path, byte[] sourceHash, int parserRevision, Collection<Flower> flowers)
+            throws IOException {
+        long recordsStart = HEADER_BYTES + 8L * flowers.size();
+        long[] recordOffsets = new long[flowers.size()];
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(recordsStart);
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            long position = recordsStart;
+            int i = 0;
+            for (Flower flower : flowers) {
+                record.reset();
+                writeRecord(new DataOutputStream(record), flower);
+                recordOffsets[i++] = position;
+                record.writeTo(out);
+                position += record.size();
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).put(sourceHash, 0, HASH_BYTES)
+                    .putInt(parserRevision).putInt(flowers.size());
+            header.flip();
+            writeFully(channel, header, 0);
+            ByteBuffer index = ByteBuffer.allocate(8 * INDEX_CHUNK);
+            for (int from = 0; from < recordOffsets.length; from += INDEX_CHUNK) {
+                index.clear();
+                for (int j = from; j < Math.min(recordOffsets.length, from + INDEX_CHUNK); j++) {
+                    index.putLong(recordOffsets[j]);
+                }
+                index.flip();
+                writeFully(channel, index, HEADER_BYTES + 8L * from);
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, Flower flower) throws IOException {
+        byte[][] fields = new byte[FIELD_COUNT][];
+        fields[NAME] = encode(flower.getPrimaryName());
+        fields[ALIAS] = encode(flower.getAlias());
+        fields[DESC] = encode(flower.getDesc());
+        fields[PLANT_TYPES] = encode(flower.getPlantTypes());
+        fields[COLORS] = encode(flower.getColors());
+        fields[COLOR_LIST] = encode(flower.getColorList());
+        fields[BLOOMS_SEASONS] = encode(flower.getBloomsSeasons());
+        fields[SUN_NEEDS] = encode(flower.getSunNeeds());
+        fields[WATER_NEEDS] = encode(flower.getWaterNeeds());
+        fields[MAINTENANCE] = encode(flower.getMaintenance());
+
+        out.writeInt(flower.getMinZone());
+        out.writeInt(flower.getMaxZone());
+        out.writeDouble(flower.getMinHeightCm());
+        out.writeDouble(flower.getMaxHeightCm());
+        out.writeDouble(flower.getMinSoilPh());
+        out.writeDouble(flower.getMaxSoilPh());
+        int fieldOffset = FIXED_BYTES + 4 * FIELD_COUNT;
+        for (byte[] field : fields) {
+            out.writeInt(fieldOffset);
+            fieldOffset += field.length;
+        }
+        for (byte[] field : fields) {
+            out.write(field);
+        }
+        out.flush();
+    }
+
+    private static byte[] encode(String value) {
+        if (value == null) {
+            return ByteBuffer.allocate(4).putInt(-1).array();
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(4 + bytes.length).putInt(bytes.length).put(bytes).array();
+    }
+
+    private static byte[] encode(List<String> values) {
+        if (values == null) {
+            return ByteBuffer.allocate(4).putInt(-1).array();
+        }
+        List<byte[]> encoded = new ArrayList<>();
+        int length = 4;
+        for (String value : values) {
+            byte[] bytes = encode(value);
+            encoded.add(bytes);
+            length += bytes.length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(length).putInt(values.size());
+        encoded.forEach(out::put);
+        return out.array();
+    }
+
+    /**
+     * Computes the SHA-256 of a file, which is what a snapshot is keyed on.
+     */
+    public static byte[] hashFile(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        byte[] chunk = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(chunk)) > 0) {
+                digest.update(chunk, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    // true if the snapshot was taken of this CSV and parsed the way the current parser would
+    public boolean matches(byte[] csvHash, int parserRevision) {
+        return this.parserRevision == parserRevision && Arrays.equals(sourceHash, csvHash);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a read-only view of the i-th flower; no field is decoded yet.
+     */
+    public Flower getFlower(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Flower " + i + " of " + size);
+        }
+        return new MappedFlower(getLong(HEADER_BYTES + 8L * i));
+    }
+
+    // absolute reads across the segments, safe to share between threads
+
+    private int getInt(long position) {
+        ByteBuffer segment = segments[(int) (position >>> segmentShift)];
+        int offset = (int) (position & ((1L << segmentShift) - 1));
+        if (offset + 4 <= segment.limit()) {
+            return segment.getInt(offset);
+        }
+        byte[] bytes = new byte[4];
+        get(position, bytes);
+        return ByteBuffer.wrap(bytes).getInt();
+    }
+
+    private long getLong(long position) {
+        ByteBuffer segment = segments[(int) (position >>> segmentShift)];
+        int offset = (int) (position & ((1L << segmentShift) - 1));
+        if (offset + 8 <= segment.limit()) {
+            return segment.getLong(offset);
+        }
+        byte[] bytes = new byte[8];
+        get(position, bytes);
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+
+    private double getDouble(long position) {
+        return Double.longBitsToDouble(getLong(position));
+    }
+
+    private void get(long position, byte[] bytes) {
+        if (position < 0 || position + bytes.length > length) {
+            throw new IndexOutOfBoundsException("Bytes " + position + "+" + bytes.length + " of " + length);
+        }
+        int copied = 0;
+        while (copied < bytes.length) {
+            ByteBuffer segment = segments[(int) ((position + copied) >>> segmentShift)];
+            int offset = (int) ((position + copied) & ((1L << segmentShift) - 1));
+            int count = Math.min(bytes.length - copied, segment.limit() - offset);
+            segment.get(offset, bytes, copied, count);
+            copied += count;
+        }
+    }
+
+    private long fieldOffset(long record, int field) {
+        return record + getInt(record + FIXED_BYTES + 4 * field);
+    }
+
+    private String readString(long offset) {
+        int length = getInt(offset);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private List<String> readList(long offset) {
+        int count = getInt(offset);
+        if (count < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(count);
+        long position = offset + 4;
+        for (int i = 0; i < count; i++) {
+            int length = getInt(position);
+            values.add(readString(position));
+            position += 4 + Math.max(length, 0);
+        }
+        return values;
+    }
+
+    /**
+     * A flower whose fields live in the mapped snapshot and are decoded on every access.
+     */
+    private class MappedFlower extends ReadOnlyFlower {
+        private final long record;
+
+        private volatile int[][] attributeIds; // interned on first use, they are small
+
+        MappedFlower(long record) {
+            this.record = record;
+        }
+
+        @Override
+        public int[] getAttributeIds(AttributeCategory category) {
+            int[][] ids = attributeIds;
+            if (ids == null) {
+                AttributeDictionary dictionary = AttributeDictionary.getInstance();
+                ids = new int[AttributeCategory.values().length][];
+                ids[AttributeCategory.PLANT_TYPE.ordinal()] = internAll(dictionary, AttributeCategory.PLANT_TYPE, getPlantTypes());
+                ids[AttributeCategory.COLORS.ordinal()] = internAll(dictionary, AttributeCategory.COLORS, getColorList());
+                ids[AttributeCategory.BLOOMS_SEASONS.ordinal()] = internAll(dictionary, AttributeCategory.BLOOMS_SEASONS, getBloomsSeasons());
+                ids[AttributeCategory.SUN_NEEDS.ordinal()] = internAll(dictionary, AttributeCategory.SUN_NEEDS, getSunNeeds());
+                String waterNeeds = getWaterNeeds();
+                ids[AttributeCategory.WATER_NEEDS.ordinal()] = waterNeeds == null ? null
+                        : new int[]{dictionary.intern(AttributeCategory.WATER_NEEDS, waterNeeds)};
+                String maintenance = getMaintenance();
+                ids[AttributeCategory.MAINTENANCE.ordinal()] = maintenance == null ? null
+                        : new int[]{dictionary.intern(AttributeCategory.MAINTENANCE, maintenance)};
+                attributeIds = ids;
+            }
+            return ids[category.ordinal()];
+        }
+
+        private int[] internAll(AttributeDictionary dictionary, AttributeCategory category, List<String> values) {
+            return values == null ? null : dictionary.internAll(category, values);
+        }
+
+        @Override
+        public String getPrimaryName() {
+            return readString(fieldOffset(record, NAME));
+        }
+
+        @Override
+        public List<String> getAlias() {
+            return readList(fieldOffset(record, ALIAS));
+        }
+
+        @Override
+        public String getDesc() {
+            return readString(fieldOffset(record, DESC));
+        }
+
+        @Override
+        public List<String> getPlantTypes() {
+            return readList(fieldOffset(record, PLANT_TYPES));
+        }
+
+        @Override
+        public String getColors() {
+            return readString(fieldOffset(record, COLORS));
+        }
+
+        @Override
+        public List<String> getColorList() {
+            return readList(fieldOffset(record, COLOR_LIST));
+        }
+
+        @Override
+        public int getMinZone() {
+            return getInt(record);
+        }
+
+        @Override
+        public int getMaxZone() {
+            return getInt(record + 4);
+        }
+
+        @Override
+        public double getMinHeightCm() {
+            return getDouble(record + 8);
+        }
+
+        @Override
+        public double getMaxHeightCm() {
+            return getDouble(record + 16);
+        }
+
+        @Override
+        public double getMinSoilPh() {
+            return getDouble(record + 24);
+        }
+
+        @Override
+        public double getMaxSoilPh() {
+            return getDouble(record + 32);
+        }
+
+        @Override
+        public List<String> getBloomsSeasons() {
+            return readList(fieldOffset(record, BLOOMS_SEASONS));
+        }
+
+        @Override
+        public List<String> getSunNeeds() {
+            return readList(fieldOffset(record, SUN_NEEDS));
+        }
+
+        @Override
+        public String getWaterNeeds() {
+            return readString(fieldOffset(record, WATER_NEEDS));
+        }
+
+        @Override
+        public String getMaintenance() {
+            return readString(fieldOffset(record, MAINTENANCE));
+        }
+    }
+}
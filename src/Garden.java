@@ -84,9 +84,14 @@ public class Garden implements IGarden {
     public List<Flower> findSuitableFlowers() {
         List<Flower> zoneSuitableFlowers = searchEngine.searchByZone(this.hardinessZone);
 
+        // resolve the garden's conditions to dictionary ids once, then compare ints per flower
+        AttributeDictionary dictionary = AttributeDictionary.getInstance();
+        int sunId = dictionary.idOf(AttributeCategory.SUN_NEEDS, this.sunExposure.toLowerCase());
+        int waterId = dictionary.idOf(AttributeCategory.WATER_NEEDS, this.waterSupply.toLowerCase());
+
         return zoneSuitableFlowers.stream()
-                .filter(flower -> flower.getSunNeeds().contains(this.sunExposure.toLowerCase()) &&
-                        flower.getWaterNeeds().equalsIgnoreCase(this.waterSupply.toLowerCase()))
+                .filter(flower -> flower.hasAttribute(AttributeCategory.SUN_NEEDS, sunId) &&
+                        flower.hasAttribute(AttributeCategory.WATER_NEEDS, waterId))
                 .collect(Collectors.toList());
     }
 
@@ -15,20 +15,20 @@ public class GardenFlowerSearchApp {
     public static void main(String[] args) {
         // Initialize the FlowerDatabase and SearchEngine
         flowerDatabase = new FlowerDatabase();
-        flowerDatabase.loadFlowersFromCSV("src/resource/FlowerDatabase.csv");
+        flowerDatabase.loadFlowersWithSnapshot("src/resource/FlowerDatabase.csv", "src/resource/FlowerDatabase.snapshot");
         searchEngine = new SearchEngine(flowerDatabase);
 //        recommendationEngine = new RecommendationEngine(flowerDatabase);
 
         // initialize cosine similarity matrix
         flowerMatrixBuilder = new FlowerMatrixBuilder(flowerDatabase);
-        int[][] flowerMatrix = flowerMatrixBuilder.buildMatrix();
+        BitFeatureMatrix flowerMatrix = flowerMatrixBuilder.buildBitMatrix();
         List<String> flowerNames = flowerMatrixBuilder.getFlowerNames(); // the order of flowers in matrix
 
         // #### debug usage:
 //        cosineSimilarityCalculator.printSimilarityScores(cosineSimilarityMatrix, flowerNames);
 
         // initialize the quadTree
-        tsneProcessor = new TSNEProcessor(flowerMatrix, flowerNames);
+        tsneProcessor = TSNEProcessor.loadOrRun(flowerMatrix, flowerNames, "src/resource/FlowerDatabase.tsne");
         double[][] tsneResults = tsneProcessor.getTsneResults();
 
         // Initialize the QuadTree with boundary based on min and max t-SNE values
@@ -179,7 +179,9 @@ public class GardenFlowerSearchApp {
             System.out.println("2. Search by hardiness zone");
             System.out.println("3. Search by category");
             System.out.println("4. Search by multiple categories");
-            System.out.println("5. Exit");
+            System.out.println("5. Search by hardiness zone range");
+            System.out.println("6. Search with a query, e.g. (PlantType:bulbs OR PlantType:herbs) AND NOT Maintenance:hard");
+            System.out.println("7. Exit");
 
             System.out.print("Enter your choice: ");
             int choice = scanner.nextInt();
@@ -199,6 +201,12 @@ public class GardenFlowerSearchApp {
                     searchByMultipleCategories();
                     break;
                 case 5:
+                    searchByZoneRange();
+                    break;
+                case 6:
+                    searchByQuery();
+                    break;
+                case 7:
                     System.out.println("Returning to Main Menu.");
                     keepRunning = false;
                     break;
@@ -234,6 +242,46 @@ public class GardenFlowerSearchApp {
         }
     }
 
+    private static void searchByQuery() {
+        System.out.println("Height (cm) and soil pH take ranges, e.g. Color:blue AND Height:0-60 AND SoilPh:6-7");
+        System.out.print("Enter your query: ");
+        String query = scanner.nextLine();
+        Set<Flower> flowers;
+        try {
+            flowers = searchEngine.query(query);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        if (!flowers.isEmpty()) {
+            System.out.println("Flowers matching your query:");
+            flowers.forEach(flower -> System.out.println(flower.getPrimaryName()));
+        } else {
+            System.out.println("No flowers found matching the query.");
+        }
+    }
+
+    private static void searchByZoneRange() {
+        System.out.print("Enter the lowest hardiness zone: ");
+        int lo = scanner.nextInt();
+        System.out.print("Enter the highest hardiness zone: ");
+        int hi = scanner.nextInt();
+        scanner.nextLine(); // consume newline
+        if (lo > hi) {
+            System.out.println("The lowest zone must not be above the highest zone.");
+            return;
+        }
+        System.out.print("Only flowers that survive in every zone of the range? (yes/no): ");
+        boolean fullyContained = scanner.nextLine().trim().equalsIgnoreCase("yes");
+        List<Flower> flowers = searchEngine.searchByZoneRange(lo, hi, fullyContained);
+        if (!flowers.isEmpty()) {
+            System.out.println("Flowers suitable for zones " + lo + "-" + hi + ":");
+            flowers.forEach(flower -> System.out.println(flower.getPrimaryName()));
+        } else {
+            System.out.println("No flowers found for zones " + lo + "-" + hi);
+        }
+    }
+
     private static void searchByCategory() {
         System.out.println("Select the category to search:");
         Map<Integer, String> categories = new HashMap<>();
@@ -0,0 +1,76 @@
+/**
+ * Throughput report produced by the parallel CSV ingestion pipeline of FlowerDatabase.
+ * Keeps the raw counters and the time spent in each stage (split, parse, merge),
+ * so the speedup over the sequential loader can be read off directly.
+ */
+public class IngestionReport {
+    private final long records;
+    private final long bytes;
+    private final int chunks;
+    private final int parallelism;
+    private final long splitNanos;
+    private final long parseNanos;
+    private final long mergeNanos;
+
+    public IngestionReport(long records, long bytes, int chunks, int parallelism,
+                           long splitNanos, long parseNanos, long mergeNanos) {
+        this.records = records;
+        this.bytes = bytes;
+        this.chunks = chunks;
+        this.parallelism = parallelism;
+        this.splitNanos = splitNanos;
+        this.parseNanos = parseNanos;
+        this.mergeNanos = mergeNanos;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public long getSplitNanos() {
+        return splitNanos;
+    }
+
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    public long getMergeNanos() {
+        return mergeNanos;
+    }
+
+    public long getTotalNanos() {
+        return splitNanos + parseNanos + mergeNanos;
+    }
+
+    public double getRecordsPerSecond() {
+        long total = getTotalNanos();
+        return total == 0 ? 0.0 : records * 1e9 / total;
+    }
+
+    public double getMegabytesPerSecond() {
+        long total = getTotalNanos();
+        return total == 0 ? 0.0 : (bytes / (1024.0 * 1024.0)) * 1e9 / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Ingested %d records (%.2f MB) in %d chunks on %d threads: "
+                        + "%.0f records/sec, %.2f MB/sec (split %.1f ms, parse %.1f ms, merge %.1f ms)",
+                records, bytes / (1024.0 * 1024.0), chunks, parallelism,
+                getRecordsPerSecond(), getMegabytesPerSecond(),
+                splitNanos / 1e6, parseNanos / 1e6, mergeNanos / 1e6);
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * The rows of a FlowerMatrixBuilder that changed between two versions, as returned by
+ * getChangesSince. A changed row was added, deleted (now a tombstone) or given a replacement
+ * flower; consumers re-read those rows and keep everything else. If the builder compacted in
+ * between, row numbers have moved and the consumer has to rebuild from scratch instead.
+ */
+public class MatrixRowChanges {
+    private final long fromVersion;
+    private final long toVersion;
+    private final boolean rebuildRequired;
+    private final int[] rows;
+
+    MatrixRowChanges(long fromVersion, long toVersion, boolean rebuildRequired, int[] rows) {
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.rebuildRequired = rebuildRequired;
+        this.rows = rows;
+    }
+
+    // the version the changes were asked for
+    public long getFromVersion() {
+        return fromVersion;
+    }
+
+    // the builder's version when the changes were taken; pass it to the next getChangesSince
+    public long getToVersion() {
+        return toVersion;
+    }
+
+    // true if rows were renumbered by a compaction after fromVersion
+    public boolean isRebuildRequired() {
+        return rebuildRequired;
+    }
+
+    // the changed rows, ascending; every row when a rebuild is required
+    public int[] getRows() {
+        return rows.clone();
+    }
+
+    public boolean isEmpty() {
+        return rows.length == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "MatrixRowChanges(" + fromVersion + " -> " + toVersion + (rebuildRequired ? ", rebuild" : "")
+                + ", " + rows.length + " rows)";
+    }
+}
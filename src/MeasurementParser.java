@@ -0,0 +1,128 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pulls numeric ranges out of the free-text "Height" and "SoilNeeds" columns, e.g.
+ * "grows between 30 and 90 cm (1 to 3 ft) in height" gives 30-90 and
+ * "well drained soil, with a pH between 5.5 and 7.0" gives 5.5-7.0.
+ * Both return {low, high}, or null when the text states no number.
+ */
+public class MeasurementParser {
+    private static final String NUMBER = "(\\d+(?:[.,]\\d+)?)";
+    private static final String RANGE = NUMBER + "(?:\\s*(?:-|\\u2013|to|and)\\s*" + NUMBER + ")?";
+    // metric lengths only; the imperial figures in parentheses repeat them
+    private static final Pattern LENGTH = Pattern.compile(RANGE
+            + "\\s*(mm|cm|centimet(?:er|re)s?|m|met(?:er|re)s?)\\b", Pattern.CASE_INSENSITIVE);
+    // sizes of the blossoms or the spread, not the height of the plant
+    private static final Pattern NOT_HEIGHT = Pattern.compile("\\b(diameter|across|wide|width|spread)\\b",
+            Pattern.CASE_INSENSITIVE);
+    // ends the words that describe one figure; a point between digits is a decimal
+    private static final Pattern CLAUSE_BREAK = Pattern.compile("[,;]|\\.(?!\\d)|\\band\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PH = Pattern.compile("\\bpH\\b");
+    private static final Pattern PH_RANGE = Pattern.compile(RANGE);
+    private static final int PH_WINDOW = 60; // how far after "pH" its value may be stated
+
+    private MeasurementParser() {
+    }
+
+    /**
+     * The smallest and largest metric height in the text, in centimetres. A single figure
+     * ("grows up to 60 cm") gives the same low and high.
+     */
+    public static double[] parseHeightCm(String text) {
+        if (text == null) {
+            return null;
+        }
+        double low = Double.NaN;
+        double high = Double.NaN;
+        List<MatchResult> figures = new ArrayList<>();
+        Matcher lengths = LENGTH.matcher(text);
+        while (lengths.find()) {
+            figures.add(lengths.toMatchResult());
+        }
+        for (int i = 0; i < figures.size(); i++) {
+            if (isNotHeight(text, figures, i)) {
+                continue;
+            }
+            MatchResult figure = figures.get(i);
+            double scale = centimetresPer(figure.group(3));
+            for (int group = 1; group <= 2; group++) {
+                if (figure.group(group) != null) {
+                    double value = toNumber(figure.group(group)) * scale;
+                    low = Double.isNaN(low) ? value : Math.min(low, value);
+                    high = Double.isNaN(high) ? value : Math.max(high, value);
+                }
+            }
+        }
+        return Double.isNaN(low) ? null : new double[]{low, high};
+    }
+
+    /**
+     * Whether the words around figure i say it is a width or a diameter. Only the text up to
+     * the neighbouring figures counts: the part of a gap before its first clause break
+     * describes the figure ahead of it, the part after its last break the figure behind it.
+     */
+    private static boolean isNotHeight(String text, List<MatchResult> figures, int i) {
+        int gapStart = i == 0 ? 0 : figures.get(i - 1).end();
+        int gapEnd = i == figures.size() - 1 ? text.length() : figures.get(i + 1).start();
+        String before = text.substring(gapStart, figures.get(i).start());
+        String after = text.substring(figures.get(i).end(), gapEnd);
+        Matcher breaks = CLAUSE_BREAK.matcher(before);
+        int lastBreak = -1;
+        while (breaks.find()) {
+            lastBreak = breaks.end();
+        }
+        if (lastBreak >= 0) {
+            before = before.substring(lastBreak);
+        } else if (i > 0) {
+            before = ""; // the whole gap belongs to the previous figure
+        }
+        breaks = CLAUSE_BREAK.matcher(after);
+        if (breaks.find()) {
+            after = after.substring(0, breaks.start());
+        }
+        return NOT_HEIGHT.matcher(before).find() || NOT_HEIGHT.matcher(after).find();
+    }
+
+    /**
+     * The first pH value or range stated after "pH" in the text, within the same sentence.
+     */
+    public static double[] parseSoilPh(String text) {
+        if (text == null) {
+            return null;
+        }
+        Matcher ph = PH.matcher(text);
+        while (ph.find()) {
+            String window = text.substring(ph.end(), Math.min(text.length(), ph.end() + PH_WINDOW));
+            int sentenceEnd = window.indexOf(". ");
+            if (sentenceEnd >= 0) {
+                window = window.substring(0, sentenceEnd);
+            }
+            Matcher range = PH_RANGE.matcher(window);
+            if (range.find()) {
+                double low = toNumber(range.group(1));
+                double high = range.group(2) == null ? low : toNumber(range.group(2));
+                if (low <= high && high <= 14) {
+                    return new double[]{low, high};
+                }
+            }
+        }
+        return null;
+    }
+
+    private static double centimetresPer(String unit) {
+        String lower = unit.toLowerCase();
+        if (lower.equals("mm")) {
+            return 0.1;
+        }
+        return lower.startsWith("c") ? 1 : 100;
+    }
+
+    // some rows write decimals with a comma, "1,5 m"
+    private static double toNumber(String number) {
+        return Double.parseDouble(number.replace(',', '.'));
+    }
+}
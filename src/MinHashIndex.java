@@ -0,0 +1,456 @@
+import java.util.Arrays;
+
+/**
+ * Finds flowers with a high Jaccard similarity without comparing against every flower. Each
+ * flower is a set of feature ids (its set matrix columns, see FlowerMatrixBuilder.getFeatures);
+ * its MinHash signature holds, for each of bands * rowsPerBand hash functions, the smallest hash
+ * of any feature, and two signatures agree in one position with probability equal to the
+ * Jaccard similarity of the sets. The signature is cut into bands; flowers whose band matches in
+ * at least one band land in the same bucket and become candidates, which are then ranked by
+ * their exact Jaccard similarity. Two sets of similarity s collide with probability
+ * 1 - (1 - s^rowsPerBand)^bands: more bands raise recall, more rows per band cut candidates.
+ * <p>
+ * Flowers can be added and removed at any time; only their own buckets change. Ids are the
+ * caller's; an index keyed by FlowerMatrixBuilder row follows the database through update.
+ * Buckets are chains through per-band next arrays over internal slots, and each band's keys sit
+ * in an open-addressing table, as do the ids, so the index needs about 8 bytes per flower per
+ * band plus the feature sets, and nothing is boxed.
+ */
+public class MinHashIndex {
+    private static final int NONE = -1;
+
+    private final int bands;
+    private final int rowsPerBand;
+    private final long[] hashSeeds;
+
+    // slot -> flower id and features; freed slots are reused
+    private int[] idOfSlot = new int[16];
+    private int[][] featuresOfSlot = new int[16][];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int slotCount;
+    private IdTable slotOfId = new IdTable();
+
+    private final BandTable[] tables;
+    private final int[][] next; // next[band][slot]: the next slot in the same bucket
+
+    /**
+     * @param bands Number of bands the signature is cut into.
+     * @param rowsPerBand Signature values per band.
+     * @param seed Seed for the hash functions; indexes with the same seed give the same buckets.
+     */
+    public MinHashIndex(int bands, int rowsPerBand, long seed) {
+        if (bands < 1 || rowsPerBand < 1) {
+            throw new IllegalArgumentException("Need at least one band and one row, got " + bands + "x" + rowsPerBand);
+        }
+        this.bands = bands;
+        this.rowsPerBand = rowsPerBand;
+        this.hashSeeds = new long[bands * rowsPerBand];
+        long state = seed;
+        for (int i = 0; i < hashSeeds.length; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            hashSeeds[i] = mix(state);
+        }
+        this.tables = new BandTable[bands];
+        this.next = new int[bands][16];
+        for (int band = 0; band < bands; band++) {
+            tables[band] = new BandTable();
+        }
+    }
+
+    /**
+     * Removes every flower.
+     */
+    public void clear() {
+        idOfSlot = new int[16];
+        featuresOfSlot = new int[16][];
+        freeSlots = new int[16];
+        freeCount = 0;
+        slotCount = 0;
+        slotOfId = new IdTable();
+        for (int band = 0; band < bands; band++) {
+            tables[band] = new BandTable();
+            next[band] = new int[16];
+        }
+    }
+
+    /**
+     * Brings an index keyed by builder row up to date with the builder: re-indexes the rows that
+     * changed after sinceVersion and drops the deleted ones. If the builder compacted since, the
+     * rows were renumbered and the whole index is rebuilt. Start an empty index with version -1.
+     * @return the version to pass next time.
+     */
+    public long update(FlowerMatrixBuilder builder, long sinceVersion) {
+        MatrixRowChanges changes = builder.getChangesSince(sinceVersion);
+        if (changes.isRebuildRequired()) {
+            clear();
+        }
+        for (int row : changes.getRows()) {
+            if (builder.isLive(row)) {
+                add(row, builder.getRowFeatures(row));
+            } else {
+                remove(row);
+            }
+        }
+        return changes.getToVersion();
+    }
+
+    public int bands() {
+        return bands;
+    }
+
+    public int rowsPerBand() {
+        return rowsPerBand;
+    }
+
+    public int size() {
+        return slotOfId.size();
+    }
+
+    public boolean contains(int id) {
+        return slotOfId.get(id) != NONE;
+    }
+
+    /**
+     * Indexes a flower, replacing it if the id is already indexed.
+     *
+     * @param features The flower's feature ids; copied, duplicates are dropped.
+     */
+    public void add(int id, int[] features) {
+        remove(id);
+        int[] set = toSet(features);
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : newSlot();
+        idOfSlot[slot] = id;
+        featuresOfSlot[slot] = set;
+        slotOfId.put(id, slot);
+        long[] keys = bandKeys(set);
+        for (int band = 0; band < bands; band++) {
+            BandTable table = tables[band];
+            int entry = table.findOrInsert(keys[band]);
+            next[band][slot] = table.heads[entry];
+            table.heads[entry] = slot;
+        }
+    }
+
+    /**
+     * Removes a flower; returns false if it was not indexed.
+     */
+    public boolean remove(int id) {
+        int slot = slotOfId.remove(id);
+        if (slot == NONE) {
+            return false;
+        }
+        long[] keys = bandKeys(featuresOfSlot[slot]);
+        for (int band = 0; band < bands; band++) {
+            BandTable table = tables[band];
+            int entry = table.find(keys[band]);
+            int[] chain = next[band];
+            if (table.heads[entry] == slot) {
+                table.heads[entry] = chain[slot];
+            } else {
+                int previous = table.heads[entry];
+                while (chain[previous] != slot) {
+                    previous = chain[previous];
+                }
+                chain[previous] = chain[slot];
+            }
+        }
+        featuresOfSlot[slot] = null;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        return true;
+    }
+
+    /**
+     * Ids of every indexed flower sharing a bucket with the feature set, in no particular order.
+     */
+    public int[] candidates(int[] features) {
+        FlowerBitmap slots = candidateSlots(toSet(features));
+        int[] ids = new int[slots.getCardinality()];
+        int n = 0;
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            ids[n++] = idOfSlot[slot];
+        }
+        return ids;
+    }
+
+    /**
+     * The k candidates with the highest exact Jaccard similarity to the feature set, most
+     * similar first (ties by lower id). May return fewer than k, or miss a true neighbor whose
+     * signature never collided with the query's.
+     */
+    public int[] query(int[] features, int k) {
+        return rank(toSet(features), k, Integer.MIN_VALUE);
+    }
+
+    /**
+     * The k indexed flowers most similar to an indexed flower, excluding itself.
+     */
+    public int[] similarTo(int id, int k) {
+        int slot = slotOfId.get(id);
+        if (slot == NONE) {
+            throw new IllegalArgumentException("Flower " + id + " is not indexed");
+        }
+        return rank(featuresOfSlot[slot], k, id);
+    }
+
+    private int[] rank(int[] set, int k, int excludedId) {
+        TopKSimilarity.BoundedHeap heap = new TopKSimilarity.BoundedHeap(k);
+        FlowerBitmap slots = candidateSlots(set);
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            if (idOfSlot[slot] != excludedId) {
+                heap.offer(idOfSlot[slot], (float) jaccard(set, featuresOfSlot[slot]));
+            }
+        }
+        return heap.drainIds();
+    }
+
+    private FlowerBitmap candidateSlots(int[] set) {
+        FlowerBitmap slots = new FlowerBitmap();
+        long[] keys = bandKeys(set);
+        for (int band = 0; band < bands; band++) {
+            int entry = tables[band].find(keys[band]);
+            if (entry < 0) {
+                continue;
+            }
+            for (int slot = tables[band].heads[entry]; slot != NONE; slot = next[band][slot]) {
+                slots.add(slot);
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Exact Jaccard similarity of two sorted feature sets; 0 if both are empty.
+     */
+    public static double jaccard(int[] a, int[] b) {
+        int both = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                both++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int either = a.length + b.length - both;
+        return either == 0 ? 0 : (double) both / either;
+    }
+
+    // the MinHash signature, one minimum per hash function
+    int[] signature(int[] set) {
+        int[] signature = new int[hashSeeds.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (int feature : set) {
+            for (int i = 0; i < hashSeeds.length; i++) {
+                int hash = (int) (mix(feature ^ hashSeeds[i]) >>> 33);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private long[] bandKeys(int[] set) {
+        int[] signature = signature(set);
+        long[] keys = new long[bands];
+        for (int band = 0; band < bands; band++) {
+            long key = band;
+            for (int row = band * rowsPerBand, end = row + rowsPerBand; row < end; row++) {
+                key = mix(key * 31 + signature[row]);
+            }
+            keys[band] = key;
+        }
+        return keys;
+    }
+
+    private int newSlot() {
+        if (slotCount == idOfSlot.length) {
+            int capacity = slotCount * 2;
+            idOfSlot = Arrays.copyOf(idOfSlot, capacity);
+            featuresOfSlot = Arrays.copyOf(featuresOfSlot, capacity);
+            for (int band = 0; band < bands; band++) {
+                next[band] = Arrays.copyOf(next[band], capacity);
+            }
+        }
+        return slotCount++;
+    }
+
+    private static int[] toSet(int[] features) {
+        return Arrays.stream(features).sorted().distinct().toArray();
+    }
+
+    // the splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Band key -> first slot of its bucket, linear probing over a power-of-two table. A key whose
+     * bucket empties keeps its entry (head NONE) until the next resize, so probes never break.
+     */
+    private static class BandTable {
+        private long[] keys = new long[16];
+        private int[] heads = new int[16];
+        private boolean[] used = new boolean[16];
+        private int entries;
+
+        // the entry of a key, -1 if it has none
+        int find(long key) {
+            int mask = keys.length - 1;
+            for (int i = (int) mix(key) & mask; used[i]; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int findOrInsert(long key) {
+            int entry = find(key);
+            if (entry >= 0) {
+                return entry;
+            }
+            if (2 * (entries + 1) > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int i = (int) mix(key) & mask;
+            while (used[i]) {
+                i = (i + 1) & mask;
+            }
+            used[i] = true;
+            keys[i] = key;
+            heads[i] = NONE;
+            entries++;
+            return i;
+        }
+
+        // rehashes the non-empty buckets, growing only if they still fill half the table
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldHeads = heads;
+            boolean[] oldUsed = used;
+            int live = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i] && oldHeads[i] != NONE) {
+                    live++;
+                }
+            }
+            int capacity = oldKeys.length;
+            while (4 * (live + 1) > capacity) {
+                capacity *= 2;
+            }
+            keys = new long[capacity];
+            heads = new int[capacity];
+            used = new boolean[capacity];
+            entries = 0;
+            int mask = capacity - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldUsed[j] && oldHeads[j] != NONE) {
+                    int i = (int) mix(oldKeys[j]) & mask;
+                    while (used[i]) {
+                        i = (i + 1) & mask;
+                    }
+                    used[i] = true;
+                    keys[i] = oldKeys[j];
+                    heads[i] = oldHeads[j];
+                    entries++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Flower id -> slot, linear probing over a power-of-two table. Removal shifts the rest of
+     * the probe run back, so there are no deleted markers.
+     */
+    private static class IdTable {
+        private int[] keys = new int[16];
+        private int[] values = new int[16];
+        private boolean[] used = new boolean[16];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        // the slot of an id, NONE if it has none
+        int get(int key) {
+            int mask = keys.length - 1;
+            for (int i = (int) mix(key) & mask; used[i]; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return NONE;
+        }
+
+        void put(int key, int value) {
+            if (2 * (size + 1) > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int i = (int) mix(key) & mask;
+            while (used[i] && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (!used[i]) {
+                used[i] = true;
+                keys[i] = key;
+                size++;
+            }
+            values[i] = value;
+        }
+
+        // removes an id and returns its slot, NONE if it had none
+        int remove(int key) {
+            int mask = keys.length - 1;
+            int hole = (int) mix(key) & mask;
+            while (used[hole] && keys[hole] != key) {
+                hole = (hole + 1) & mask;
+            }
+            if (!used[hole]) {
+                return NONE;
+            }
+            int value = values[hole];
+            // move back every later entry of the run that may sit at or before the hole
+            for (int i = (hole + 1) & mask; used[i]; i = (i + 1) & mask) {
+                int home = (int) mix(keys[i]) & mask;
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    keys[hole] = keys[i];
+                    values[hole] = values[i];
+                    hole = i;
+                }
+            }
+            used[hole] = false;
+            size--;
+            return value;
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            size = 0;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldUsed[j]) {
+                    put(oldKeys[j], oldValues[j]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.Arrays;
+
+/**
+ * The k most similar rows of every row of a feature matrix, as flat arrays: row r's neighbors
+ * are ids[r*k .. r*k + count(r)) with their cosine similarities in scores, most similar first
+ * (ties by lower id). Takes 8 bytes per neighbor, O(N*k) instead of the O(N^2) of a full matrix.
+ */
+public class NeighborLists {
+    private final int size;
+    private final int k;
+    private final int[] ids;
+    private final float[] scores;
+    private final int[] counts;
+
+    NeighborLists(int size, int k) {
+        if (size < 0 || k < 0) {
+            throw new IllegalArgumentException("Negative size " + size + " or k " + k);
+        }
+        if ((long) size * k > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(size + " rows x " + k + " neighbors do not fit in one array");
+        }
+        this.size = size;
+        this.k = k;
+        this.ids = new int[size * k];
+        this.scores = new float[size * k];
+        this.counts = new int[size];
+    }
+
+    // number of rows
+    public int size() {
+        return size;
+    }
+
+    // the most neighbors a row can have
+    public int k() {
+        return k;
+    }
+
+    // neighbors of a row, min(k, size - 1)
+    public int count(int row) {
+        return counts[row];
+    }
+
+    public int neighbor(int row, int rank) {
+        return ids[slot(row, rank)];
+    }
+
+    public float score(int row, int rank) {
+        return scores[slot(row, rank)];
+    }
+
+    // a copy of the ids of a row's neighbors, most similar first
+    public int[] neighbors(int row) {
+        return Arrays.copyOfRange(ids, row * k, row * k + counts[row]);
+    }
+
+    private int slot(int row, int rank) {
+        if (rank < 0 || rank >= counts[row]) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " of " + counts[row] + " neighbors");
+        }
+        return row * k + rank;
+    }
+
+    // called once per row by TopKSimilarity, with the neighbors already in rank order
+    void setRow(int row, int[] rowIds, float[] rowScores, int count) {
+        System.arraycopy(rowIds, 0, ids, row * k, count);
+        System.arraycopy(rowScores, 0, scores, row * k, count);
+        counts[row] = count;
+    }
+
+    public long sizeInBytes() {
+        return 4L * ids.length + 4L * scores.length + 4L * counts.length;
+    }
+}
@@ -0,0 +1,89 @@
+import java.util.Collection;
+import java.util.TreeMap;
+
+/**
+ * A sorted index of the [low, high] ranges of one measure, built like the zone index of
+ * SearchEngine: every flower is filed once under its low and once under its high end, so
+ * each RangeFilter.Match is the intersection of a head or tail of one map with a head or
+ * tail of the other. Flowers without the measure (NaN) are not indexed.
+ */
+public class NumericRangeIndex {
+    private final TreeMap<Double, FlowerBitmap> lows = new TreeMap<>();
+    private final TreeMap<Double, FlowerBitmap> highs = new TreeMap<>();
+
+    public void add(int ordinal, double low, double high) {
+        if (Double.isNaN(low) || Double.isNaN(high)) {
+            return;
+        }
+        lows.computeIfAbsent(low, k -> new FlowerBitmap()).add(ordinal);
+        highs.computeIfAbsent(high, k -> new FlowerBitmap()).add(ordinal);
+    }
+
+    public void remove(int ordinal, double low, double high) {
+        if (Double.isNaN(low) || Double.isNaN(high)) {
+            return;
+        }
+        removeFrom(lows, low, ordinal);
+        removeFrom(highs, high, ordinal);
+    }
+
+    private static void removeFrom(TreeMap<Double, FlowerBitmap> index, double key, int ordinal) {
+        FlowerBitmap posting = index.get(key);
+        if (posting != null) {
+            posting.remove(ordinal);
+            if (posting.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    /**
+     * The ordinals of the flowers whose range relates to [lo, hi] as match says.
+     */
+    public FlowerBitmap query(double lo, double hi, RangeFilter.Match match) {
+        return FlowerBitmap.and(union(lowEnds(lo, hi, match)), union(highEnds(lo, hi, match)));
+    }
+
+    // upper bound from the endpoint statistics alone, nothing is intersected
+    public int estimate(double lo, double hi, RangeFilter.Match match) {
+        return Math.min(count(lowEnds(lo, hi, match)), count(highEnds(lo, hi, match)));
+    }
+
+    private Collection<FlowerBitmap> lowEnds(double lo, double hi, RangeFilter.Match match) {
+        switch (match) {
+            case OVERLAPS:
+                return lows.headMap(hi, true).values();
+            case COVERS:
+                return lows.headMap(lo, true).values();
+            default:
+                return lows.tailMap(lo, true).values();
+        }
+    }
+
+    private Collection<FlowerBitmap> highEnds(double lo, double hi, RangeFilter.Match match) {
+        switch (match) {
+            case OVERLAPS:
+                return highs.tailMap(lo, true).values();
+            case COVERS:
+                return highs.tailMap(hi, true).values();
+            default:
+                return highs.headMap(hi, true).values();
+        }
+    }
+
+    private static FlowerBitmap union(Collection<FlowerBitmap> bitmaps) {
+        FlowerBitmap result = new FlowerBitmap();
+        for (FlowerBitmap bitmap : bitmaps) {
+            result = FlowerBitmap.or(result, bitmap);
+        }
+        return result;
+    }
+
+    private static int count(Collection<FlowerBitmap> bitmaps) {
+        int count = 0;
+        for (FlowerBitmap bitmap : bitmaps) {
+            count += bitmap.getCardinality();
+        }
+        return count;
+    }
+}
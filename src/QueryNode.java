@@ -0,0 +1,249 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A node of a parsed boolean query (see QueryParser). A compiled query is a tree of these;
+ * evaluating it turns every leaf into a posting or zone bitmap of a SearchEngine and combines
+ * them with bitmap AND / OR / ANDNOT, so no Flower is touched until the result is read.
+ */
+public abstract class QueryNode {
+
+    abstract FlowerBitmap evaluate(SearchEngine engine);
+
+    // an upper bound of the result size, used to order the operands of AND
+    abstract int estimate(SearchEngine engine);
+
+    /**
+     * A category filter, "PlantType:perennials", or a bare value matched in every category.
+     */
+    public static class Term extends QueryNode {
+        private final String category; // as written, null for a bare value
+        private final AttributeCategory resolvedCategory;
+        private final String value;
+
+        /**
+         * @throws IllegalArgumentException if the category is not a known category key or alias.
+         */
+        public Term(String category, String value) {
+            this.category = category;
+            this.resolvedCategory = category == null ? null : AttributeCategory.fromKey(category);
+            if (category != null && resolvedCategory == null) {
+                throw new IllegalArgumentException("Unknown category " + category);
+            }
+            this.value = value.toLowerCase();
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        @Override
+        FlowerBitmap evaluate(SearchEngine engine) {
+            return resolvedCategory == null ? engine.anyCategoryPosting(value) : engine.postingOf(resolvedCategory, value);
+        }
+
+        @Override
+        int estimate(SearchEngine engine) {
+            // a bare value is the union of one posting per category, bounded by their sum
+            return resolvedCategory == null ? engine.estimateAnyCategory(value) : engine.estimatePosting(resolvedCategory, value);
+        }
+
+        @Override
+        public String toString() {
+            String quoted = value.matches("[a-z0-9]+") ? value : "\"" + value + "\"";
+            return category == null ? quoted : category + ":" + quoted;
+        }
+    }
+
+    /**
+     * A hardiness zone range, "Zone:5-7" (survives in any of them) or "ZoneAll:5-7" (in all).
+     */
+    public static class ZoneRange extends QueryNode {
+        private final int minZone;
+        private final int maxZone;
+        private final boolean fullyContained;
+
+        public ZoneRange(int minZone, int maxZone, boolean fullyContained) {
+            if (minZone > maxZone) {
+                throw new IllegalArgumentException("Empty zone range " + minZone + "-" + maxZone);
+            }
+            this.minZone = minZone;
+            this.maxZone = maxZone;
+            this.fullyContained = fullyContained;
+        }
+
+        @Override
+        FlowerBitmap evaluate(SearchEngine engine) {
+            return engine.zoneRangeBitmap(minZone, maxZone, fullyContained);
+        }
+
+        @Override
+        int estimate(SearchEngine engine) {
+            return engine.estimateZoneRange(minZone, maxZone, fullyContained);
+        }
+
+        @Override
+        public String toString() {
+            return (fullyContained ? "ZoneAll:" : "Zone:") + minZone + (minZone == maxZone ? "" : "-" + maxZone);
+        }
+    }
+
+    /**
+     * A height or soil pH range, "Height:0-60" or "SoilPh:6-7".
+     */
+    public static class NumericRange extends QueryNode {
+        private final RangeFilter filter;
+
+        public NumericRange(RangeFilter filter) {
+            this.filter = filter;
+        }
+
+        public RangeFilter getFilter() {
+            return filter;
+        }
+
+        @Override
+        FlowerBitmap evaluate(SearchEngine engine) {
+            return engine.rangeBitmap(filter);
+        }
+
+        @Override
+        int estimate(SearchEngine engine) {
+            return engine.estimateRange(filter);
+        }
+
+        @Override
+        public String toString() {
+            String text = filter.toString();
+            return text.substring(0, text.indexOf(' ')); // the match is implied by the measure
+        }
+    }
+
+    public static class Not extends QueryNode {
+        private final QueryNode operand;
+
+        public Not(QueryNode operand) {
+            this.operand = operand;
+        }
+
+        public QueryNode getOperand() {
+            return operand;
+        }
+
+        @Override
+        FlowerBitmap evaluate(SearchEngine engine) {
+            return FlowerBitmap.andNot(engine.allFlowers(), operand.evaluate(engine));
+        }
+
+        @Override
+        int estimate(SearchEngine engine) {
+            return engine.allFlowers().getCardinality();
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + operand;
+        }
+    }
+
+    public static class And extends QueryNode {
+        private final List<QueryNode> operands;
+
+        public And(List<QueryNode> operands) {
+            this.operands = Collections.unmodifiableList(new ArrayList<>(operands));
+        }
+
+        public List<QueryNode> getOperands() {
+            return operands;
+        }
+
+        @Override
+        FlowerBitmap evaluate(SearchEngine engine) {
+            // intersect the positive operands smallest first, then subtract the negated ones
+            List<QueryNode> positives = new ArrayList<>();
+            List<QueryNode> negatives = new ArrayList<>();
+            for (QueryNode operand : operands) {
+                (operand instanceof Not ? negatives : positives).add(operand);
+            }
+            positives.sort(Comparator.comparingInt(operand -> operand.estimate(engine)));
+
+            FlowerBitmap result = positives.isEmpty() ? engine.allFlowers() : null;
+            for (QueryNode operand : positives) {
+                result = result == null ? operand.evaluate(engine) : FlowerBitmap.and(result, operand.evaluate(engine));
+                if (result.isEmpty()) {
+                    return result;
+                }
+            }
+            for (QueryNode negative : negatives) {
+                result = FlowerBitmap.andNot(result, ((Not) negative).getOperand().evaluate(engine));
+                if (result.isEmpty()) {
+                    return result;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        int estimate(SearchEngine engine) {
+            int estimate = Integer.MAX_VALUE;
+            for (QueryNode operand : operands) {
+                estimate = Math.min(estimate, operand.estimate(engine));
+            }
+            return estimate;
+        }
+
+        @Override
+        public String toString() {
+            return join(operands, " AND ");
+        }
+    }
+
+    public static class Or extends QueryNode {
+        private final List<QueryNode> operands;
+
+        public Or(List<QueryNode> operands) {
+            this.operands = Collections.unmodifiableList(new ArrayList<>(operands));
+        }
+
+        public List<QueryNode> getOperands() {
+            return operands;
+        }
+
+        @Override
+        FlowerBitmap evaluate(SearchEngine engine) {
+            FlowerBitmap result = new FlowerBitmap();
+            for (QueryNode operand : operands) {
+                result = FlowerBitmap.or(result, operand.evaluate(engine));
+            }
+            return result;
+        }
+
+        @Override
+        int estimate(SearchEngine engine) {
+            long estimate = 0;
+            for (QueryNode operand : operands) {
+                estimate += operand.estimate(engine);
+            }
+            return (int) Math.min(estimate, engine.allFlowers().getCardinality());
+        }
+
+        @Override
+        public String toString() {
+            return join(operands, " OR ");
+        }
+    }
+
+    private static String join(List<QueryNode> operands, String operator) {
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < operands.size(); i++) {
+            sb.append(i == 0 ? "" : operator).append(operands.get(i));
+        }
+        return sb.append(')').toString();
+    }
+}
@@ -0,0 +1,211 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the boolean search language into a QueryNode tree.
+ *
+ *   query   := or
+ *   or      := and ("OR" and)*
+ *   and     := unary ("AND" unary)*
+ *   unary   := "NOT" unary | "(" or ")" | term
+ *   term    := Category ":" value | "Zone:" range | "ZoneAll:" range | "Height:" measure | "SoilPh:" measure | value
+ *   value   := "quoted text" | word+
+ *   range   := zone | zone "-" zone
+ *   measure := number | number "-" number
+ *
+ * Operators are case-insensitive. An unquoted value runs over several words up to the next
+ * operator or parenthesis, so SunNeeds:full sun needs no quotes; a value without a category
+ * matches that value in any category, and an unknown category is a syntax error. Nested ANDs
+ * and ORs are flattened. Height (in cm) matches flowers that stay within the range, SoilPh
+ * flowers that grow in some part of it.
+ * Example: (PlantType:bulbs OR PlantType:perennials) AND Zone:5-7 AND NOT Maintenance:hard
+ * Example: Color:blue AND Height:0-60 AND SoilPh:6-7
+ */
+public class QueryParser {
+    private static final String ZONE = "zone";
+    private static final String ZONE_ALL = "zoneall";
+
+    private final String text;
+    private int pos;
+
+    private QueryParser(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the text is not a valid query.
+     */
+    public static QueryNode parse(String text) {
+        QueryParser parser = new QueryParser(text);
+        QueryNode query = parser.parseOr();
+        parser.skipWhitespace();
+        if (parser.pos < text.length()) {
+            throw parser.error("Unexpected '" + text.charAt(parser.pos) + "'");
+        }
+        return query;
+    }
+
+    private QueryNode parseOr() {
+        List<QueryNode> operands = new ArrayList<>();
+        addFlattened(operands, parseAnd(), QueryNode.Or.class);
+        while (acceptKeyword("OR")) {
+            addFlattened(operands, parseAnd(), QueryNode.Or.class);
+        }
+        return operands.size() == 1 ? operands.get(0) : new QueryNode.Or(operands);
+    }
+
+    private QueryNode parseAnd() {
+        List<QueryNode> operands = new ArrayList<>();
+        addFlattened(operands, parseUnary(), QueryNode.And.class);
+        while (acceptKeyword("AND")) {
+            addFlattened(operands, parseUnary(), QueryNode.And.class);
+        }
+        return operands.size() == 1 ? operands.get(0) : new QueryNode.And(operands);
+    }
+
+    private static void addFlattened(List<QueryNode> operands, QueryNode operand, Class<? extends QueryNode> kind) {
+        if (operand instanceof QueryNode.And && kind == QueryNode.And.class) {
+            operands.addAll(((QueryNode.And) operand).getOperands());
+        } else if (operand instanceof QueryNode.Or && kind == QueryNode.Or.class) {
+            operands.addAll(((QueryNode.Or) operand).getOperands());
+        } else {
+            operands.add(operand);
+        }
+    }
+
+    private QueryNode parseUnary() {
+        if (acceptKeyword("NOT")) {
+            QueryNode operand = parseUnary();
+            // NOT NOT x is x
+            return operand instanceof QueryNode.Not ? ((QueryNode.Not) operand).getOperand() : new QueryNode.Not(operand);
+        }
+        skipWhitespace();
+        if (pos < text.length() && text.charAt(pos) == '(') {
+            pos++;
+            QueryNode inner = parseOr();
+            skipWhitespace();
+            if (pos == text.length() || text.charAt(pos) != ')') {
+                throw error("Missing ')'");
+            }
+            pos++;
+            return inner;
+        }
+        return parseTerm();
+    }
+
+    private QueryNode parseTerm() {
+        skipWhitespace();
+        int start = pos;
+        String word = peekWord();
+        if (!word.isEmpty() && pos + word.length() < text.length() && text.charAt(pos + word.length()) == ':') {
+            pos += word.length() + 1;
+            String value = parseValue();
+            String category = word.toLowerCase();
+            if (category.equals(ZONE) || category.equals(ZONE_ALL)) {
+                return parseZoneRange(value, category.equals(ZONE_ALL), start);
+            }
+            RangeFilter.Measure measure = RangeFilter.Measure.fromKey(word);
+            if (measure != null) {
+                return parseMeasureRange(measure, value, start);
+            }
+            if (AttributeCategory.fromKey(word) == null) {
+                pos = start;
+                throw error("Unknown category '" + word + "'");
+            }
+            return new QueryNode.Term(word, value);
+        }
+        return new QueryNode.Term(null, parseValue());
+    }
+
+    private QueryNode parseZoneRange(String range, boolean fullyContained, int start) {
+        String[] bounds = range.replace(" ", "").split("-", -1);
+        try {
+            int lo = Integer.parseInt(bounds[0]);
+            int hi = bounds.length == 1 ? lo : Integer.parseInt(bounds[1]);
+            if (bounds.length > 2 || lo > hi) {
+                throw new NumberFormatException();
+            }
+            return new QueryNode.ZoneRange(lo, hi, fullyContained);
+        } catch (NumberFormatException e) {
+            pos = start;
+            throw error("Invalid zone range '" + range + "'");
+        }
+    }
+
+    private QueryNode parseMeasureRange(RangeFilter.Measure measure, String range, int start) {
+        String[] bounds = range.replace(" ", "").split("-", -1);
+        try {
+            double lo = Double.parseDouble(bounds[0]);
+            double hi = bounds.length == 1 ? lo : Double.parseDouble(bounds[1]);
+            if (bounds.length > 2 || !(lo <= hi)) {
+                throw new NumberFormatException();
+            }
+            RangeFilter.Match match = measure == RangeFilter.Measure.HEIGHT_CM ? RangeFilter.Match.WITHIN
+                    : RangeFilter.Match.OVERLAPS;
+            return new QueryNode.NumericRange(new RangeFilter(measure, lo, hi, match));
+        } catch (NumberFormatException e) {
+            pos = start;
+            throw error("Invalid " + measure.getKey() + " range '" + range + "'");
+        }
+    }
+
+    private String parseValue() {
+        skipWhitespace();
+        if (pos < text.length() && text.charAt(pos) == '"') {
+            int end = text.indexOf('"', pos + 1);
+            if (end < 0) {
+                throw error("Unterminated quote");
+            }
+            String value = text.substring(pos + 1, end);
+            pos = end + 1;
+            return value;
+        }
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            skipWhitespace();
+            String word = peekWord();
+            if (word.isEmpty() || isKeyword(word)) {
+                break;
+            }
+            value.append(value.length() == 0 ? "" : " ").append(word);
+            pos += word.length();
+        }
+        if (value.length() == 0) {
+            throw error(pos == text.length() ? "Unexpected end of query" : "Expected a value");
+        }
+        return value.toString();
+    }
+
+    // the run of characters at pos up to whitespace, a parenthesis, a quote or a colon
+    private String peekWord() {
+        int end = pos;
+        while (end < text.length() && " \t\r\n()\":".indexOf(text.charAt(end)) < 0) {
+            end++;
+        }
+        return text.substring(pos, end);
+    }
+
+    private static boolean isKeyword(String word) {
+        return word.equalsIgnoreCase("AND") || word.equalsIgnoreCase("OR") || word.equalsIgnoreCase("NOT");
+    }
+
+    private boolean acceptKeyword(String keyword) {
+        skipWhitespace();
+        String word = peekWord();
+        if (word.equalsIgnoreCase(keyword)) {
+            pos += word.length();
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos + " of query: " + text);
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The order in which SearchEngine applied the filters of a SearchQuery, with the cardinality
+ * it estimated for each filter up front and the size of the running result after applying it.
+ */
+public class QueryPlan {
+    public static final int NOT_EXECUTED = -1;
+
+    /**
+     * One filter of the plan.
+     */
+    public static class Step {
+        private final String filter;
+        private final int estimatedCardinality;
+        private final int actualCardinality;
+
+        Step(String filter, int estimatedCardinality, int actualCardinality) {
+            this.filter = filter;
+            this.estimatedCardinality = estimatedCardinality;
+            this.actualCardinality = actualCardinality;
+        }
+
+        public String getFilter() {
+            return filter;
+        }
+
+        // size of the posting, or an upper bound of it for zone filters
+        public int getEstimatedCardinality() {
+            return estimatedCardinality;
+        }
+
+        // size of the result after this step, or NOT_EXECUTED if an earlier step emptied it
+        public int getActualCardinality() {
+            return actualCardinality;
+        }
+    }
+
+    private final List<Step> steps;
+    private final int resultCardinality;
+
+    QueryPlan(List<Step> steps, int resultCardinality) {
+        this.steps = Collections.unmodifiableList(steps);
+        this.resultCardinality = resultCardinality;
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    public int getResultCardinality() {
+        return resultCardinality;
+    }
+
+    static String zoneFilter(int minZone, int maxZone, boolean fullyContained) {
+        if (minZone == maxZone) {
+            return "Zone:" + minZone;
+        }
+        return "Zone:" + minZone + "-" + maxZone + (fullyContained ? " (every zone)" : " (any zone)");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            sb.append(String.format("%d. %-40s estimated %6d  actual %s%n", i + 1, step.getFilter(),
+                    step.getEstimatedCardinality(),
+                    step.getActualCardinality() == NOT_EXECUTED ? "skipped" : String.valueOf(step.getActualCardinality())));
+        }
+        return sb.append("result: ").append(resultCardinality).append(" flowers").toString();
+    }
+}
@@ -0,0 +1,135 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * A bounded LRU cache of search results, with an optional time-to-live. Queries are keyed on
+ * SearchQuery.getNormalizedKey(), so the order of the criteria and the case of their values
+ * don't make separate entries. SearchEngine drops exactly the entries whose query matches a
+ * flower that was added, removed or replaced.
+ * @param <V> The cached result type.
+ */
+public class QueryResultCache<V> {
+    private final int maxEntries;
+    private final long ttlNanos; // 0 means entries never expire
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+    private static class Entry<V> {
+        final SearchQuery query;
+        final V result;
+        final long createdAt;
+
+        Entry(SearchQuery query, V result, long createdAt) {
+            this.query = query;
+            this.result = result;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /**
+     * @param maxEntries The number of results kept before the least recently used is evicted.
+     * @param ttlMillis How long a result may be served, or 0 to keep it until evicted or invalidated.
+     */
+    public QueryResultCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, System::nanoTime);
+    }
+
+    QueryResultCache(int maxEntries, long ttlMillis, LongSupplier clock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("A cache needs room for at least one entry");
+        }
+        if (ttlMillis < 0) {
+            throw new IllegalArgumentException("Negative TTL " + ttlMillis);
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.clock = clock;
+    }
+
+    /**
+     * @return the cached result of the query, or null if it isn't cached or has expired.
+     */
+    public synchronized V get(SearchQuery query) {
+        String key = query.getNormalizedKey();
+        Entry<V> entry = entries.get(key);
+        if (entry != null && ttlNanos > 0 && clock.getAsLong() - entry.createdAt >= ttlNanos) {
+            entries.remove(key);
+            expirations++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.result;
+    }
+
+    public synchronized void put(SearchQuery query, V result) {
+        entries.put(query.getNormalizedKey(), new Entry<>(query, result, clock.getAsLong()));
+        if (entries.size() > maxEntries) {
+            Iterator<Entry<V>> eldest = entries.values().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drops every entry whose query satisfies the predicate.
+     */
+    public synchronized void invalidateIf(Predicate<SearchQuery> affected) {
+        Iterator<Entry<V>> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (affected.test(it.next().query)) {
+                it.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    // entries dropped to make room for new ones
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    // entries dropped because their TTL ran out
+    public synchronized long getExpirations() {
+        return expirations;
+    }
+
+    // entries dropped because a flower they depend on changed
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d entries, %d hits, %d misses, %d evictions, %d expirations, %d invalidations",
+                entries.size(), hits, misses, evictions, expirations, invalidations);
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * A filter on one of the numeric ranges of a flower, its height or the soil pH it grows in.
+ * Flowers whose text stated no figure for the measure never match.
+ */
+public class RangeFilter {
+
+    public enum Measure {
+        HEIGHT_CM("Height") {
+            @Override
+            public double low(Flower flower) {
+                return flower.getMinHeightCm();
+            }
+
+            @Override
+            public double high(Flower flower) {
+                return flower.getMaxHeightCm();
+            }
+        },
+        SOIL_PH("SoilPh") {
+            @Override
+            public double low(Flower flower) {
+                return flower.getMinSoilPh();
+            }
+
+            @Override
+            public double high(Flower flower) {
+                return flower.getMaxSoilPh();
+            }
+        };
+
+        private final String key;
+
+        Measure(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public abstract double low(Flower flower);
+
+        public abstract double high(Flower flower);
+
+        /**
+         * Looks a measure up by its key, ignoring case; null if there is none.
+         */
+        public static Measure fromKey(String key) {
+            for (Measure measure : values()) {
+                if (measure.key.equalsIgnoreCase(key)) {
+                    return measure;
+                }
+            }
+            return null;
+        }
+    }
+
+    // how the flower's range has to relate to the filter's
+    public enum Match {
+        OVERLAPS, // they share at least one value, e.g. some varieties grow in pH 6-7
+        COVERS,   // the flower's range contains the filter's, e.g. it grows anywhere in pH 6-7
+        WITHIN;   // the flower's range lies inside the filter's, e.g. never taller than 60 cm
+
+        public boolean test(double flowerLow, double flowerHigh, double lo, double hi) {
+            switch (this) {
+                case OVERLAPS:
+                    return flowerLow <= hi && flowerHigh >= lo;
+                case COVERS:
+                    return flowerLow <= lo && flowerHigh >= hi;
+                default:
+                    return flowerLow >= lo && flowerHigh <= hi;
+            }
+        }
+    }
+
+    private final Measure measure;
+    private final double lo;
+    private final double hi;
+    private final Match match;
+
+    public RangeFilter(Measure measure, double lo, double hi, Match match) {
+        if (!(lo <= hi)) { // also rejects NaN
+            throw new IllegalArgumentException("Empty " + measure.getKey() + " range " + lo + "-" + hi);
+        }
+        this.measure = measure;
+        this.lo = lo;
+        this.hi = hi;
+        this.match = match;
+    }
+
+    public Measure getMeasure() {
+        return measure;
+    }
+
+    public double getLo() {
+        return lo;
+    }
+
+    public double getHi() {
+        return hi;
+    }
+
+    public Match getMatch() {
+        return match;
+    }
+
+    // NaN compares false, so flowers without the measure never match
+    public boolean matches(Flower flower) {
+        return match.test(measure.low(flower), measure.high(flower), lo, hi);
+    }
+
+    @Override
+    public String toString() {
+        return measure.getKey() + ":" + format(lo) + "-" + format(hi) + " (" + match.name().toLowerCase() + ")";
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+}
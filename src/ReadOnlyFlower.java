@@ -0,0 +1,91 @@
+import java.util.List;
+
+/**
+ * Base class for flowers that are views over some other storage (a snapshot file, a columnar
+ * store). Subclasses override the getters; every setter throws, since there is nothing to write to.
+ */
+public abstract class ReadOnlyFlower extends Flower {
+
+    protected ReadOnlyFlower() {
+        super(null);
+    }
+
+    @Override
+    public void setPrimaryName(String name) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setAlias(List<String> alias) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setDesc(String desc) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setDescriptionSource(DescriptionStore store, long handle) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setPlantTypes(List<String> plantTypes) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setColors(String colors) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setColorList(List<String> colorList) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setMinZone(int minZone) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setMaxZone(int maxZone) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setHeightCm(double min, double max) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setSoilPh(double min, double max) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setBloomsSeasons(List<String> bloomsSeasons) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setSunNeeds(List<String> sunNeeds) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setWaterNeeds(String waterNeeds) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setMaintenance(String maintenance) {
+        throw readOnly();
+    }
+
+    private UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException(getClass().getSimpleName() + " is a read-only view");
+    }
+}
@@ -0,0 +1,42 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of search results. Pass getNextCursor() back to SearchEngine to get the page that
+ * follows; cursors are positions in the sort order, not offsets, so a page never repeats or
+ * skips a flower because the catalog changed in between.
+ */
+public class ResultPage {
+    public enum Order {
+        ORDINAL,      // index order, the cheapest to walk
+        PRIMARY_NAME  // alphabetical by primary name
+    }
+
+    private final List<Flower> flowers;
+    private final String nextCursor;
+    private final int totalMatches;
+
+    ResultPage(List<Flower> flowers, String nextCursor, int totalMatches) {
+        this.flowers = Collections.unmodifiableList(flowers);
+        this.nextCursor = nextCursor;
+        this.totalMatches = totalMatches;
+    }
+
+    public List<Flower> getFlowers() {
+        return flowers;
+    }
+
+    // null on the last page
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+
+    // matches of the whole query, over all pages
+    public int getTotalMatches() {
+        return totalMatches;
+    }
+}
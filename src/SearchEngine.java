@@ -1,35 +1,329 @@
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
 
-public class SearchEngine implements ISearchEngine {
+/*
+ * Indexes stay in sync with the database: the engine listens for changes and re-indexes only
+ * the flowers that were added, removed or replaced. A removed flower leaves a hole in the
+ * ordinal space; a replacement takes over the ordinal of the flower it replaces.
+ * Categories (colors included) have posting lists; zones, heights and soil pH have sorted
+ * endpoint indexes, so "blue, under 60 cm, pH 6-7" is answered without scanning flowers.
+ * Results of search, searchByMultipleCategories and the zone searches are kept in a
+ * QueryResultCache; a change drops only the cached queries the changed flowers match.
+ * Like the databases, the engine is not synchronized.
+ */
+public class SearchEngine implements ISearchEngine, IFlowerDatabaseListener {
+    private final IFlowerDatabase flowerDatabase;
     private Map<String, Flower> nameIndex;
-    private TreeMap<Integer, List<Flower>> hardinessZoneIndex;
-    private Map<String, Set<Flower>> categoryIndex;
+    // each flower is filed once under its lowest and once under its highest hardiness zone
+    private TreeMap<Integer, FlowerBitmap> minZoneIndex;
+    private TreeMap<Integer, FlowerBitmap> maxZoneIndex;
+    // category -> value (case-insensitive) -> ordinals of the flowers that have it
+    private EnumMap<AttributeCategory, TreeMap<String, Posting>> categoryIndex;
+    private EnumMap<RangeFilter.Measure, NumericRangeIndex> rangeIndexes; // height and soil pH ranges
+    private List<Flower> flowersByOrdinal; // null where a flower was removed
+    // what each ordinal was indexed under; a flower changed in place no longer shows it
+    private List<IndexedFields> indexedByOrdinal;
+    private Map<Flower, Integer> ordinals;
+    private TreeMap<String, Integer> nameOrder; // sortKey -> ordinal, for results sorted by primary name
+    private FlowerBitmap liveOrdinals; // every indexed flower, the universe NOT is taken against
+    private final QueryResultCache<FlowerResultSet> resultCache; // null when caching is off
+    private final Map<String, QueryNode> compiledQueries; // query text -> parsed query, LRU
+    private final SearchQuery[] zoneQueries = new SearchQuery[ZONES * ZONES * 2]; // see zoneQuery
 
-    public SearchEngine(FlowerDatabase flowerDatabase) {
+    public static final int DEFAULT_CACHE_ENTRIES = 1024;
+    // above this many (changed flowers x cached queries) a change batch clears the cache instead
+    private static final long MAX_INVALIDATION_CHECKS = 1_000_000;
+    private static final int ZONES = 14; // hardiness zones 0-13, their range queries are built once
+    private static final int COMPILED_QUERY_ENTRIES = 256;
+    private static final AttributeCategory[] INDEXED_CATEGORIES = {AttributeCategory.PLANT_TYPE,
+            AttributeCategory.COLORS, AttributeCategory.BLOOMS_SEASONS, AttributeCategory.SUN_NEEDS, AttributeCategory.WATER_NEEDS,
+            AttributeCategory.MAINTENANCE};
+
+    public SearchEngine(IFlowerDatabase flowerDatabase) {
+        this(flowerDatabase, DEFAULT_CACHE_ENTRIES, 0);
+    }
+
+    /**
+     * @param flowerDatabase The database to index and follow.
+     * @param cacheEntries How many query results to cache, 0 to turn the cache off.
+     * @param cacheTtlMillis How long a cached result may be served, 0 for no limit.
+     */
+    public SearchEngine(IFlowerDatabase flowerDatabase, int cacheEntries, long cacheTtlMillis) {
+        this.flowerDatabase = flowerDatabase;
+        this.resultCache = cacheEntries > 0 ? new QueryResultCache<>(cacheEntries, cacheTtlMillis) : null;
         this.nameIndex = new HashMap<>();
-        hardinessZoneIndex = new TreeMap<>();
-        categoryIndex = new HashMap<>();
+        minZoneIndex = new TreeMap<>();
+        maxZoneIndex = new TreeMap<>();
+        categoryIndex = new EnumMap<>(AttributeCategory.class);
+        for (AttributeCategory category : INDEXED_CATEGORIES) {
+            categoryIndex.put(category, new TreeMap<>(String.CASE_INSENSITIVE_ORDER));
+        }
+        rangeIndexes = new EnumMap<>(RangeFilter.Measure.class);
+        for (RangeFilter.Measure measure : RangeFilter.Measure.values()) {
+            rangeIndexes.put(measure, new NumericRangeIndex());
+        }
+        flowersByOrdinal = new ArrayList<>();
+        indexedByOrdinal = new ArrayList<>();
+        ordinals = new IdentityHashMap<>();
+        liveOrdinals = new FlowerBitmap();
+        nameOrder = new TreeMap<>();
+        compiledQueries = new LinkedHashMap<String, QueryNode>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, QueryNode> eldest) {
+                return size() > COMPILED_QUERY_ENTRIES;
+            }
+        };
         indexFlowers(flowerDatabase.getFlowersMap().values());
+        flowerDatabase.addListener(this);
+    }
+
+    /**
+     * Stops following the database, so the database no longer holds on to this engine.
+     * The indexes stay as they are.
+     */
+    public void detach() {
+        flowerDatabase.removeListener(this);
     }
 
 
     private void indexFlowers(Collection<Flower> flowers) {
         for (Flower flower : flowers) {
-            indexByName(flower);
-            indexByHardinessZone(flower);
-            // Index other attributes as previously done
-            indexByCategory("PlantType", flower.getPlantTypes(), flower);
-            indexByCategory("BloomSeasons", flower.getBloomsSeasons(), flower);
-            indexByCategory("SunNeeds", flower.getSunNeeds(), flower);
-            indexByCategory("WaterNeeds", flower.getWaterNeeds(), flower);
-            indexByCategory("Maintenance", flower.getMaintenance(), flower);
+            assignOrdinal(flower);
+            indexFlower(flower);
+        }
+    }
+
+    /**
+     * Applies database changes to the indexes, touching only the changed flowers.
+     */
+    public void onFlowersChanged(List<FlowerChange> changes) {
+        if (resultCache != null) {
+            invalidateCachedResults(changes);
+        }
+        for (FlowerChange change : changes) {
+            switch (change.getType()) {
+                case ADD:
+                    assignOrdinal(change.getNewFlower());
+                    indexFlower(change.getNewFlower());
+                    break;
+                case REMOVE:
+                    Integer removed = ordinals.remove(change.getOldFlower());
+                    if (removed != null) {
+                        unindexFlower(change.getOldFlower(), removed);
+                        flowersByOrdinal.set(removed, null);
+                        indexedByOrdinal.set(removed, null);
+                        liveOrdinals.remove(removed);
+                    }
+                    break;
+                case REPLACE:
+                    Integer ordinal = ordinals.remove(change.getOldFlower());
+                    if (ordinal == null) {
+                        assignOrdinal(change.getNewFlower());
+                    } else {
+                        unindexFlower(change.getOldFlower(), ordinal);
+                        ordinals.put(change.getNewFlower(), ordinal);
+                        flowersByOrdinal.set(ordinal, change.getNewFlower());
+                    }
+                    indexFlower(change.getNewFlower());
+                    break;
+                default:
+            }
+        }
+    }
+
+
+    // a cached result changes only if a flower entering or leaving the catalog matches its query;
+    // a leaving flower is matched as it was indexed, it may have been changed in place since
+    private void invalidateCachedResults(List<FlowerChange> changes) {
+        if (resultCache.size() == 0) {
+            return;
+        }
+        if ((long) 2 * changes.size() * resultCache.size() > MAX_INVALIDATION_CHECKS) {
+            resultCache.clear(); // cheaper than matching every cached query against a bulk update
+            return;
+        }
+        List<IndexedFields> changed = new ArrayList<>();
+        for (FlowerChange change : changes) {
+            if (change.getOldFlower() != null) {
+                Integer ordinal = ordinals.get(change.getOldFlower());
+                changed.add(ordinal != null ? indexedByOrdinal.get(ordinal) : new IndexedFields(change.getOldFlower()));
+            }
+            if (change.getNewFlower() != null) {
+                changed.add(new IndexedFields(change.getNewFlower()));
+            }
+        }
+        resultCache.invalidateIf(query -> {
+            for (IndexedFields flower : changed) {
+                if (matches(query, flower)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    // evaluates a query against a single flower, the way the indexes would
+    private static boolean matches(SearchQuery query, IndexedFields flower) {
+        if (query.hasZoneRange()) {
+            boolean inRange = query.isFullyContained()
+                    ? flower.minZone <= query.getMinZone() && flower.maxZone >= query.getMaxZone()
+                    : flower.minZone <= query.getMaxZone() && flower.maxZone >= query.getMinZone();
+            if (!inRange) {
+                return false;
+            }
+        }
+        for (Map.Entry<String, String> criterion : query.getCriteria().entrySet()) {
+            AttributeCategory category = AttributeCategory.fromKey(criterion.getKey());
+            if (category == null || !containsIgnoreCase(flower.values[category.ordinal()], criterion.getValue())) {
+                return false;
+            }
+        }
+        for (RangeFilter filter : query.getRangeFilters()) {
+            int measure = filter.getMeasure().ordinal();
+            if (!filter.getMatch().test(flower.lows[measure], flower.highs[measure], filter.getLo(), filter.getHi())) {
+                return false;
+            }
         }
+        return true;
     }
 
+    /*
+     * A copy of the fields a flower was indexed under. Flowers are mutable and a changed flower is
+     * re-added as itself, so unindexing reads this copy instead of the flower's current fields.
+     */
+    private static class IndexedFields {
+        final String primaryName;
+        final List<String> aliases;
+        final int minZone;
+        final int maxZone;
+        final String[][] values; // per AttributeCategory ordinal, lowercase; empty if not indexed
+        final double[] lows; // per RangeFilter.Measure ordinal
+        final double[] highs;
+
+        IndexedFields(Flower flower) {
+            primaryName = flower.getPrimaryName().toLowerCase();
+            aliases = new ArrayList<>(flower.getAlias().size());
+            for (String alias : flower.getAlias()) {
+                aliases.add(alias.toLowerCase());
+            }
+            minZone = flower.getMinZone();
+            maxZone = flower.getMaxZone();
+            values = new String[AttributeCategory.values().length][];
+            for (AttributeCategory category : AttributeCategory.values()) {
+                List<String> categoryValues = indexedValues(category, flower);
+                String[] lowercase = new String[categoryValues.size()];
+                for (int i = 0; i < lowercase.length; i++) {
+                    lowercase[i] = categoryValues.get(i).toLowerCase();
+                }
+                values[category.ordinal()] = lowercase;
+            }
+            RangeFilter.Measure[] measures = RangeFilter.Measure.values();
+            lows = new double[measures.length];
+            highs = new double[measures.length];
+            for (RangeFilter.Measure measure : measures) {
+                lows[measure.ordinal()] = measure.low(flower);
+                highs[measure.ordinal()] = measure.high(flower);
+            }
+        }
+    }
+
+    // the values of a flower the category index files it under
+    private static List<String> indexedValues(AttributeCategory category, Flower flower) {
+        switch (category) {
+            case PLANT_TYPE:
+                return flower.getPlantTypes();
+            case COLORS:
+                List<String> colors = flower.getColorList();
+                return colors == null ? Collections.emptyList() : colors;
+            case BLOOMS_SEASONS:
+                return flower.getBloomsSeasons();
+            case SUN_NEEDS:
+                return flower.getSunNeeds();
+            case WATER_NEEDS:
+                return Collections.singletonList(flower.getWaterNeeds());
+            case MAINTENANCE:
+                return Collections.singletonList(flower.getMaintenance());
+            default:
+                return Collections.emptyList(); // not indexed, so never matched
+        }
+    }
+
+    private static boolean containsIgnoreCase(String[] values, String value) {
+        for (String candidate : values) {
+            if (candidate.equalsIgnoreCase(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
     ///////////////////////////////////////////////////////////////
     //                    Indexing methods                       //
     ///////////////////////////////////////////////////////////////
+    private void assignOrdinal(Flower flower) {
+        liveOrdinals.add(flowersByOrdinal.size());
+        ordinals.put(flower, flowersByOrdinal.size());
+        flowersByOrdinal.add(flower);
+        indexedByOrdinal.add(null);
+    }
+
+    private void indexFlower(Flower flower) {
+        int ordinal = ordinals.get(flower);
+        IndexedFields fields = new IndexedFields(flower);
+        indexedByOrdinal.set(ordinal, fields);
+        indexByName(flower);
+        nameOrder.put(sortKey(fields.primaryName, ordinal), ordinal);
+        indexByHardinessZone(flower);
+        // Index other attributes as previously done
+        for (AttributeCategory category : INDEXED_CATEGORIES) {
+            indexByCategory(category, indexedValues(category, flower), flower);
+        }
+        for (RangeFilter.Measure measure : RangeFilter.Measure.values()) {
+            rangeIndexes.get(measure).add(ordinal, fields.lows[measure.ordinal()], fields.highs[measure.ordinal()]);
+        }
+    }
+
+    // removes an ordinal from the entries it was indexed under, whatever the flower holds now
+    private void unindexFlower(Flower flower, int ordinal) {
+        IndexedFields fields = indexedByOrdinal.get(ordinal);
+        // names may have been taken over by another flower since, only drop our own entries
+        nameIndex.remove(fields.primaryName, flower);
+        for (String alias : fields.aliases) {
+            nameIndex.remove(alias, flower);
+        }
+        nameOrder.remove(sortKey(fields.primaryName, ordinal));
+        removeFromPosting(minZoneIndex, fields.minZone, ordinal);
+        removeFromPosting(maxZoneIndex, fields.maxZone, ordinal);
+        for (AttributeCategory category : INDEXED_CATEGORIES) {
+            for (String value : fields.values[category.ordinal()]) {
+                Posting posting = categoryIndex.get(category).get(value);
+                if (posting != null) {
+                    posting.bitmap.remove(ordinal); // kept when empty, callers may hold its view
+                }
+            }
+        }
+        for (RangeFilter.Measure measure : RangeFilter.Measure.values()) {
+            rangeIndexes.get(measure).remove(ordinal, fields.lows[measure.ordinal()], fields.highs[measure.ordinal()]);
+        }
+    }
+
+    // primary name, then ordinal to tell apart flowers with the same name
+    private static String sortKey(String primaryName, int ordinal) {
+        return primaryName + '\u0000' + String.format("%010d", ordinal);
+    }
+
+    private static void removeFromPosting(Map<Integer, FlowerBitmap> index, int key, int ordinal) {
+        FlowerBitmap posting = index.get(key);
+        if (posting != null) {
+            posting.remove(ordinal);
+            if (posting.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
     private void indexByName(Flower flower) {
         // Index by primary name
         String primaryName = flower.getPrimaryName().toLowerCase();
@@ -41,22 +335,22 @@ public class SearchEngine implements ISearchEngine {
     }
 
     private void indexByHardinessZone(Flower flower) {
-        for (int zone = flower.getMinZone(); zone <= flower.getMaxZone(); zone++) {
-            hardinessZoneIndex.computeIfAbsent(zone, k -> new ArrayList<>()).add(flower);
-        }
+        int ordinal = ordinals.get(flower);
+        minZoneIndex.computeIfAbsent(flower.getMinZone(), k -> new FlowerBitmap()).add(ordinal);
+        maxZoneIndex.computeIfAbsent(flower.getMaxZone(), k -> new FlowerBitmap()).add(ordinal);
     }
 
-    private void indexByCategory(String categoryKey, List<String> categories, Flower flower) {
-        for (String category : categories) {
-            String normalizedCategory = category.toLowerCase();
-            categoryIndex.computeIfAbsent(categoryKey + ":" + normalizedCategory, k -> new HashSet<>()).add(flower);
+    private void indexByCategory(AttributeCategory category, List<String> values, Flower flower) {
+        int ordinal = ordinals.get(flower);
+        for (String value : values) {
+            categoryIndex.get(category).computeIfAbsent(value.toLowerCase(), k -> new Posting()).bitmap.add(ordinal);
         }
     }
 
-    // overload the indexing method to make it allow taking single String categories
-    private void indexByCategory(String categoryKey, String category, Flower flower) {
-        String normalizedCategory = category.toLowerCase();
-        categoryIndex.computeIfAbsent(categoryKey + ":" + normalizedCategory, k -> new HashSet<>()).add(flower);
+    // a posting list and the read-only view searchByCategory hands out for it
+    private class Posting {
+        final FlowerBitmap bitmap = new FlowerBitmap();
+        final FlowerResultSet view = new FlowerResultSet(bitmap);
     }
 
     ///////////////////////////////////////////////////////////////
@@ -67,27 +361,635 @@ public class SearchEngine implements ISearchEngine {
     }
 
     public List<Flower> searchByZone(int zone) {
-        return hardinessZoneIndex.getOrDefault(zone, new ArrayList<>());
+        return searchByZoneRange(zone, zone, false);
+    }
+
+    /**
+     * Searches for flowers by a range of hardiness zones.
+     * @param lo The lowest zone of the range.
+     * @param hi The highest zone of the range.
+     * @param fullyContained true for flowers that survive in every zone from lo to hi,
+     *                       false for flowers that survive in at least one of them.
+     * @return a read-only list of the matching flowers. A cached result allocates nothing.
+     * @throws IllegalArgumentException if lo > hi.
+     */
+    public List<Flower> searchByZoneRange(int lo, int hi, boolean fullyContained) {
+        FlowerResultSet result = resultOf(zoneQuery(lo, hi, fullyContained));
+        return result.bitmap.isEmpty() ? Collections.emptyList() : result.asList();
     }
 
+    // the query of a zone range, kept for ranges within 0-13 so repeated searches reuse it
+    private SearchQuery zoneQuery(int lo, int hi, boolean fullyContained) {
+        if (lo < 0 || hi >= ZONES || lo > hi) {
+            return new SearchQuery(lo, hi, fullyContained, Collections.emptyMap());
+        }
+        int slot = (lo * ZONES + hi) * 2 + (fullyContained ? 1 : 0);
+        SearchQuery query = zoneQueries[slot];
+        if (query == null) {
+            query = new SearchQuery(lo, hi, fullyContained, Collections.emptyMap());
+            zoneQueries[slot] = query;
+        }
+        return query;
+    }
+
+    FlowerBitmap zoneRangeBitmap(int lo, int hi, boolean fullyContained) {
+        // fully contained: minZone <= lo and maxZone >= hi; overlapping: minZone <= hi and maxZone >= lo
+        FlowerBitmap startsBelow = union(minZoneIndex.headMap(fullyContained ? lo : hi, true).values());
+        FlowerBitmap endsAbove = union(maxZoneIndex.tailMap(fullyContained ? hi : lo, true).values());
+        return FlowerBitmap.and(startsBelow, endsAbove);
+    }
+
+    private static FlowerBitmap union(Collection<FlowerBitmap> bitmaps) {
+        FlowerBitmap result = new FlowerBitmap();
+        for (FlowerBitmap bitmap : bitmaps) {
+            result = FlowerBitmap.or(result, bitmap);
+        }
+        return result;
+    }
+
+    /**
+     * Searches for flowers by a category key (or alias, like "BloomSeasons") and a value, both
+     * matched ignoring case. Allocates nothing: the result is a live, read-only view of the
+     * posting list.
+     */
     public Set<Flower> searchByCategory(String category, String value) {
-        return categoryIndex.getOrDefault(category + ":" + value.toLowerCase(), Collections.emptySet());
+        return searchByCategory(AttributeCategory.fromKey(category), value);
     }
 
+    public Set<Flower> searchByCategory(AttributeCategory category, String value) {
+        Posting posting = getPosting(category, value);
+        return posting == null ? Collections.emptySet() : posting.view;
+    }
+
+    /**
+     * Same as search(new SearchQuery(criteria)). The map is copied and normalized into a new
+     * SearchQuery on every call; callers that repeat a query should build the SearchQuery once
+     * and call search, which allocates nothing on a cache hit.
+     */
     public Set<Flower> searchByMultipleCategories(Map<String, String> criteria) {
-        Set<Flower> resultSet = null;
-        for (Map.Entry<String, String> entry : criteria.entrySet()) {
-            Set<Flower> currentSet = searchByCategory(entry.getKey(), entry.getValue());
-            if (resultSet == null) {
-                resultSet = new HashSet<>(currentSet);
+        return search(new SearchQuery(criteria));
+    }
+
+    /**
+     * Runs a query, applying its filters from the most to the least selective.
+     * @return a read-only set of the matching flowers.
+     */
+    public Set<Flower> search(SearchQuery query) {
+        return resultOf(query);
+    }
+
+    /**
+     * The result cache, for its hit, miss and eviction counters; null if caching is off.
+     */
+    public QueryResultCache<?> getResultCache() {
+        return resultCache;
+    }
+
+    private FlowerBitmap evaluate(SearchQuery query) {
+        return resultOf(query).bitmap;
+    }
+
+    // a cache hit allocates nothing when the caller reuses its SearchQuery
+    private FlowerResultSet resultOf(SearchQuery query) {
+        FlowerResultSet result = resultCache == null ? null : resultCache.get(query);
+        if (result == null) {
+            FlowerBitmap bitmap = execute(plan(query), null);
+            // a query without filters matches nothing
+            result = new FlowerResultSet(bitmap == null ? new FlowerBitmap() : bitmap);
+            if (resultCache != null) {
+                resultCache.put(query, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs a query and reports the order its filters were applied in, with the estimated and
+     * actual cardinality of every step. Always executes, the result cache is not consulted.
+     */
+    public QueryPlan explain(SearchQuery query) {
+        List<QueryPlan.Step> steps = new ArrayList<>();
+        FlowerBitmap result = execute(plan(query), steps);
+        return new QueryPlan(steps, result == null ? 0 : result.getCardinality());
+    }
+
+    ///////////////////////////////////////////////////////////////
+    //                    Query planning                         //
+    ///////////////////////////////////////////////////////////////
+
+    // a filter of a query, with its estimated cardinality and how to get its ordinals
+    private static class PlannedFilter {
+        final String filter;
+        final String key; // the same for filters that select the same flowers, however spelled
+        final int estimatedCardinality;
+        final Supplier<FlowerBitmap> bitmap;
+
+        PlannedFilter(String filter, String key, int estimatedCardinality, Supplier<FlowerBitmap> bitmap) {
+            this.filter = filter;
+            this.key = key;
+            this.estimatedCardinality = estimatedCardinality;
+            this.bitmap = bitmap;
+        }
+    }
+
+    private List<PlannedFilter> plan(SearchQuery query) {
+        List<PlannedFilter> filters = new ArrayList<>();
+        if (query.hasZoneRange()) {
+            int lo = query.getMinZone();
+            int hi = query.getMaxZone();
+            boolean fullyContained = query.isFullyContained();
+            String filter = QueryPlan.zoneFilter(lo, hi, fullyContained);
+            filters.add(new PlannedFilter(filter, filter, estimateZoneRange(lo, hi, fullyContained), () -> zoneRangeBitmap(lo, hi, fullyContained)));
+        }
+        for (Map.Entry<String, String> criterion : query.getCriteria().entrySet()) {
+            AttributeCategory category = AttributeCategory.fromKey(criterion.getKey());
+            String value = criterion.getValue().toLowerCase();
+            FlowerBitmap bitmap = postingOf(criterion.getKey(), criterion.getValue());
+            filters.add(new PlannedFilter(criterion.getKey() + ":" + value,
+                    (category == null ? criterion.getKey().toLowerCase() : category.getKey()) + ":" + value,
+                    bitmap.getCardinality(), () -> bitmap));
+        }
+        for (RangeFilter range : query.getRangeFilters()) {
+            String filter = range.toString();
+            filters.add(new PlannedFilter(filter, filter, estimateRange(range), () -> rangeBitmap(range)));
+        }
+        // most selective first, so the running intersection is small from the start; ties are
+        // broken by key so that queries with the same filters share a plan, see searchBatch
+        filters.sort(Comparator.<PlannedFilter>comparingInt(filter -> filter.estimatedCardinality)
+                .thenComparing(filter -> filter.key));
+        return filters;
+    }
+
+    // null when the query has no filters; steps, if given, receives the trace of the execution
+    private FlowerBitmap execute(List<PlannedFilter> filters, List<QueryPlan.Step> steps) {
+        FlowerBitmap result = null;
+        for (PlannedFilter filter : filters) {
+            if (result != null && result.isEmpty()) {
+                if (steps == null) {
+                    break;
+                }
+                steps.add(new QueryPlan.Step(filter.filter, filter.estimatedCardinality, QueryPlan.NOT_EXECUTED));
+                continue;
+            }
+            FlowerBitmap bitmap = filter.bitmap.get();
+            result = result == null ? bitmap : FlowerBitmap.and(result, bitmap);
+            if (steps != null) {
+                steps.add(new QueryPlan.Step(filter.filter, filter.estimatedCardinality, result.getCardinality()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs many queries at once on the common fork-join pool.
+     * @see #searchBatch(List, ForkJoinPool)
+     */
+    public List<Set<Flower>> searchBatch(List<SearchQuery> queries) {
+        return searchBatch(queries, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Runs many queries at once. Identical queries run once, and queries whose plans start with
+     * the same filters share the intersection of those: the plans are merged into a prefix tree
+     * whose branches are intersected in parallel on the given pool. Zone searches are queries
+     * with an empty criteria map. The indexes must not change while a batch runs.
+     * @return the results, read-only, in the order of the queries.
+     */
+    public List<Set<Flower>> searchBatch(List<SearchQuery> queries, ForkJoinPool pool) {
+        Map<String, FlowerResultSet> results = new HashMap<>();
+        PrefixNode root = new PrefixNode(null);
+        // the cache is not synchronized, so it is only used from this thread
+        for (SearchQuery query : queries) {
+            String key = query.getNormalizedKey();
+            if (results.containsKey(key)) {
+                continue;
+            }
+            FlowerResultSet cached = resultCache == null ? null : resultCache.get(query);
+            results.put(key, cached);
+            if (cached == null) {
+                PrefixNode node = root;
+                for (PlannedFilter filter : plan(query)) {
+                    node = node.children.computeIfAbsent(filter.key, k -> new PrefixNode(filter));
+                }
+                node.queries.add(query);
+            }
+        }
+        pool.invoke(new PrefixTask(root, null));
+        collect(root, results);
+
+        List<Set<Flower>> ordered = new ArrayList<>(queries.size());
+        for (SearchQuery query : queries) {
+            ordered.add(results.get(query.getNormalizedKey()));
+        }
+        return ordered;
+    }
+
+    private void collect(PrefixNode node, Map<String, FlowerResultSet> results) {
+        for (SearchQuery query : node.queries) {
+            // a query without filters matches nothing
+            FlowerResultSet result = new FlowerResultSet(node.result == null ? new FlowerBitmap() : node.result);
+            results.put(query.getNormalizedKey(), result);
+            if (resultCache != null) {
+                resultCache.put(query, result);
+            }
+        }
+        for (PrefixNode child : node.children.values()) {
+            collect(child, results);
+        }
+    }
+
+    // a filter shared by every query whose plan passes through it
+    private static class PrefixNode {
+        final PlannedFilter filter; // null at the root
+        final Map<String, PrefixNode> children = new LinkedHashMap<>();
+        final List<SearchQuery> queries = new ArrayList<>(); // the queries whose plan ends here
+        FlowerBitmap result; // the intersection of the filters from the root down to here
+
+        PrefixNode(PlannedFilter filter) {
+            this.filter = filter;
+        }
+    }
+
+    // intersects one node with its parent's result, then the subtrees below it in parallel;
+    // serializable only through ForkJoinTask, it is never serialized
+    @SuppressWarnings("serial")
+    private static class PrefixTask extends RecursiveAction {
+        private final PrefixNode node;
+        private final FlowerBitmap parentResult;
+
+        PrefixTask(PrefixNode node, FlowerBitmap parentResult) {
+            this.node = node;
+            this.parentResult = parentResult;
+        }
+
+        @Override
+        protected void compute() {
+            FlowerBitmap result = parentResult;
+            if (node.filter != null) {
+                if (result == null) {
+                    result = node.filter.bitmap.get();
+                } else if (!result.isEmpty()) {
+                    result = FlowerBitmap.and(result, node.filter.bitmap.get());
+                }
+            }
+            node.result = result;
+            List<PrefixTask> subtasks = new ArrayList<>(node.children.size());
+            for (PrefixNode child : node.children.values()) {
+                subtasks.add(new PrefixTask(child, result));
+            }
+            invokeAll(subtasks);
+        }
+    }
+
+    FlowerBitmap rangeBitmap(RangeFilter filter) {
+        return rangeIndexes.get(filter.getMeasure()).query(filter.getLo(), filter.getHi(), filter.getMatch());
+    }
+
+    int estimateRange(RangeFilter filter) {
+        return rangeIndexes.get(filter.getMeasure()).estimate(filter.getLo(), filter.getHi(), filter.getMatch());
+    }
+
+    // upper bound from the endpoint statistics: flowers starting low enough, or ending high enough
+    int estimateZoneRange(int lo, int hi, boolean fullyContained) {
+        int startsBelow = 0;
+        for (FlowerBitmap bitmap : minZoneIndex.headMap(fullyContained ? lo : hi, true).values()) {
+            startsBelow += bitmap.getCardinality();
+        }
+        int endsAbove = 0;
+        for (FlowerBitmap bitmap : maxZoneIndex.tailMap(fullyContained ? hi : lo, true).values()) {
+            endsAbove += bitmap.getCardinality();
+        }
+        return Math.min(startsBelow, endsAbove);
+    }
+
+    // two lookups, neither allocates: the category is an enum key, values compare ignoring case
+    private Posting getPosting(AttributeCategory category, String value) {
+        TreeMap<String, Posting> values = category == null ? null : categoryIndex.get(category);
+        return values == null ? null : values.get(value);
+    }
+
+    /**
+     * Runs a query and counts, for each requested category, how many of the matching flowers
+     * have each of its values. Every count is a popcount of a posting ANDed with the result,
+     * so no flower is visited and no further query is run.
+     * @param facetCategories Category keys to count, e.g. "BloomSeasons", "SunNeeds".
+     */
+    public FacetedResult searchWithFacets(SearchQuery query, Collection<String> facetCategories) {
+        return facets(evaluate(query), facetCategories);
+    }
+
+    /**
+     * Same as searchWithFacets(SearchQuery, ...) for a boolean query.
+     */
+    public FacetedResult searchWithFacets(String queryText, Collection<String> facetCategories) {
+        return facets(compile(queryText).evaluate(this), facetCategories);
+    }
+
+    private FacetedResult facets(FlowerBitmap result, Collection<String> facetCategories) {
+        Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+        for (String category : facetCategories) {
+            List<Map.Entry<String, Integer>> counts = new ArrayList<>();
+            AttributeCategory attributeCategory = AttributeCategory.fromKey(category);
+            Map<String, Posting> postings = attributeCategory == null ? null : categoryIndex.get(attributeCategory);
+            if (postings != null) {
+                for (Map.Entry<String, Posting> posting : postings.entrySet()) {
+                    int count = FlowerBitmap.andCardinality(result, posting.getValue().bitmap);
+                    if (count > 0 || !posting.getValue().bitmap.isEmpty()) {
+                        counts.add(new AbstractMap.SimpleImmutableEntry<>(posting.getKey(), count));
+                    }
+                }
+            }
+            counts.sort(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+            Map<String, Integer> valueCounts = new LinkedHashMap<>();
+            for (Map.Entry<String, Integer> count : counts) {
+                valueCounts.put(count.getKey(), count.getValue());
+            }
+            facets.put(category, Collections.unmodifiableMap(valueCounts));
+        }
+        Set<Flower> flowers = result.isEmpty() ? Collections.emptySet() : new FlowerResultSet(result);
+        return new FacetedResult(flowers, facets);
+    }
+
+    /**
+     * Returns one page of the results of a query, in a stable order. Walking a page costs
+     * O(pageSize) in ORDINAL order; in PRIMARY_NAME order it costs the number of flowers
+     * passed over in name order, which is O(pageSize) unless the query is very selective.
+     * @param cursor null for the first page, otherwise getNextCursor() of the previous page
+     *               (requested with the same order).
+     */
+    public ResultPage searchPage(SearchQuery query, ResultPage.Order order, String cursor, int pageSize) {
+        return page(evaluate(query), order, cursor, pageSize);
+    }
+
+    /**
+     * Same as searchPage for a boolean query.
+     */
+    public ResultPage queryPage(String queryText, ResultPage.Order order, String cursor, int pageSize) {
+        return page(compile(queryText).evaluate(this), order, cursor, pageSize);
+    }
+
+    /**
+     * Walks the results of a query lazily, in the given order.
+     */
+    public Iterator<Flower> searchIterator(SearchQuery query, ResultPage.Order order) {
+        return new ResultCursor(evaluate(query), order, null);
+    }
+
+    private ResultPage page(FlowerBitmap result, ResultPage.Order order, String cursor, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        ResultCursor results = new ResultCursor(result, order, cursor);
+        List<Flower> flowers = new ArrayList<>(Math.min(pageSize, 64));
+        while (flowers.size() < pageSize && results.hasNext()) {
+            flowers.add(results.next());
+        }
+        return new ResultPage(flowers, results.hasNext() ? results.position() : null, result.getCardinality());
+    }
+
+    /**
+     * Runs a boolean query, e.g.
+     * (PlantType:bulbs OR PlantType:perennials) AND Zone:5-7 AND NOT Maintenance:hard.
+     * See QueryParser for the syntax. Parsed queries are cached by their text.
+     * @return a read-only set of the matching flowers.
+     * @throws IllegalArgumentException if the query can't be parsed.
+     */
+    public Set<Flower> query(String text) {
+        FlowerBitmap result = compile(text).evaluate(this);
+        return result.isEmpty() ? Collections.emptySet() : new FlowerResultSet(result);
+    }
+
+    /**
+     * Parses a boolean query, or returns the tree parsed earlier for the same text.
+     */
+    public QueryNode compile(String text) {
+        synchronized (compiledQueries) {
+            QueryNode compiled = compiledQueries.get(text);
+            if (compiled == null) {
+                compiled = QueryParser.parse(text);
+                compiledQueries.put(text, compiled);
+            }
+            return compiled;
+        }
+    }
+
+    // the leaves of compiled queries read the indexes through these
+
+    FlowerBitmap postingOf(String category, String value) {
+        return postingOf(AttributeCategory.fromKey(category), value);
+    }
+
+    FlowerBitmap postingOf(AttributeCategory category, String value) {
+        Posting posting = getPosting(category, value);
+        return posting == null ? new FlowerBitmap() : posting.bitmap;
+    }
+
+    int estimatePosting(AttributeCategory category, String value) {
+        Posting posting = getPosting(category, value);
+        return posting == null ? 0 : posting.bitmap.getCardinality();
+    }
+
+    // the sum of the value's postings, an upper bound of anyCategoryPosting without building it
+    int estimateAnyCategory(String value) {
+        int estimate = 0;
+        for (AttributeCategory category : INDEXED_CATEGORIES) {
+            estimate += estimatePosting(category, value);
+        }
+        return estimate;
+    }
+
+    FlowerBitmap anyCategoryPosting(String value) {
+        FlowerBitmap result = new FlowerBitmap();
+        for (AttributeCategory category : INDEXED_CATEGORIES) {
+            Posting posting = getPosting(category, value);
+            if (posting != null) {
+                result = FlowerBitmap.or(result, posting.bitmap);
+            }
+        }
+        return result;
+    }
+
+    FlowerBitmap allFlowers() {
+        return liveOrdinals;
+    }
+
+    /*
+     * Iterates the ordinals of a bitmap and hands out their flowers; lazy, no copy is made.
+     */
+    private class OrdinalIterator implements Iterator<Flower> {
+        private final FlowerBitmap bitmap;
+        private int next;
+
+        OrdinalIterator(FlowerBitmap bitmap) {
+            this.bitmap = bitmap;
+            this.next = bitmap.nextSetBit(0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        @Override
+        public Flower next() {
+            if (next < 0) {
+                throw new NoSuchElementException();
+            }
+            Flower flower = flowersByOrdinal.get(next);
+            next = bitmap.nextSetBit(next + 1);
+            return flower;
+        }
+    }
+
+    /*
+     * Walks a result in ORDINAL or PRIMARY_NAME order, starting after a cursor position.
+     * Cursors are "o:<ordinal>" and "n:<sortKey>" of the last flower handed out.
+     */
+    private class ResultCursor implements Iterator<Flower> {
+        private final FlowerBitmap bitmap;
+        private final ResultPage.Order order;
+        private Iterator<Map.Entry<String, Integer>> names; // PRIMARY_NAME only
+        private int nextOrdinal = -1;
+        private String nextKey;
+        private String position;
+
+        ResultCursor(FlowerBitmap bitmap, ResultPage.Order order, String after) {
+            this.bitmap = bitmap;
+            this.order = order;
+            String prefix = order == ResultPage.Order.ORDINAL ? "o:" : "n:";
+            if (after != null && !after.startsWith(prefix)) {
+                throw new IllegalArgumentException("Cursor " + after + " is not from a " + order + " page");
+            }
+            if (order == ResultPage.Order.ORDINAL) {
+                int start;
+                try {
+                    start = after == null ? 0 : Integer.parseInt(after.substring(2)) + 1;
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Malformed cursor " + after);
+                }
+                nextOrdinal = bitmap.nextSetBit(start);
+            } else {
+                names = (after == null ? nameOrder : nameOrder.tailMap(after.substring(2), false)).entrySet().iterator();
+                advanceByName();
+            }
+        }
+
+        private void advanceByName() {
+            nextOrdinal = -1;
+            while (names.hasNext()) {
+                Map.Entry<String, Integer> entry = names.next();
+                if (bitmap.contains(entry.getValue())) {
+                    nextOrdinal = entry.getValue();
+                    nextKey = entry.getKey();
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextOrdinal >= 0;
+        }
+
+        @Override
+        public Flower next() {
+            if (nextOrdinal < 0) {
+                throw new NoSuchElementException();
+            }
+            Flower flower = flowersByOrdinal.get(nextOrdinal);
+            if (order == ResultPage.Order.ORDINAL) {
+                position = "o:" + nextOrdinal;
+                nextOrdinal = bitmap.nextSetBit(nextOrdinal + 1);
             } else {
-                resultSet.retainAll(currentSet);
+                position = "n:" + nextKey;
+                advanceByName();
             }
-            if (resultSet.isEmpty()) {
-                return resultSet;
+            return flower;
+        }
+
+        // cursor of the last flower handed out
+        String position() {
+            return position;
+        }
+    }
+
+    /*
+     * A read-only list of flowers backed by a bitmap of ordinals. Iterating is lazy; the
+     * ordinals are only copied to an array the first time get(index) is called.
+     */
+    private class FlowerResultList extends AbstractList<Flower> implements RandomAccess {
+        private final FlowerBitmap bitmap;
+        private int[] resultOrdinals;
+
+        FlowerResultList(FlowerBitmap bitmap) {
+            this.bitmap = bitmap;
+        }
+
+        @Override
+        public Flower get(int index) {
+            if (resultOrdinals == null) {
+                resultOrdinals = bitmap.toArray();
             }
+            return flowersByOrdinal.get(resultOrdinals[index]);
+        }
+
+        @Override
+        public Iterator<Flower> iterator() {
+            return new OrdinalIterator(bitmap);
+        }
+
+        @Override
+        public int size() {
+            return bitmap.getCardinality();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            Integer ordinal = ordinals.get(o);
+            return ordinal != null && bitmap.contains(ordinal);
+        }
+    }
+
+    /*
+     * A read-only set of flowers backed by a bitmap of ordinals; Flower objects are only
+     * looked up while iterating.
+     */
+    private class FlowerResultSet extends AbstractSet<Flower> {
+        private final FlowerBitmap bitmap;
+        private FlowerResultList list; // the same flowers as a list, made on first use
+
+        FlowerResultSet(FlowerBitmap bitmap) {
+            this.bitmap = bitmap;
+        }
+
+        FlowerResultList asList() {
+            if (list == null) {
+                list = new FlowerResultList(bitmap);
+            }
+            return list;
+        }
+
+        @Override
+        public Iterator<Flower> iterator() {
+            return new OrdinalIterator(bitmap);
+        }
+
+        @Override
+        public int size() {
+            return bitmap.getCardinality();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            Integer ordinal = ordinals.get(o);
+            return ordinal != null && bitmap.contains(ordinal);
+        }
+
+        @Override
+        public Spliterator<Flower> spliterator() {
+            return Spliterators.spliterator(iterator(), size(),
+                    Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.ORDERED);
         }
-        return resultSet == null ? Collections.emptySet() : resultSet;
     }
 
 } // Class SearchEngine
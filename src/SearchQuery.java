@@ -0,0 +1,161 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A multi-criteria flower search: category filters, optionally combined with a range of
+ * hardiness zones and with height and soil pH ranges. SearchEngine decides the order the
+ * filters are applied in.
+ */
+public class SearchQuery {
+    private final Map<String, String> criteria;
+    private final boolean hasZoneRange;
+    private final int minZone;
+    private final int maxZone;
+    private final boolean fullyContained;
+    private final List<RangeFilter> rangeFilters; // at most one per measure
+    private final String normalizedKey;
+
+    /**
+     * Creates a query with category filters only.
+     * @param criteria Category keys ("PlantType", "SunNeeds", ...) mapped to the wanted value.
+     * @throws IllegalArgumentException if two keys name the same category, e.g. "Colors" and "Color".
+     */
+    public SearchQuery(Map<String, String> criteria) {
+        this.criteria = Collections.unmodifiableMap(new LinkedHashMap<>(criteria));
+        this.hasZoneRange = false;
+        this.minZone = 0;
+        this.maxZone = 0;
+        this.fullyContained = false;
+        this.rangeFilters = Collections.emptyList();
+        this.normalizedKey = normalize();
+    }
+
+    /**
+     * Creates a query for flowers of a single hardiness zone that match the category filters.
+     */
+    public SearchQuery(int zone, Map<String, String> criteria) {
+        this(zone, zone, false, criteria);
+    }
+
+    /**
+     * Creates a query for a range of hardiness zones combined with category filters.
+     * @param fullyContained see SearchEngine.searchByZoneRange.
+     */
+    public SearchQuery(int minZone, int maxZone, boolean fullyContained, Map<String, String> criteria) {
+        if (minZone > maxZone) {
+            throw new IllegalArgumentException("Empty zone range " + minZone + "-" + maxZone);
+        }
+        this.criteria = Collections.unmodifiableMap(new LinkedHashMap<>(criteria));
+        this.hasZoneRange = true;
+        this.minZone = minZone;
+        this.maxZone = maxZone;
+        this.fullyContained = fullyContained;
+        this.rangeFilters = Collections.emptyList();
+        this.normalizedKey = normalize();
+    }
+
+    private SearchQuery(SearchQuery query, List<RangeFilter> rangeFilters) {
+        this.criteria = query.criteria;
+        this.hasZoneRange = query.hasZoneRange;
+        this.minZone = query.minZone;
+        this.maxZone = query.maxZone;
+        this.fullyContained = query.fullyContained;
+        this.rangeFilters = Collections.unmodifiableList(rangeFilters);
+        this.normalizedKey = normalize();
+    }
+
+    /**
+     * Returns a copy of this query that also filters on a numeric range, e.g.
+     * query.withRange(new RangeFilter(Measure.HEIGHT_CM, 0, 60, Match.WITHIN)) for "under 60 cm".
+     * A filter on a measure that is already filtered replaces the earlier one.
+     */
+    public SearchQuery withRange(RangeFilter filter) {
+        List<RangeFilter> filters = new ArrayList<>();
+        for (RangeFilter existing : rangeFilters) {
+            if (existing.getMeasure() != filter.getMeasure()) {
+                filters.add(existing);
+            }
+        }
+        filters.add(filter);
+        return new SearchQuery(this, filters);
+    }
+
+    public Map<String, String> getCriteria() {
+        return criteria;
+    }
+
+    public boolean hasZoneRange() {
+        return hasZoneRange;
+    }
+
+    public int getMinZone() {
+        return minZone;
+    }
+
+    public int getMaxZone() {
+        return maxZone;
+    }
+
+    public boolean isFullyContained() {
+        return fullyContained;
+    }
+
+    public List<RangeFilter> getRangeFilters() {
+        return rangeFilters;
+    }
+
+    /**
+     * The query in a canonical form: categories in their indexed spelling and sorted, values
+     * lowercased. Two queries with the same key always have the same result. Computed once,
+     * so a query object that is reused looks up the result cache without allocating.
+     */
+    public String getNormalizedKey() {
+        return normalizedKey;
+    }
+
+    private String normalize() {
+        StringBuilder key = new StringBuilder();
+        if (hasZoneRange) {
+            key.append(minZone).append('-').append(maxZone).append(fullyContained ? "/all" : "/any");
+        }
+        Map<String, String> sorted = new TreeMap<>();
+        for (Map.Entry<String, String> criterion : criteria.entrySet()) {
+            AttributeCategory category = AttributeCategory.fromKey(criterion.getKey());
+            String categoryKey = category == null ? criterion.getKey().toLowerCase() : category.getKey();
+            // both criteria would be evaluated, but only one would make it into the key
+            if (sorted.put(categoryKey, criterion.getValue().toLowerCase()) != null) {
+                throw new IllegalArgumentException("Category " + categoryKey + " given twice in " + criteria.keySet());
+            }
+        }
+        for (Map.Entry<String, String> criterion : sorted.entrySet()) {
+            key.append('&').append(criterion.getKey()).append(':').append(criterion.getValue());
+        }
+        for (RangeFilter.Measure measure : RangeFilter.Measure.values()) {
+            for (RangeFilter filter : rangeFilters) {
+                if (filter.getMeasure() == measure) {
+                    key.append('&').append(filter);
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (hasZoneRange) {
+            sb.append(QueryPlan.zoneFilter(minZone, maxZone, fullyContained));
+        }
+        for (Map.Entry<String, String> criterion : criteria.entrySet()) {
+            sb.append(sb.length() == 0 ? "" : " AND ").append(criterion.getKey()).append(':').append(criterion.getValue());
+        }
+        for (RangeFilter filter : rangeFilters) {
+            sb.append(sb.length() == 0 ? "" : " AND ").append(filter);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * A t-SNE embedding saved to a compact binary file, so a restart with the same flower matrix
+ * and t-SNE parameters reuses the previous layout instead of running t-SNE again.
+ * The key is a hash of whatever the embedding was computed from (see TSNEProcessor.cacheKey).
+ *
+ * Layout (big endian):
+ *   header:  magic, version, 32-byte key, flower count, dimensions
+ *   bounds:  min then max of every dimension, as doubles
+ *   points:  the coordinates of every flower, as doubles
+ *   names:   the flower of every point, each its UTF-8 byte length followed by the bytes
+ */
+public class TSNEEmbeddingCache {
+    private static final int MAGIC = 0x46465453; // "FFTS"
+    private static final int VERSION = 1;
+    private static final int KEY_BYTES = 32;
+
+    private final byte[] key;
+    private final double[][] coordinates;
+    private final double[] minValues;
+    private final double[] maxValues;
+    private final List<String> flowerNames;
+
+    private TSNEEmbeddingCache(byte[] key, double[][] coordinates, double[] minValues, double[] maxValues,
+                               List<String> flowerNames) {
+        this.key = key;
+        this.coordinates = coordinates;
+        this.minValues = minValues;
+        this.maxValues = maxValues;
+        this.flowerNames = flowerNames;
+    }
+
+    /**
+     * Reads a cache file.
+     * @throws IOException if the file can't be read or is not a cache of this version.
+     */
+    public static TSNEEmbeddingCache read(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a t-SNE embedding cache");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported t-SNE embedding cache version " + version);
+            }
+            byte[] key = new byte[KEY_BYTES];
+            buffer.get(key);
+            int size = buffer.getInt();
+            int dimensions = buffer.getInt();
+            // bounds, points and one length per name; checked before allocating anything
+            if (size < 0 || dimensions < 0
+                    || (2L + size) * dimensions * Double.BYTES + (long) size * Integer.BYTES > buffer.remaining()) {
+                throw new IOException("Corrupt t-SNE embedding cache " + path + ": " + size + " points of "
+                        + dimensions + " dimensions do not fit in " + buffer.remaining() + " bytes");
+            }
+            double[] minValues = new double[dimensions];
+            double[] maxValues = new double[dimensions];
+            for (int j = 0; j < dimensions; j++) {
+                minValues[j] = buffer.getDouble();
+            }
+            for (int j = 0; j < dimensions; j++) {
+                maxValues[j] = buffer.getDouble();
+            }
+            double[][] coordinates = new double[size][dimensions];
+            for (double[] point : coordinates) {
+                for (int j = 0; j < dimensions; j++) {
+                    point[j] = buffer.getDouble();
+                }
+            }
+            List<String> names = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IOException("Corrupt t-SNE embedding cache " + path + ": name of " + length
+                            + " bytes with " + buffer.remaining() + " left");
+                }
+                byte[] name = new byte[length];
+                buffer.get(name);
+                names.add(new String(name, StandardCharsets.UTF_8));
+            }
+            return new TSNEEmbeddingCache(key, coordinates, minValues, maxValues, Collections.unmodifiableList(names));
+        } catch (RuntimeException e) {
+            // a truncated file
+            throw new IOException("Corrupt t-SNE embedding cache " + path, e);
+        }
+    }
+
+    /**
+     * Writes an embedding under the given key. The file is written next to the target and moved
+     * into place, so readers never see a partial file.
+     */
+    public static void write(Path path, byte[] key, double[][] coordinates, double[] minValues, double[] maxValues,
+                             List<String> flowerNames) throws IOException {
+        if (key.length != KEY_BYTES) {
+            throw new IllegalArgumentException("Key must be " + KEY_BYTES + " bytes, got " + key.length);
+        }
+        if (coordinates.length != flowerNames.size()) {
+            throw new IllegalArgumentException(coordinates.length + " points but " + flowerNames.size() + " names");
+        }
+        int dimensions = minValues.length;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.write(key);
+        out.writeInt(coordinates.length);
+        out.writeInt(dimensions);
+        for (double value : minValues) {
+            out.writeDouble(value);
+        }
+        for (double value : maxValues) {
+            out.writeDouble(value);
+        }
+        for (double[] point : coordinates) {
+            for (int j = 0; j < dimensions; j++) {
+                out.writeDouble(point[j]);
+            }
+        }
+        for (String name : flowerNames) {
+            byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(encoded.length);
+            out.write(encoded);
+        }
+        out.flush();
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(tmp, bytes.toByteArray());
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // true if the cache was computed from the same input, for the same flowers in the same order
+    public boolean matches(byte[] key, List<String> flowerNames) {
+        return Arrays.equals(this.key, key) && this.flowerNames.equals(flowerNames);
+    }
+
+    public double[][] getCoordinates() {
+        return coordinates;
+    }
+
+    public double[] getMinValues() {
+        return minValues;
+    }
+
+    public double[] getMaxValues() {
+        return maxValues;
+    }
+
+    public List<String> getFlowerNames() {
+        return flowerNames;
+    }
+}
@@ -1,34 +1,128 @@
 import smile.manifold.TSNE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.List;
 
 public class TSNEProcessor {
+    private static final int DIMENSIONS = 2; // number of dimensions to reduce down to
+    private static final double PERPLEXITY = 50; // often between 5-50
+    private static final double LEARNING_RATE = 200.0;
+    private static final int MAX_ITERATIONS = 1000;
+    private static final double SCALED_MIN = 0;
+    private static final double SCALED_MAX = 100;
+
     private double[][] tsneResults;
     private List<String> flowerNames;
+    private boolean loadedFromCache;
     private double[] minTsneValues = {Double.MAX_VALUE, Double.MAX_VALUE};
     private double[] maxTsneValues = {Double.MIN_VALUE, Double.MIN_VALUE};
 
     public TSNEProcessor(int[][] flowerMatrix, List<String> flowerNames) {
         this.flowerNames = flowerNames;
-        runTSNE(flowerMatrix);
-        scaleTSNEResults(0, 100);  // Scale results to [0, 100]
+        runTSNE(toDoubles(flowerMatrix));
+        scaleTSNEResults(SCALED_MIN, SCALED_MAX);  // Scale results to [0, 100]
+    }
+
+    // t-SNE needs dense doubles, so the packed matrix is only expanded here
+    public TSNEProcessor(BitFeatureMatrix flowerMatrix, List<String> flowerNames) {
+        this.flowerNames = flowerNames;
+        runTSNE(flowerMatrix.toDoubleMatrix());
+        scaleTSNEResults(SCALED_MIN, SCALED_MAX);  // Scale results to [0, 100]
     }
 
-    private void runTSNE(int[][] matrix) {
-        // Convert the integer matrix to double for processing in TSNE
+    private TSNEProcessor(TSNEEmbeddingCache cache) {
+        this.flowerNames = cache.getFlowerNames();
+        this.tsneResults = cache.getCoordinates();
+        this.minTsneValues = cache.getMinValues();
+        this.maxTsneValues = cache.getMaxValues();
+        this.loadedFromCache = true;
+    }
+
+    /**
+     * Reuses the embedding in the cache file if it was computed from the same matrix, flowers
+     * and t-SNE parameters; otherwise runs t-SNE and rewrites the cache. Restarts on an
+     * unchanged catalog skip t-SNE and keep the same layout.
+     * @param flowerMatrix The flower x attribute matrix, see FlowerMatrixBuilder.buildBitMatrix.
+     * @param flowerNames The flower of each matrix row.
+     * @param cachePath The cache file, created if missing.
+     */
+    public static TSNEProcessor loadOrRun(BitFeatureMatrix flowerMatrix, List<String> flowerNames, String cachePath) {
+        Path cacheFile = Paths.get(cachePath);
+        byte[] key = cacheKey(flowerMatrix);
+        if (Files.exists(cacheFile)) {
+            try {
+                TSNEEmbeddingCache cache = TSNEEmbeddingCache.read(cacheFile);
+                if (cache.matches(key, flowerNames)) {
+                    return new TSNEProcessor(cache);
+                }
+            } catch (IOException e) {
+                // unreadable or from an older version: recompute it below
+                e.printStackTrace();
+            }
+        }
+
+        TSNEProcessor processor = new TSNEProcessor(flowerMatrix, flowerNames);
+        try {
+            TSNEEmbeddingCache.write(cacheFile, key, processor.tsneResults, processor.minTsneValues,
+                    processor.maxTsneValues, flowerNames);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return processor;
+    }
+
+    /**
+     * SHA-256 of the t-SNE parameters and the matrix (its size and packed rows); changes
+     * whenever either would change the embedding.
+     */
+    static byte[] cacheKey(BitFeatureMatrix flowerMatrix) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        ByteBuffer parameters = ByteBuffer.allocate(4 + 8 + 8 + 4 + 8 + 8 + 4 + 4);
+        parameters.putInt(DIMENSIONS).putDouble(PERPLEXITY).putDouble(LEARNING_RATE).putInt(MAX_ITERATIONS)
+                .putDouble(SCALED_MIN).putDouble(SCALED_MAX)
+                .putInt(flowerMatrix.rows()).putInt(flowerMatrix.columns());
+        digest.update(parameters.array());
+        for (int row = 0; row < flowerMatrix.rows(); row++) {
+            long[] words = flowerMatrix.row(row);
+            ByteBuffer packed = ByteBuffer.allocate(8 * words.length);
+            for (long word : words) {
+                packed.putLong(word);
+            }
+            digest.update(packed.array());
+        }
+        return digest.digest();
+    }
+
+    // Convert the integer matrix to double for processing in TSNE
+    private static double[][] toDoubles(int[][] matrix) {
         double[][] data = new double[matrix.length][matrix[0].length];
         for (int i = 0; i < matrix.length; i++) {
             for (int j = 0; j < matrix[i].length; j++) {
                 data[i][j] = (double) matrix[i][j];
             }
         }
+        return data;
+    }
 
+    private void runTSNE(double[][] data) {
         // Configuring TSNE
         TSNE tsne = new TSNE(
                 data, // data to be processed
-                2, // number of dimensions to reduce down to
-                50, // perplexity, often between 5-50
-                200.0, // learning rate
-                1000 // maximum iterations
+                DIMENSIONS,
+                PERPLEXITY,
+                LEARNING_RATE,
+                MAX_ITERATIONS
         );
 
         this.tsneResults = tsne.coordinates; // store the results
@@ -69,6 +163,11 @@ public class TSNEProcessor {
         }
     }
 
+    // true if the embedding came from a cache file instead of a t-SNE run
+    public boolean isLoadedFromCache() {
+        return loadedFromCache;
+    }
+
     public double[][] getTsneResults() {
         return tsneResults;
     }
@@ -0,0 +1,176 @@
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the k most similar flowers of every flower of a FlowerMatrixBuilder matrix by cosine
+ * similarity, without ever holding the N x N matrix. Rows are taken in blocks, one task per
+ * block on the common fork-join pool; a task streams every other block past its rows and keeps
+ * a bounded min-heap per row, whose root is the weakest neighbor kept so far. Each task owns
+ * its rows' heaps, so no locking is needed; the price is that every pair is scored twice.
+ * Memory is O(N*k) for the result plus O(BLOCK*k) per running task.
+ */
+public class TopKSimilarity {
+    private static final int BLOCK = 64; // rows per task
+
+    private TopKSimilarity() {
+    }
+
+    /**
+     * @param matrix The packed flower x attribute matrix, see FlowerMatrixBuilder.buildBitMatrix.
+     * @param k How many neighbors to keep per flower.
+     */
+    public static NeighborLists build(BitFeatureMatrix matrix, int k) {
+        int rows = matrix.rows();
+        NeighborLists result = new NeighborLists(rows, k);
+        double[] norms = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            norms[i] = matrix.norm(i);
+        }
+        int blocks = (rows + BLOCK - 1) / BLOCK;
+        IntStream.range(0, blocks).parallel().forEach(block -> {
+            int start = block * BLOCK;
+            int end = Math.min(rows, start + BLOCK);
+            BoundedHeap[] heaps = new BoundedHeap[end - start];
+            for (int i = start; i < end; i++) {
+                heaps[i - start] = new BoundedHeap(k);
+            }
+            // candidates in blocks too, so a candidate block is reused by all rows of this one
+            for (int candidateStart = 0; candidateStart < rows; candidateStart += BLOCK) {
+                int candidateEnd = Math.min(rows, candidateStart + BLOCK);
+                for (int i = start; i < end; i++) {
+                    BoundedHeap heap = heaps[i - start];
+                    for (int j = candidateStart; j < candidateEnd; j++) {
+                        if (i != j) {
+                            double cosine = norms[i] == 0 || norms[j] == 0 ? 0 : matrix.dot(i, j) / (norms[i] * norms[j]);
+                            heap.offer(j, (float) cosine);
+                        }
+                    }
+                }
+            }
+            for (int i = start; i < end; i++) {
+                heaps[i - start].drainInto(result, i);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Prints each flower's neighbors; the top-k counterpart of
+     * CosineSimilarityCalculator.printSimilarityScores.
+     */
+    public static void printNeighbors(NeighborLists neighbors, List<String> flowerNames) {
+        System.out.println("Most similar flowers:");
+        for (int i = 0; i < neighbors.size(); i++) {
+            System.out.println("\nSimilar to " + flowerNames.get(i) + ":");
+            for (int rank = 0; rank < neighbors.count(i); rank++) {
+                System.out.printf("%s: %.2f\n", flowerNames.get(neighbors.neighbor(i, rank)), neighbors.score(i, rank));
+            }
+        }
+    }
+
+    /**
+     * A min-heap of at most k (id, score) pairs in two parallel arrays. "Smaller" means a lower
+     * score, or the same score and a higher id, so results do not depend on the visiting order.
+     */
+    static class BoundedHeap {
+        private final int[] ids;
+        private final float[] scores;
+        private int size;
+
+        BoundedHeap(int k) {
+            this.ids = new int[k];
+            this.scores = new float[k];
+        }
+
+        void offer(int id, float score) {
+            if (size < ids.length) {
+                ids[size] = id;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (size > 0 && weaker(ids[0], scores[0], id, score)) {
+                ids[0] = id;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        // offers every pair of another heap, e.g. to merge the heaps of parallel chunks
+        void offerAll(BoundedHeap other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.ids[i], other.scores[i]);
+            }
+        }
+
+        // empties the heap into a NeighborLists row, strongest first
+        void drainInto(NeighborLists result, int row) {
+            int count = size;
+            int[] rankedIds = new int[count];
+            float[] rankedScores = new float[count];
+            for (int rank = count - 1; rank >= 0; rank--) {
+                rankedIds[rank] = ids[0];
+                rankedScores[rank] = scores[0];
+                size--;
+                ids[0] = ids[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+            result.setRow(row, rankedIds, rankedScores, count);
+        }
+
+        // empties the heap, returning the ids strongest first
+        int[] drainIds() {
+            int[] rankedIds = new int[size];
+            for (int rank = size - 1; rank >= 0; rank--) {
+                rankedIds[rank] = ids[0];
+                size--;
+                ids[0] = ids[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+            return rankedIds;
+        }
+
+        private static boolean weaker(int idA, float scoreA, int idB, float scoreB) {
+            return scoreA < scoreB || (scoreA == scoreB && idA > idB);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!weaker(ids[i], scores[i], ids[parent], scores[parent])) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int weakest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && weaker(ids[left], scores[left], ids[weakest], scores[weakest])) {
+                    weakest = left;
+                }
+                if (right < size && weaker(ids[right], scores[right], ids[weakest], scores[weakest])) {
+                    weakest = right;
+                }
+                if (weakest == i) {
+                    return;
+                }
+                swap(i, weakest);
+                i = weakest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            float score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Scoring many gardens: one search per garden on one thread versus SearchEngine.searchBatch,
+ * which runs duplicates once, shares common filter prefixes and runs on a fork-join pool.
+ * Both engines run without the result cache. Each garden is a zone plus sun and water needs.
+ * Usage: BatchSearchBenchmark [rows] [gardens] [parallelism]
+ */
+public class BatchSearchBenchmark {
+    private static final String[] SUN = {"full sun", "partial sun", "shade"};
+    private static final String[] WATER = {"low", "avarage", "high"};
+    private static final String[] TYPES = {"perennials", "annuals", "bulbs", "herbs", "roses"};
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int gardens = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+        int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        FlowerDatabase database = SyntheticCatalog.load(rows);
+        SearchEngine searchEngine = new SearchEngine(database, 0, 0);
+        List<SearchQuery> queries = gardens(gardens, new Random(42));
+        System.out.println("Catalog: " + database.getFlowersMap().size() + " flowers, " + gardens + " gardens");
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (int warmup = 0; warmup < 3; warmup++) {
+                searchOneByOne(searchEngine, queries);
+                searchEngine.searchBatch(queries, pool);
+            }
+            long sequentialStart = System.nanoTime();
+            long sequentialMatches = searchOneByOne(searchEngine, queries);
+            long sequentialNanos = System.nanoTime() - sequentialStart;
+
+            long batchStart = System.nanoTime();
+            long batchMatches = 0;
+            for (Set<Flower> result : searchEngine.searchBatch(queries, pool)) {
+                batchMatches += result.size();
+            }
+            long batchNanos = System.nanoTime() - batchStart;
+            if (sequentialMatches != batchMatches) {
+                throw new IllegalStateException("Batch and single searches disagree");
+            }
+
+            System.out.printf("%d matches in total%n", batchMatches);
+            System.out.printf("one by one:  %.1f ms%n", sequentialNanos / 1e6);
+            System.out.printf("batch (%d):  %.1f ms%n", parallelism, batchNanos / 1e6);
+            System.out.printf("speedup %.1fx%n", (double) sequentialNanos / batchNanos);
+        } finally {
+            pool.shutdown();
+            searchEngine.detach();
+        }
+    }
+
+    private static long searchOneByOne(SearchEngine searchEngine, List<SearchQuery> queries) {
+        long matches = 0;
+        for (SearchQuery query : queries) {
+            matches += searchEngine.search(query).size();
+        }
+        return matches;
+    }
+
+    private static List<SearchQuery> gardens(int count, Random random) {
+        List<SearchQuery> queries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, String> criteria = new HashMap<>();
+            criteria.put("SunNeeds", SUN[random.nextInt(SUN.length)]);
+            criteria.put("WaterNeeds", WATER[random.nextInt(WATER.length)]);
+            if (random.nextBoolean()) {
+                criteria.put("PlantType", TYPES[random.nextInt(TYPES.length)]);
+            }
+            queries.add(new SearchQuery(3 + random.nextInt(7), criteria));
+        }
+        return queries;
+    }
+}
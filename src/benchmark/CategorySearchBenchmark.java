@@ -0,0 +1,95 @@
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Multi-criteria category search: the old HashSet copy + retainAll strategy versus the
+ * bitmap postings in SearchEngine, without and with the result cache. The query is "perennials, full sun, low water".
+ * Usage: CategorySearchBenchmark [rows] [rounds]
+ */
+public class CategorySearchBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+
+        FlowerDatabase database = SyntheticCatalog.load(rows);
+        SearchEngine searchEngine = new SearchEngine(database, 0, 0);
+        SearchEngine cachedEngine = new SearchEngine(database);
+        Map<String, Set<Flower>> hashIndex = buildHashIndex(database);
+        System.out.println("Catalog: " + database.getFlowersMap().size() + " flowers");
+
+        Map<String, String> criteria = new LinkedHashMap<>();
+        criteria.put("PlantType", "perennials");
+        criteria.put("SunNeeds", "full sun");
+        criteria.put("WaterNeeds", "low");
+
+        int expected = searchHashSets(hashIndex, criteria);
+        if (expected != countBitmap(searchEngine, criteria)) {
+            throw new IllegalStateException("Indexes disagree");
+        }
+        for (int warmup = 0; warmup < rounds / 4; warmup++) {
+            searchHashSets(hashIndex, criteria);
+            countBitmap(searchEngine, criteria);
+            countBitmap(cachedEngine, criteria);
+        }
+
+        long hashStart = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            searchHashSets(hashIndex, criteria);
+        }
+        long hashNanos = (System.nanoTime() - hashStart) / rounds;
+
+        long bitmapStart = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            countBitmap(searchEngine, criteria);
+        }
+        long bitmapNanos = (System.nanoTime() - bitmapStart) / rounds;
+
+        long cachedStart = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            countBitmap(cachedEngine, criteria);
+        }
+        long cachedNanos = (System.nanoTime() - cachedStart) / rounds;
+
+        System.out.printf("%d matches%n", expected);
+        System.out.printf("HashSet retainAll:  %.1f us/query%n", hashNanos / 1e3);
+        System.out.printf("bitmap postings:    %.1f us/query%n", bitmapNanos / 1e3);
+        System.out.printf("cached result:      %.2f us/query (%s)%n", cachedNanos / 1e3, cachedEngine.getResultCache());
+        System.out.printf("speedup %.1fx uncached, %.1fx cached%n", (double) hashNanos / bitmapNanos,
+                (double) hashNanos / cachedNanos);
+        searchEngine.detach();
+        cachedEngine.detach();
+    }
+
+    private static int countBitmap(SearchEngine searchEngine, Map<String, String> criteria) {
+        return searchEngine.searchByMultipleCategories(criteria).size();
+    }
+
+    // the index and query SearchEngine used before postings became bitmaps
+    private static Map<String, Set<Flower>> buildHashIndex(FlowerDatabase database) {
+        Map<String, Set<Flower>> index = new HashMap<>();
+        for (Flower flower : database.getFlowersMap().values()) {
+            for (String plantType : flower.getPlantTypes()) {
+                index.computeIfAbsent("PlantType:" + plantType.toLowerCase(), k -> new HashSet<>()).add(flower);
+            }
+            for (String sunNeeds : flower.getSunNeeds()) {
+                index.computeIfAbsent("SunNeeds:" + sunNeeds.toLowerCase(), k -> new HashSet<>()).add(flower);
+            }
+            index.computeIfAbsent("WaterNeeds:" + flower.getWaterNeeds().toLowerCase(), k -> new HashSet<>()).add(flower);
+        }
+        return index;
+    }
+
+    private static int searchHashSets(Map<String, Set<Flower>> index, Map<String, String> criteria) {
+        Set<Flower> resultSet = null;
+        for (Map.Entry<String, String> entry : criteria.entrySet()) {
+            Set<Flower> currentSet = index.getOrDefault(entry.getKey() + ":" + entry.getValue().toLowerCase(), Collections.emptySet());
+            if (resultSet == null) {
+                resultSet = new HashSet<>(currentSet);
+            } else {
+                resultSet.retainAll(currentSet);
+            }
+        }
+        return resultSet == null ? 0 : resultSet.size();
+    }
+}
@@ -0,0 +1,177 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+/**
+ * Compares ColorMatcher with the regex and HashMap based extractColors it replaced,
+ * over the Color column of the bundled CSV.
+ * Usage: ColorMatcherBenchmark [rounds]
+ */
+public class ColorMatcherBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        List<String> descriptions = readColorColumn();
+
+        int differences = 0;
+        for (String description : descriptions) {
+            List<String> legacy = legacyExtractColors(description);
+            List<String> current = ColorMatcher.DEFAULT.extract(description);
+            if (!legacy.equals(current)) {
+                differences++;
+                System.out.println("differs: \"" + description + "\" legacy=" + legacy + " matcher=" + current);
+            }
+        }
+        System.out.println(differences + " of " + descriptions.size() + " descriptions differ (multi-word terms)");
+
+        long checksum = 0;
+        for (int warmup = 0; warmup < 2; warmup++) {
+            checksum += run(descriptions, rounds / 4, true) + run(descriptions, rounds / 4, false);
+        }
+        long legacyStart = System.nanoTime();
+        checksum += run(descriptions, rounds, true);
+        long legacyNanos = System.nanoTime() - legacyStart;
+        long matcherStart = System.nanoTime();
+        checksum += run(descriptions, rounds, false);
+        long matcherNanos = System.nanoTime() - matcherStart;
+
+        long calls = (long) rounds * descriptions.size();
+        System.out.printf("legacy extractColors: %.1f ns/call%n", (double) legacyNanos / calls);
+        System.out.printf("ColorMatcher:         %.1f ns/call%n", (double) matcherNanos / calls);
+        System.out.printf("speedup %.1fx (checksum %d)%n", (double) legacyNanos / matcherNanos, checksum);
+    }
+
+    private static long run(List<String> descriptions, int rounds, boolean legacy) {
+        long found = 0;
+        for (int r = 0; r < rounds; r++) {
+            for (String description : descriptions) {
+                found += legacy ? legacyExtractColors(description).size()
+                        : ColorMatcher.DEFAULT.extract(description).size();
+            }
+        }
+        return found;
+    }
+
+    private static List<String> readColorColumn() throws IOException {
+        CSVFormat format = CSVFormat.DEFAULT.builder().setHeader().setTrim(true).build();
+        List<String> descriptions = new ArrayList<>();
+        try (Reader reader = Files.newBufferedReader(Path.of(SyntheticCatalog.BUNDLED_CSV), StandardCharsets.UTF_8);
+             CSVParser parser = new CSVParser(reader, format)) {
+            for (CSVRecord record : parser) {
+                descriptions.add(record.get("Color").toLowerCase().trim());
+            }
+        }
+        return descriptions;
+    }
+
+    /*
+     * The extractColors implementation from FlowerDatabase before ColorMatcher, kept as the baseline.
+     */
+    private static List<String> legacyExtractColors(String colorDescription) {
+        // Dictionary to map similar color terms to standard color names
+        Map<String, String> colorMap = new HashMap<>();
+        colorMap.put("red", "red");
+        colorMap.put("scarlet", "red");
+        colorMap.put("rose", "red");
+        colorMap.put("crimson", "red");
+        colorMap.put("maroon", "red");
+        colorMap.put("ruby", "red");
+        colorMap.put("rust", "red");
+        colorMap.put("burgundy", "red");
+        colorMap.put("raspberry", "red");
+
+        colorMap.put("purple", "purple");
+        colorMap.put("plum", "purple");
+        colorMap.put("violet", "purple");
+        colorMap.put("lavender", "purple");
+        colorMap.put("lilac", "purple");
+        colorMap.put("mauve", "purple");
+        colorMap.put("amethyst", "purple");
+
+        colorMap.put("pink", "pink");
+        colorMap.put("fuchsia", "pink");
+        colorMap.put("salmon", "pink");
+        colorMap.put("peach", "pink");
+        colorMap.put("coral", "pink");
+        colorMap.put("magenta", "pink");
+
+        colorMap.put("blue", "blue");
+        colorMap.put("teal", "blue");
+        colorMap.put("cyan", "blue");
+        colorMap.put("cerulean", "blue");
+        colorMap.put("azure", "blue");
+        colorMap.put("aqua", "blue");
+        colorMap.put("turquoise", "blue");
+        colorMap.put("cobalt", "blue");
+        colorMap.put("sapphire", "blue");
+        colorMap.put("indigo", "blue");
+        colorMap.put("aquamarine", "blue");
+        colorMap.put("navy", "blue");
+        colorMap.put("denim", "blue");
+
+        colorMap.put("green", "green");
+        colorMap.put("peridot", "green");
+        colorMap.put("emerald", "green");
+        colorMap.put("jade", "green");
+        colorMap.put("olive", "green");
+        colorMap.put("lime", "green");
+
+        colorMap.put("ochre", "yellow");
+        colorMap.put("yellow", "yellow");
+        colorMap.put("khaki", "yellow");
+        colorMap.put("golden", "yellow");
+        colorMap.put("mustard", "yellow");
+
+        colorMap.put("orange", "orange");
+        colorMap.put("amber", "orange");
+        colorMap.put("saffron", "orange");
+        colorMap.put("copper", "orange");
+        colorMap.put("bronze", "orange");
+
+        colorMap.put("brown", "brown");
+        colorMap.put("beige", "brown");
+        colorMap.put("chocolate", "brown");
+        colorMap.put("tan", "brown");
+        colorMap.put("sepia", "brown");
+
+        colorMap.put("white", "white");
+        colorMap.put("ivory", "white");
+        colorMap.put("cream", "white");
+
+        colorMap.put("grey", "grey");
+        colorMap.put("silver", "grey");
+        colorMap.put("charcoal", "grey");
+
+        colorMap.put("black", "black");
+
+        Set<String> knownColors = new HashSet<>(Arrays.asList(
+                "white", "cream", "yellow", "purple", "orange", "pink", "red", "blue",
+                "green", "black", "lavender", "maroon", "violet", "brown", "gold", "scarlet",
+                "salmon", "rose", "lilac", "mauve", "crimson", "cyan", "magenta", "ivory",
+                "beige", "turquoise", "teal", "grey", "silver", "peach", "coral", "fuchsia",
+                "lime", "olive", "chocolate", "tan", "navy", "denim", "charcoal", "rust",
+                "burgundy", "mustard", "indigo", "saffron", "aquamarine", "khaki", "golden",
+                "raspberry", "plum", "ochre", "cerulean", "azure", "jade", "emerald", "amber",
+                "ruby", "sepia", "copper", "bronze", "cobalt", "sapphire", "peridot", "amethyst"
+        ));
+
+        List<String> extractedColors = new ArrayList<>();
+        String[] words = colorDescription.toLowerCase().replaceAll("[^a-z0-9\\s]+", " ").split("\\s+");
+        for (String word : words) {
+            if (colorMap.containsKey(word)) {
+                word = colorMap.get(word); // Map to a standard color if applicable
+            }
+            if (knownColors.contains(word)) {
+                extractedColors.add(word);
+            }
+        }
+        return extractedColors;
+    }
+}
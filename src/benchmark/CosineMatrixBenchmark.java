@@ -0,0 +1,67 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * All-pairs cosine: the original calculateCosineSimilarityMatrix (double[N][N], norms per pair)
+ * versus the blocked, parallel calculateCondensedCosineMatrix on int rows and on bit-packed rows.
+ * Rows are random 0/1 vectors shaped like the flower matrix (about a fifth of the columns set).
+ * The original method is skipped above maxReferenceRows, its N x N doubles outgrow the heap first.
+ * Usage: CosineMatrixBenchmark [sizes, e.g. 1000,10000,50000] [columns] [maxReferenceRows]
+ */
+public class CosineMatrixBenchmark {
+
+    public static void main(String[] args) {
+        String[] sizes = (args.length > 0 ? args[0] : "1000,10000").split(",");
+        int columns = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int maxReferenceRows = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        System.out.println("Columns: " + columns + ", threads: " + Runtime.getRuntime().availableProcessors());
+
+        for (String size : sizes) {
+            int rows = Integer.parseInt(size.trim());
+            long condensedBytes = 4 * CondensedSimilarityMatrix.cells(rows);
+            if (condensedBytes > Runtime.getRuntime().maxMemory() * 0.8) {
+                System.out.printf("N=%d: skipped, the condensed matrix alone needs %.1f GB (raise -Xmx)%n",
+                        rows, condensedBytes / 1e9);
+                continue;
+            }
+            int[][] matrix = randomMatrix(rows, columns, new Random(rows));
+            BitFeatureMatrix packed = BitFeatureMatrix.fromIntMatrix(matrix);
+
+            // warm up on a slice so the JIT has compiled the kernels before timing
+            int[][] slice = Arrays.copyOf(matrix, Math.min(rows, 500));
+            for (int warmup = 0; warmup < 3; warmup++) {
+                CosineSimilarityCalculator.calculateCosineSimilarityMatrix(slice);
+                CosineSimilarityCalculator.calculateCondensedCosineMatrix(slice);
+                CosineSimilarityCalculator.calculateCondensedCosineMatrix(BitFeatureMatrix.fromIntMatrix(slice));
+            }
+
+            String reference = "skipped";
+            if (rows <= maxReferenceRows) {
+                long start = System.nanoTime();
+                CosineSimilarityCalculator.calculateCosineSimilarityMatrix(matrix);
+                reference = String.format("%.0f ms, %.0f MB", (System.nanoTime() - start) / 1e6, 8.0 * rows * rows / 1e6);
+            }
+            long denseStart = System.nanoTime();
+            CosineSimilarityCalculator.calculateCondensedCosineMatrix(matrix);
+            long denseNanos = System.nanoTime() - denseStart;
+            long packedStart = System.nanoTime();
+            CondensedSimilarityMatrix result = CosineSimilarityCalculator.calculateCondensedCosineMatrix(packed);
+            long packedNanos = System.nanoTime() - packedStart;
+
+            System.out.printf("N=%d%n", rows);
+            System.out.printf("  original double[N][N]:   %s%n", reference);
+            System.out.printf("  condensed, int rows:     %.0f ms, %.0f MB%n", denseNanos / 1e6, result.sizeInBytes() / 1e6);
+            System.out.printf("  condensed, packed rows:  %.0f ms%n", packedNanos / 1e6);
+        }
+    }
+
+    private static int[][] randomMatrix(int rows, int columns, Random random) {
+        int[][] matrix = new int[rows][columns];
+        for (int[] row : matrix) {
+            for (int j = 0; j < columns; j++) {
+                row[j] = random.nextInt(5) == 0 ? 1 : 0;
+            }
+        }
+        return matrix;
+    }
+}
@@ -0,0 +1,34 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compares the sequential and the parallel CSV loader of FlowerDatabase on a synthetic catalog.
+ * Usage: CsvIngestionBenchmark [rows] [threads]
+ */
+public class CsvIngestionBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        Path csv = Files.createTempFile("synthetic-flowers", ".csv");
+        try {
+            SyntheticCatalog.writeCsv(csv, rows);
+            long bytes = Files.size(csv);
+
+            long start = System.nanoTime();
+            new FlowerDatabase().loadFlowersFromCSV(csv.toString());
+            long sequentialNanos = System.nanoTime() - start;
+            System.out.printf("Sequential: %d records (%.2f MB) in %.1f ms: %.0f records/sec, %.2f MB/sec%n",
+                    rows, bytes / (1024.0 * 1024.0), sequentialNanos / 1e6,
+                    rows * 1e9 / sequentialNanos, bytes / (1024.0 * 1024.0) * 1e9 / sequentialNanos);
+
+            IngestionReport report = new FlowerDatabase().loadFlowersFromCSVParallel(csv.toString(), threads);
+            System.out.println("Parallel:   " + report);
+            System.out.printf("Speedup: %.2fx%n", (double) sequentialNanos / report.getTotalNanos());
+        } finally {
+            Files.deleteIfExists(csv);
+        }
+    }
+}
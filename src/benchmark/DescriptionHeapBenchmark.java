@@ -0,0 +1,54 @@
+import java.io.IOException;
+
+/**
+ * Heap used by a loaded catalog with descriptions on the heap, off-heap, and off-heap compressed,
+ * on the bundled CSV and on a synthetic catalog.
+ * Usage: DescriptionHeapBenchmark [syntheticRows]
+ * The default of 1,000,000 rows needs about 1.5 GB of heap and 0.5 GB of direct memory; run it with -Xmx4g.
+ */
+public class DescriptionHeapBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        System.out.println("Bundled CSV:");
+        for (Mode mode : Mode.values()) {
+            report(mode, -1);
+        }
+        System.out.println("Synthetic catalog, " + rows + " rows:");
+        for (Mode mode : Mode.values()) {
+            report(mode, rows);
+        }
+    }
+
+    private enum Mode { ON_HEAP, OFF_HEAP, OFF_HEAP_COMPRESSED }
+
+    private static void report(Mode mode, int rows) throws IOException {
+        long before = usedHeap();
+        FlowerDatabase database = new FlowerDatabase();
+        if (mode != Mode.ON_HEAP) {
+            database.useOffHeapDescriptions(mode == Mode.OFF_HEAP_COMPRESSED);
+        }
+        if (rows < 0) {
+            database.loadFlowersFromCSV(SyntheticCatalog.BUNDLED_CSV);
+        } else {
+            SyntheticCatalog.load(database, rows);
+        }
+        long heap = usedHeap() - before;
+        DescriptionStore store = database.getDescriptionStore();
+        System.out.printf("  %-20s %6d flowers, heap %8.2f MB, off-heap %8.2f MB%n", mode,
+                database.getFlowersMap().size(), heap / (1024.0 * 1024.0),
+                store == null ? 0.0 : store.getStoredBytes() / (1024.0 * 1024.0));
+        if (database.getFlowersMap().isEmpty()) {
+            throw new IllegalStateException("nothing loaded"); // keeps the database reachable until measured
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
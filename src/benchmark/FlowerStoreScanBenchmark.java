@@ -0,0 +1,67 @@
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * Full-catalog scans over the map-based FlowerDatabase versus ColumnarFlowerStore.
+ * The query is "zone 7, perennials, full sun", answered by walking every flower.
+ * Usage: FlowerStoreScanBenchmark [rows] [rounds]
+ */
+public class FlowerStoreScanBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        FlowerDatabase database = SyntheticCatalog.load(rows);
+        ColumnarFlowerStore store = ColumnarFlowerStore.copyOf(database);
+        System.out.println("Catalog: " + database.getFlowersMap().size() + " flowers");
+
+        long expected = scanMap(database);
+        if (expected != scanColumns(store)) {
+            throw new IllegalStateException("Stores disagree");
+        }
+        for (int warmup = 0; warmup < 3; warmup++) {
+            scanMap(database);
+            scanColumns(store);
+        }
+
+        long mapStart = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            scanMap(database);
+        }
+        long mapNanos = (System.nanoTime() - mapStart) / rounds;
+
+        long columnStart = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            scanColumns(store);
+        }
+        long columnNanos = (System.nanoTime() - columnStart) / rounds;
+
+        System.out.printf("%d matches%n", expected);
+        System.out.printf("HashMap<String, Flower> scan: %.2f ms (%.1f ns/flower)%n", mapNanos / 1e6, (double) mapNanos / rows);
+        System.out.printf("ColumnarFlowerStore scan:     %.2f ms (%.1f ns/flower)%n", columnNanos / 1e6, (double) columnNanos / rows);
+        System.out.printf("speedup %.1fx%n", (double) mapNanos / columnNanos);
+    }
+
+    private static long scanMap(FlowerDatabase database) {
+        AttributeDictionary dictionary = AttributeDictionary.getInstance();
+        int perennials = dictionary.idOf(AttributeCategory.PLANT_TYPE, "perennials");
+        int fullSun = dictionary.idOf(AttributeCategory.SUN_NEEDS, "full sun");
+        long matches = 0;
+        for (Flower flower : database.getFlowersMap().values()) {
+            if (flower.getMinZone() <= 7 && 7 <= flower.getMaxZone()
+                    && flower.hasAttribute(AttributeCategory.PLANT_TYPE, perennials)
+                    && flower.hasAttribute(AttributeCategory.SUN_NEEDS, fullSun)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private static long scanColumns(ColumnarFlowerStore store) {
+        BitSet matches = store.scanZone(7);
+        matches.and(store.scanAttribute(AttributeCategory.PLANT_TYPE, "perennials"));
+        matches.and(store.scanAttribute(AttributeCategory.SUN_NEEDS, "full sun"));
+        return matches.cardinality();
+    }
+}
@@ -0,0 +1,125 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * How close QuadTree.findKApproximateNearestNeighbors comes to the true nearest neighbors, with
+ * ExactNearestNeighbors as the ground truth, in t-SNE space (Euclidean) and in attribute space
+ * (cosine distance between FlowerMatrixBuilder rows). For every catalog size it reports
+ * recall@k, counting a returned flower as a hit when it is no farther than the exact k-th
+ * neighbor (synthetic catalogs repeat flowers, so ties are common), the mean distance of the
+ * returned and of the exact neighbors and their ratio (1 is perfect; n/a when the exact
+ * neighbors are all duplicates at distance 0) and p50/p99 latency per query.
+ * t-SNE is O(N^2), which bounds the sizes that finish in reasonable time. The figures depend on
+ * the t-SNE layout, so report them with the Smile version and the TSNEProcessor parameters.
+ * Usage: KnnBenchmark [sizes, e.g. 222,1000,2000] [k] [queries]
+ */
+public class KnnBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        String[] sizes = (args.length > 0 ? args[0] : "222,1000,2000").split(",");
+        int k = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        for (String size : sizes) {
+            FlowerDatabase database = SyntheticCatalog.load(Integer.parseInt(size.trim()));
+            FlowerMatrixBuilder builder = new FlowerMatrixBuilder(database);
+            BitFeatureMatrix matrix = builder.buildBitMatrix();
+            List<String> names = builder.getFlowerNames();
+
+            long tsneStart = System.nanoTime();
+            TSNEProcessor tsne = new TSNEProcessor(matrix, names);
+            long tsneNanos = System.nanoTime() - tsneStart;
+            double[][] points = tsne.getTsneResults();
+            QuadTree quadTree = new QuadTree(tsne.getMinTsneValues()[0], tsne.getMaxTsneValues()[0],
+                    tsne.getMinTsneValues()[1], tsne.getMaxTsneValues()[1]);
+            for (int i = 0; i < points.length; i++) {
+                quadTree.insert(names.get(i), points[i][0], points[i][1]);
+            }
+            ExactNearestNeighbors exactTsne = new ExactNearestNeighbors(points, names);
+            ExactNearestNeighbors exactAttributes = new ExactNearestNeighbors(matrix, names);
+
+            int count = Math.min(queries, names.size());
+            int[] queryRows = new Random(1).ints(0, names.size()).distinct().limit(count).toArray();
+            Accuracy tsneAccuracy = new Accuracy();
+            Accuracy attributeAccuracy = new Accuracy();
+            long[] quadTreeNanos = new long[count];
+            long[] exactTsneNanos = new long[count];
+            long[] exactAttributeNanos = new long[count];
+            for (int q = -3; q < count; q++) { // three untimed warm-up queries
+                int row = queryRows[Math.max(q, 0)];
+                long start = System.nanoTime();
+                List<String> approximate = quadTree.findKApproximateNearestNeighbors(names.get(row), k);
+                long quadTreeEnd = System.nanoTime();
+                int[] tsneTruth = exactTsne.nearest(row, k);
+                long exactTsneEnd = System.nanoTime();
+                int[] attributeTruth = exactAttributes.nearest(row, k);
+                long exactAttributeEnd = System.nanoTime();
+                if (q < 0) {
+                    continue;
+                }
+                quadTreeNanos[q] = quadTreeEnd - start;
+                exactTsneNanos[q] = exactTsneEnd - quadTreeEnd;
+                exactAttributeNanos[q] = exactAttributeEnd - exactTsneEnd;
+                int[] approximateRows = approximate.stream().mapToInt(exactTsne::rowOf).toArray();
+                tsneAccuracy.add(exactTsne, row, approximateRows, tsneTruth, k);
+                attributeAccuracy.add(exactAttributes, row, approximateRows, attributeTruth, k);
+            }
+
+            System.out.printf("N=%d, k=%d, %d queries, t-SNE took %.1f s%n", names.size(), k, count, tsneNanos / 1e9);
+            System.out.printf("  quadtree vs exact t-SNE:      %s%n", tsneAccuracy.summary(k));
+            System.out.printf("  quadtree vs exact attributes: %s%n", attributeAccuracy.summary(k));
+            System.out.printf("  latency p50/p99: quadtree %s, exact t-SNE %s, exact attributes %s%n",
+                    latency(quadTreeNanos), latency(exactTsneNanos), latency(exactAttributeNanos));
+        }
+    }
+
+    // recall and mean neighbor distances summed over queries
+    private static class Accuracy {
+        long hits;
+        long wanted;
+        int queries;
+        double approximateDistance;
+        double exactDistance;
+
+        void add(ExactNearestNeighbors exact, int row, int[] approximate, int[] truth, int k) {
+            wanted += Math.min(k, truth.length);
+            if (truth.length == 0) {
+                return;
+            }
+            double kthDistance = exact.distance(row, truth[truth.length - 1]);
+            double approximateSum = 0;
+            for (int neighbor : approximate) {
+                double distance = exact.distance(row, neighbor);
+                approximateSum += distance;
+                if (distance <= kthDistance + 1e-9) {
+                    hits++;
+                }
+            }
+            double exactSum = 0;
+            for (int neighbor : truth) {
+                exactSum += exact.distance(row, neighbor);
+            }
+            if (approximate.length > 0) {
+                queries++;
+                approximateDistance += approximateSum / approximate.length;
+                exactDistance += exactSum / truth.length;
+            }
+        }
+
+        String summary(int k) {
+            double recall = wanted == 0 ? 0 : (double) hits / wanted;
+            String ratio = exactDistance < 1e-9 ? "n/a" : String.format("%.2f", approximateDistance / exactDistance);
+            return String.format("recall@%d %.3f, mean distance %.3f vs exact %.3f, ratio %s", k, recall,
+                    approximateDistance / Math.max(1, queries), exactDistance / Math.max(1, queries), ratio);
+        }
+    }
+
+    private static String latency(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return String.format("%.3f/%.3f ms", sorted[sorted.length / 2] / 1e6,
+                sorted[Math.min(sorted.length - 1, sorted.length * 99 / 100)] / 1e6);
+    }
+}
@@ -0,0 +1,113 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Similar-flower lookup through MinHashIndex versus a brute-force Jaccard scan, on a synthetic
+ * catalog: every synthetic flower is the feature set of a random bundled flower with each
+ * feature dropped with probability 0.1 and up to two random features added, so neighbors are
+ * near-duplicates with a spread of similarities rather than exact copies.
+ * Recall@k counts a returned flower as a hit when its Jaccard similarity reaches the k-th best
+ * of the brute-force scan, so ties do not count as misses.
+ * Usage: MinHashBenchmark [flowers] [configs as bandsxrows, e.g. 8x4,4x8,8x8,4x12] [k] [queries]
+ */
+public class MinHashBenchmark {
+
+    public static void main(String[] args) {
+        int flowers = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String[] configs = (args.length > 1 ? args[1] : "8x4,4x8,8x8,4x12").split(",");
+        int k = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int queries = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+
+        FlowerDatabase database = new FlowerDatabase();
+        database.loadFlowersFromCSV(SyntheticCatalog.BUNDLED_CSV);
+        FlowerMatrixBuilder builder = new FlowerMatrixBuilder(database);
+        List<int[]> seeds = new ArrayList<>();
+        for (Flower flower : database.getFlowersMap().values()) {
+            seeds.add(builder.getFeatures(flower));
+        }
+        int columns = builder.buildBitMatrix().columns();
+        Random random = new Random(1);
+        int[][] sets = new int[flowers][];
+        for (int i = 0; i < flowers; i++) {
+            sets[i] = mutate(seeds.get(random.nextInt(seeds.size())), columns, random);
+        }
+        int[] queryIds = random.ints(queries, 0, flowers).toArray();
+        System.out.printf("Flowers: %d, columns: %d, k: %d, queries: %d%n", flowers, columns, k, queries);
+
+        // brute force: score every flower against the query
+        float[] kthBest = new float[queries];
+        long[] bruteNanos = new long[queries];
+        for (int q = -3; q < queries; q++) { // three untimed warm-up queries
+            int id = queryIds[Math.max(q, 0)];
+            long start = System.nanoTime();
+            TopKSimilarity.BoundedHeap heap = new TopKSimilarity.BoundedHeap(k);
+            for (int j = 0; j < flowers; j++) {
+                if (j != id) {
+                    heap.offer(j, (float) MinHashIndex.jaccard(sets[id], sets[j]));
+                }
+            }
+            int[] best = heap.drainIds();
+            if (q >= 0) {
+                bruteNanos[q] = System.nanoTime() - start;
+                kthBest[q] = (float) MinHashIndex.jaccard(sets[id], sets[best[best.length - 1]]);
+            }
+        }
+        System.out.printf("brute force:  p50 %.2f ms, p99 %.2f ms%n", percentile(bruteNanos, 50) / 1e6, percentile(bruteNanos, 99) / 1e6);
+
+        for (String config : configs) {
+            String[] parts = config.trim().split("x");
+            int bands = Integer.parseInt(parts[0]);
+            int rows = Integer.parseInt(parts[1]);
+            long buildStart = System.nanoTime();
+            MinHashIndex index = new MinHashIndex(bands, rows, 42);
+            for (int i = 0; i < flowers; i++) {
+                index.add(i, sets[i]);
+            }
+            long buildNanos = System.nanoTime() - buildStart;
+
+            long[] lshNanos = new long[queries];
+            long hits = 0;
+            long candidates = 0;
+            for (int q = -3; q < queries; q++) {
+                int id = queryIds[Math.max(q, 0)];
+                long start = System.nanoTime();
+                int[] result = index.similarTo(id, k);
+                if (q < 0) {
+                    continue;
+                }
+                lshNanos[q] = System.nanoTime() - start;
+                for (int neighbor : result) {
+                    if ((float) MinHashIndex.jaccard(sets[id], sets[neighbor]) >= kthBest[q]) {
+                        hits++;
+                    }
+                }
+                candidates += index.candidates(sets[id]).length;
+            }
+            System.out.printf("LSH %2dx%-2d:   p50 %.2f ms, p99 %.2f ms, recall@%d %.3f, %.0f candidates per query, built in %.1f s%n",
+                    bands, rows, percentile(lshNanos, 50) / 1e6, percentile(lshNanos, 99) / 1e6, k,
+                    (double) hits / ((long) queries * k), (double) candidates / queries, buildNanos / 1e9);
+        }
+    }
+
+    private static int[] mutate(int[] seed, int columns, Random random) {
+        int[] set = new int[seed.length + 2];
+        int n = 0;
+        for (int feature : seed) {
+            if (random.nextInt(10) != 0) {
+                set[n++] = feature;
+            }
+        }
+        for (int extra = random.nextInt(3); extra > 0; extra--) {
+            set[n++] = random.nextInt(columns);
+        }
+        return Arrays.stream(set, 0, n).sorted().distinct().toArray();
+    }
+
+    private static long percentile(long[] values, int percentile) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)];
+    }
+}
@@ -0,0 +1,86 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+
+/**
+ * Builds large synthetic catalogs for the benchmarks by cycling through the rows of the
+ * bundled CSV and giving every copy a unique name (and unique aliases).
+ */
+public class SyntheticCatalog {
+    public static final String BUNDLED_CSV = "src/resource/FlowerDatabase.csv";
+
+    /**
+     * Writes a CSV with the same header as the bundled one and the given number of rows.
+     */
+    public static void writeCsv(Path target, int rows) throws IOException {
+        List<CSVRecord> seed = readSeed();
+        CSVFormat format = CSVFormat.DEFAULT.builder().setHeader(seed.get(0).getParser().getHeaderNames()
+                .toArray(new String[0])).build();
+        try (BufferedWriter writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8);
+             CSVPrinter printer = new CSVPrinter(writer, format)) {
+            for (int i = 0; i < rows; i++) {
+                CSVRecord record = seed.get(i % seed.size());
+                List<String> values = new ArrayList<>(record.toList());
+                values.set(0, uniqueName(record.get("Name"), i));
+                printer.printRecord(values);
+            }
+        }
+    }
+
+    /**
+     * Writes a synthetic CSV to a temporary file and loads it into a fresh database.
+     */
+    public static FlowerDatabase load(int rows) throws IOException {
+        return load(new FlowerDatabase(), rows);
+    }
+
+    /**
+     * Same as load(rows), into a database that has already been configured.
+     */
+    public static FlowerDatabase load(FlowerDatabase database, int rows) throws IOException {
+        Path csv = Files.createTempFile("synthetic-flowers", ".csv");
+        try {
+            writeCsv(csv, rows);
+            database.loadFlowersFromCSVParallel(csv.toString(), Runtime.getRuntime().availableProcessors());
+            return database;
+        } finally {
+            Files.deleteIfExists(csv);
+        }
+    }
+
+    // "Aster (Michaelmas Daisy)" -> "Aster 17 (Michaelmas Daisy 17)"
+    private static String uniqueName(String name, int copy) {
+        if (copy == 0) {
+            return name;
+        }
+        int open = name.indexOf('(');
+        if (open < 0) {
+            return name.trim() + " " + copy;
+        }
+        String primary = name.substring(0, open).trim() + " " + copy;
+        String[] aliases = name.substring(open + 1).replace(")", "").split(";");
+        StringBuilder sb = new StringBuilder(primary).append(" (");
+        for (int i = 0; i < aliases.length; i++) {
+            sb.append(i == 0 ? "" : "; ").append(aliases[i].trim()).append(' ').append(copy);
+        }
+        return sb.append(')').toString();
+    }
+
+    private static List<CSVRecord> readSeed() throws IOException {
+        CSVFormat format = CSVFormat.DEFAULT.builder().setHeader().setTrim(true).build();
+        try (Reader reader = Files.newBufferedReader(Path.of(BUNDLED_CSV), StandardCharsets.UTF_8);
+             CSVParser parser = new CSVParser(reader, format)) {
+            return parser.getRecords();
+        }
+    }
+}
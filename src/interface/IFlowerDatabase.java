@@ -1,4 +1,5 @@
 import java.util.List;
+import java.util.Map;
 
 public interface IFlowerDatabase {
     /**
@@ -34,4 +35,29 @@ public interface IFlowerDatabase {
      * @return The flower object if found, otherwise null.
      */
     Flower getFlower(String name);
+
+    /**
+     * Returns all flowers keyed by primary name.
+     * @return a map from primary names to flowers.
+     */
+    Map<String, Flower> getFlowersMap();
+
+    /**
+     * Registers a listener that is told about every flower added, removed or replaced.
+     * @param listener The listener to add.
+     */
+    void addListener(IFlowerDatabaseListener listener);
+
+    /**
+     * Unregisters a listener added with addListener.
+     * @param listener The listener to remove.
+     */
+    void removeListener(IFlowerDatabaseListener listener);
+
+    /**
+     * Runs a group of edits (addFlower, deleteFlower, loading) and notifies the listeners once,
+     * with all of the changes, when the edits are done.
+     * @param edits The edits to run.
+     */
+    void batchUpdate(Runnable edits);
 }
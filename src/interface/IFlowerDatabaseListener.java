@@ -0,0 +1,10 @@
+import java.util.List;
+
+public interface IFlowerDatabaseListener {
+    /**
+     * Called after flowers were added, removed or replaced in a database.
+     * @param changes The changes in the order they were made; a batch update delivers all of
+     *                its changes in one call.
+     */
+    void onFlowersChanged(List<FlowerChange> changes);
+}
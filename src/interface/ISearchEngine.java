@@ -1,3 +1,5 @@
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -9,10 +11,38 @@ public interface ISearchEngine {
     // Search for flowers that can thrive within a specific hardiness zone.
     List<Flower> searchByZone(int zone);
 
+    // Search for flowers that survive in every zone of lo-hi (fullyContained) or in any of them.
+    // Throws IllegalArgumentException if lo > hi.
+    List<Flower> searchByZoneRange(int lo, int hi, boolean fullyContained);
+
     // Search for flowers based on a specific category and value, like "PlantType" or "Color".
     Set<Flower> searchByCategory(String category, String value);
 
+    // Same as above with a typed category.
+    Set<Flower> searchByCategory(AttributeCategory category, String value);
+
     // Search based on multiple categories, combining several filters.
     Set<Flower> searchByMultipleCategories(Map<String, String> criteria);
 
+    // Search with category and zone filters, applied from the most to the least selective.
+    Set<Flower> search(SearchQuery query);
+
+    // Run many queries at once, in parallel; results come back in the order of the queries.
+    List<Set<Flower>> searchBatch(List<SearchQuery> queries);
+
+    // Run a query and report the order its filters were applied in and their cardinalities.
+    QueryPlan explain(SearchQuery query);
+
+    // Search with a boolean query such as "(PlantType:bulbs OR PlantType:herbs) AND NOT Maintenance:hard".
+    Set<Flower> query(String text);
+
+    // Search, and count the matching flowers per value of each of the given categories.
+    FacetedResult searchWithFacets(SearchQuery query, Collection<String> facetCategories);
+
+    // Get one page of results in a stable order; pass the previous page's cursor to continue.
+    ResultPage searchPage(SearchQuery query, ResultPage.Order order, String cursor, int pageSize);
+
+    // Walk the results of a query lazily, in a stable order.
+    Iterator<Flower> searchIterator(SearchQuery query, ResultPage.Order order);
+
 }
@@ -0,0 +1,70 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BitFeatureMatrixTest {
+    private static final double DELTA = 1e-9;
+
+    // 70 columns, so rows span two words
+    private static int[][] sample() {
+        int[][] dense = new int[3][70];
+        dense[0][0] = 1;
+        dense[0][5] = 1;
+        dense[0][64] = 1;
+        dense[1][5] = 1;
+        dense[1][64] = 1;
+        dense[1][69] = 1;
+        return dense; // row 2 is empty
+    }
+
+    @Test
+    public void testRoundTripsDenseForms() {
+        int[][] dense = sample();
+        BitFeatureMatrix packed = BitFeatureMatrix.fromIntMatrix(dense);
+        assertEquals(3, packed.rows());
+        assertEquals(70, packed.columns());
+        assertArrayEquals(dense, packed.toIntMatrix());
+        assertEquals(1.0, packed.toDoubleMatrix()[1][69], DELTA);
+        assertTrue(packed.get(0, 64));
+        assertFalse(packed.get(2, 64));
+        assertEquals(64, packed.nextSetBit(1, 6));
+        assertEquals(-1, packed.nextSetBit(2, 0));
+    }
+
+    @Test
+    public void testPopcountArithmetic() {
+        BitFeatureMatrix packed = BitFeatureMatrix.fromIntMatrix(sample());
+        assertEquals(3, packed.cardinality(0));
+        assertEquals(Math.sqrt(3), packed.norm(0), DELTA);
+        assertEquals(2, packed.dot(0, 1));
+        assertEquals(2.0 / 3, packed.cosine(0, 1), DELTA);
+        assertEquals(2.0 / 4, packed.jaccard(0, 1), DELTA);
+        assertEquals(0, packed.cosine(0, 2), DELTA);
+        assertEquals(0, packed.jaccard(2, 2), DELTA);
+    }
+
+    @Test
+    public void testCosineMatchesTheDenseCalculator() {
+        int[][] dense = sample();
+        BitFeatureMatrix packed = BitFeatureMatrix.fromIntMatrix(dense);
+        for (int a = 0; a < dense.length; a++) {
+            for (int b = 0; b < dense.length; b++) {
+                assertEquals(CosineSimilarityCalculator.cosineSimilarity(dense[a], dense[b]), packed.cosine(a, b), DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void testSetAndClear() {
+        BitFeatureMatrix packed = new BitFeatureMatrix(2, 10);
+        packed.set(1, 9);
+        assertTrue(packed.get(1, 9));
+        packed.clear(1, 9);
+        assertFalse(packed.get(1, 9));
+        assertEquals(16, packed.sizeInBytes());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testRejectsColumnsOutOfRange() {
+        new BitFeatureMatrix(1, 10).set(0, 10);
+    }
+}
@@ -0,0 +1,55 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ColorMatcherTest {
+
+    @Test
+    public void testMapsVariationsToStandardColors() {
+        assertEquals(Arrays.asList("red", "purple", "white", "gold"),
+                ColorMatcher.DEFAULT.extract("scarlet, lavender and cream, sometimes gold"));
+    }
+
+    @Test
+    public void testMatchesWholeWordsOnly() {
+        assertEquals(Collections.emptyList(), ColorMatcher.DEFAULT.extract("tangerine roses, redish"));
+        assertEquals(Collections.singletonList("brown"), ColorMatcher.DEFAULT.extract("tan"));
+    }
+
+    @Test
+    public void testIgnoresCaseAndPunctuation() {
+        assertEquals(Arrays.asList("blue", "pink", "yellow"),
+                ColorMatcher.DEFAULT.extract("BLUE/Pink;(yellow)."));
+    }
+
+    @Test
+    public void testMultiWordTermsPreferLongestMatch() {
+        assertEquals(Arrays.asList("blue", "pink"), ColorMatcher.DEFAULT.extract("Navy  -  Blue or hot pink"));
+        // "navy" on its own still maps to blue, and "blue" after a non-matching word is found
+        assertEquals(Arrays.asList("blue", "blue"), ColorMatcher.DEFAULT.extract("navy flowers, blue leaves"));
+    }
+
+    @Test
+    public void testDustyRoseStaysRed() {
+        // as with the old per-word extractor, "dusty" is ignored and "rose" is red
+        assertEquals(Collections.singletonList("red"), ColorMatcher.DEFAULT.extract("dusty rose"));
+    }
+
+    @Test
+    public void testCustomVocabulary() {
+        Map<String, String> vocabulary = new HashMap<>();
+        vocabulary.put("burnt sienna", "brown");
+        ColorMatcher matcher = new ColorMatcher(vocabulary);
+        assertEquals(Collections.singletonList("brown"), matcher.extract("a burnt sienna hue"));
+        assertEquals(Collections.emptyList(), matcher.extract("burnt toast"));
+    }
+
+    @Test
+    public void testDatabaseUsesMatcher() {
+        FlowerDatabase database = new FlowerDatabase();
+        assertEquals(Arrays.asList("white", "white", "yellow"), database.extractColors("white, cream and yellow."));
+    }
+}
@@ -0,0 +1,101 @@
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+
+public class ColumnarFlowerStoreTest {
+    private static final String TEST_CSV_PATH = "test/FlowerDatabase_test.csv";
+
+    private FlowerDatabase database;
+    private ColumnarFlowerStore store;
+
+    @Before
+    public void setUp() {
+        database = new FlowerDatabase();
+        database.loadFlowersFromCSV(TEST_CSV_PATH);
+        store = new ColumnarFlowerStore();
+        store.loadFlowersFromCSV(TEST_CSV_PATH);
+    }
+
+    @Test
+    public void testViewsMatchMapBasedFlowers() {
+        assertEquals(database.getFlowersMap().size(), store.size());
+        assertEquals(database.getFlowersMap().keySet(), store.getFlowersMap().keySet());
+        for (Flower expected : database.getFlowersMap().values()) {
+            Flower view = store.getFlower(expected.getPrimaryName());
+            assertEquals(expected.getAllDetails(), view.getAllDetails());
+        }
+    }
+
+    @Test
+    public void testLookupByAliasAndCase() {
+        assertTrue(store.hasFlower("BLUE star"));
+        assertSame(store.getFlower("Amsonia"), store.getFlower("Blue Star"));
+        assertNull(store.getFlower("Tulip"));
+        assertNull(store.getFlowersMap().get("blue star")); // the map is keyed by primary name only
+    }
+
+    @Test
+    public void testScansMatchFlowerAttributes() {
+        BitSet perennials = store.scanAttribute(AttributeCategory.PLANT_TYPE, "perennials");
+        BitSet zone7 = store.scanZone(7);
+        for (int ordinal = 0; ordinal < store.ordinalCount(); ordinal++) {
+            Flower flower = store.getFlower(ordinal);
+            assertEquals(flower.getPlantTypes().contains("perennials"), perennials.get(ordinal));
+            assertEquals(flower.getMinZone() <= 7 && 7 <= flower.getMaxZone(), zone7.get(ordinal));
+        }
+        assertTrue(store.scanAttribute(AttributeCategory.COLORS, "invisible").isEmpty());
+    }
+
+    @Test
+    public void testDeleteAndReplace() {
+        store.deleteFlower("Blue Star");
+        assertFalse(store.hasFlower("Amsonia"));
+        assertEquals(database.getFlowersMap().size() - 1, store.size());
+
+        Flower aster = store.getFlower("aster");
+        Flower replacement = new Flower("aster", Collections.singletonList("starwort"), "new", Arrays.asList("annuals"),
+                "pink", Arrays.asList("pink"), 2, 4, Arrays.asList("spring"), Arrays.asList("shade"), "low", "low");
+        store.addFlower("aster", replacement.getAlias(), replacement);
+        assertEquals(database.getFlowersMap().size() - 1, store.size());
+        assertNotSame(aster, store.getFlower("aster"));
+        assertEquals(Arrays.asList("annuals"), store.getFlower("starwort").getPlantTypes());
+        int replacementOrdinal = store.ordinalCount() - 1;
+        assertTrue(store.scanZone(3).get(replacementOrdinal));
+        assertFalse(store.scanZone(7).get(replacementOrdinal));
+    }
+
+    @Test
+    public void testSearchEngineFollowsStoreChanges() {
+        SearchEngine searchEngine = new SearchEngine(store);
+        Flower aster = store.getFlower("aster");
+        assertTrue(searchEngine.searchByZone(7).contains(aster));
+
+        store.deleteFlower("Blue Star");
+        assertNull(searchEngine.searchByName("Amsonia"));
+
+        Flower replacement = new Flower("aster", Collections.singletonList("starwort"), "new", Arrays.asList("annuals"),
+                "pink", Arrays.asList("pink"), 2, 4, Arrays.asList("spring"), Arrays.asList("shade"), "low", "low");
+        store.addFlower("aster", replacement.getAlias(), replacement);
+        assertSame(store.getFlower("aster"), searchEngine.searchByName("starwort"));
+        assertFalse(searchEngine.searchByZone(7).contains(aster));
+        assertTrue(searchEngine.searchByZone(3).contains(store.getFlower("aster")));
+        assertTrue(searchEngine.searchByCategory("SunNeeds", "shade").contains(store.getFlower("aster")));
+    }
+
+    @Test
+    public void testColumnsWidenWithTheDictionary() {
+        // push the plant type dictionary past one word per flower
+        for (int i = 0; i < 70; i++) {
+            String type = "synthetic type " + i;
+            Flower flower = new Flower("flower " + i, Collections.emptyList(), null, Arrays.asList(type),
+                    null, Collections.emptyList(), 1, 2, Collections.emptyList(), Collections.emptyList(), "low", "low");
+            store.addFlower("flower " + i, Collections.emptyList(), flower);
+        }
+        assertEquals(Arrays.asList("synthetic type 69"), store.getFlower("flower 69").getPlantTypes());
+        assertEquals(1, store.scanAttribute(AttributeCategory.PLANT_TYPE, "synthetic type 69").cardinality());
+        assertFalse(store.scanAttribute(AttributeCategory.PLANT_TYPE, "perennials").isEmpty());
+    }
+}
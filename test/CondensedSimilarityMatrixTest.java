@@ -0,0 +1,44 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CondensedSimilarityMatrixTest {
+
+    @Test
+    public void testIsSymmetricWithZeroDiagonal() {
+        CondensedSimilarityMatrix matrix = new CondensedSimilarityMatrix(4);
+        matrix.set(0, 1, 0.25f);
+        matrix.set(3, 2, 0.5f);
+        assertEquals(0.25f, matrix.get(1, 0), 0);
+        assertEquals(0.5f, matrix.get(2, 3), 0);
+        assertEquals(0f, matrix.get(2, 2), 0);
+        assertEquals(6 * 4, matrix.sizeInBytes());
+    }
+
+    @Test
+    public void testEveryPairHasItsOwnCell() {
+        int size = 7;
+        CondensedSimilarityMatrix matrix = new CondensedSimilarityMatrix(size);
+        for (int i = 0; i < size; i++) {
+            for (int j = i + 1; j < size; j++) {
+                matrix.set(i, j, i * size + j);
+            }
+        }
+        double[][] dense = matrix.toDenseMatrix();
+        for (int i = 0; i < size; i++) {
+            for (int j = i + 1; j < size; j++) {
+                assertEquals(i * size + j, dense[i][j], 0);
+                assertEquals(i * size + j, dense[j][i], 0);
+            }
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testRejectsRowsOutOfRange() {
+        new CondensedSimilarityMatrix(3).get(0, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsSizesBeyondOneArray() {
+        new CondensedSimilarityMatrix(100_000);
+    }
+}
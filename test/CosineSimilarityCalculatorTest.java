@@ -1,5 +1,6 @@
 import org.junit.Test;
 import java.util.List;
+import java.util.Random;
 import static org.junit.Assert.*;
 
 public class CosineSimilarityCalculatorTest {
@@ -63,6 +64,38 @@ public class CosineSimilarityCalculatorTest {
         assertNotNull("Similarity matrix should not be null", similarityMatrix);
         assertTrue("Similarity matrix should have at least one row", similarityMatrix.length > 0);
     }
+
+    @Test
+    public void testPackedSimilarityMatrixMatchesDense() {
+        int[][] matrix = {{1, 0, 1, 1}, {1, 1, 0, 0}, {0, 0, 0, 0}, {1, 0, 1, 1}};
+        double[][] dense = CosineSimilarityCalculator.calculateCosineSimilarityMatrix(matrix);
+        double[][] packed = CosineSimilarityCalculator.calculateCosineSimilarityMatrix(BitFeatureMatrix.fromIntMatrix(matrix));
+        for (int i = 0; i < matrix.length; i++) {
+            assertArrayEquals(dense[i], packed[i], 1e-9);
+        }
+    }
+
+    @Test
+    public void testCondensedMatrixMatchesTheReference() {
+        // more rows than one tile, and a zero row
+        Random random = new Random(7);
+        int[][] matrix = new int[150][40];
+        for (int i = 1; i < matrix.length; i++) {
+            for (int j = 0; j < matrix[i].length; j++) {
+                matrix[i][j] = random.nextInt(4) == 0 ? 1 : 0;
+            }
+        }
+        double[][] reference = CosineSimilarityCalculator.calculateCosineSimilarityMatrix(matrix);
+        CondensedSimilarityMatrix dense = CosineSimilarityCalculator.calculateCondensedCosineMatrix(matrix);
+        CondensedSimilarityMatrix packed = CosineSimilarityCalculator.calculateCondensedCosineMatrix(
+                BitFeatureMatrix.fromIntMatrix(matrix));
+        for (int i = 0; i < matrix.length; i++) {
+            for (int j = 0; j < matrix.length; j++) {
+                assertEquals(reference[i][j], dense.get(i, j), 1e-6);
+                assertEquals(reference[i][j], packed.get(i, j), 1e-6);
+            }
+        }
+    }
 }
 
 
@@ -0,0 +1,68 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.*;
+import java.util.stream.IntStream;
+
+public class ExactNearestNeighborsTest {
+
+    private static List<String> names(int count) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            names.add("flower " + i);
+        }
+        return names;
+    }
+
+    // every other row sorted by distance, ties by lower row
+    private static int[] sortedByDistance(ExactNearestNeighbors knn, int row, int k) {
+        return IntStream.range(0, knn.size()).filter(j -> j != row).boxed()
+                .sorted(Comparator.comparingDouble((Integer j) -> (float) knn.distance(row, j)).thenComparingInt(j -> j))
+                .limit(k).mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    public void testNearestPointsInOrder() {
+        double[][] points = {{0, 0}, {3, 0}, {1, 0}, {0, 2}, {-1, 0}};
+        ExactNearestNeighbors knn = new ExactNearestNeighbors(points, names(5));
+        // rows 2 and 4 are both at distance 1 from row 0: the lower row comes first
+        assertArrayEquals(new int[]{2, 4, 3}, knn.nearest(0, 3));
+        assertEquals(2.0, knn.distance(0, 3), 1e-12);
+        assertArrayEquals(new int[]{2, 0, 3, 4}, knn.nearest(1, 10));
+        assertEquals(Arrays.asList("flower 2", "flower 4"), knn.findKNearestNeighbors("flower 0", 2));
+        assertTrue(knn.findKNearestNeighbors("no such flower", 2).isEmpty());
+    }
+
+    @Test
+    public void testParallelChunksMatchSortedScan() {
+        Random random = new Random(8);
+        double[][] points = new double[10_000][2];
+        for (double[] point : points) {
+            point[0] = random.nextInt(500); // integer grid, so there are ties
+            point[1] = random.nextInt(500);
+        }
+        ExactNearestNeighbors knn = new ExactNearestNeighbors(points, names(points.length));
+        for (int row : new int[]{0, 4095, 4096, 9999}) {
+            assertArrayEquals("row " + row, sortedByDistance(knn, row, 20), knn.nearest(row, 20));
+        }
+    }
+
+    @Test
+    public void testNearestMatrixRowsByCosineDistance() {
+        FlowerDatabase database = new FlowerDatabase();
+        database.loadFlowersFromCSV("test/FlowerDatabase_test.csv");
+        FlowerMatrixBuilder builder = new FlowerMatrixBuilder(database);
+        BitFeatureMatrix matrix = builder.buildBitMatrix();
+        ExactNearestNeighbors knn = new ExactNearestNeighbors(matrix, builder.getFlowerNames());
+        for (int row = 0; row < matrix.rows(); row++) {
+            assertArrayEquals(sortedByDistance(knn, row, 5), knn.nearest(row, 5));
+            assertEquals(1 - matrix.cosine(row, (row + 1) % matrix.rows()), knn.distance(row, (row + 1) % matrix.rows()), 1e-12);
+        }
+        int aster = knn.rowOf("aster");
+        assertEquals(builder.getFlowerNames().get(knn.nearest(aster, 1)[0]), knn.findKNearestNeighbors("aster", 1).get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNamesMustMatchRows() {
+        new ExactNearestNeighbors(new double[3][2], names(2));
+    }
+}
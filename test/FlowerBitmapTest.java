@@ -0,0 +1,95 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.*;
+
+public class FlowerBitmapTest {
+
+    private static FlowerBitmap randomBitmap(Random random, BitSet reference, int count, int bound) {
+        FlowerBitmap bitmap = new FlowerBitmap();
+        for (int i = 0; i < count; i++) {
+            int ordinal = random.nextInt(bound);
+            bitmap.add(ordinal);
+            reference.set(ordinal);
+        }
+        return bitmap;
+    }
+
+    private static int[] toArray(BitSet reference) {
+        return reference.stream().toArray();
+    }
+
+    @Test
+    public void testAddRemoveContains() {
+        FlowerBitmap bitmap = FlowerBitmap.of(3, 70000, 5, 3);
+        assertEquals(3, bitmap.getCardinality());
+        assertTrue(bitmap.contains(70000));
+        assertFalse(bitmap.contains(4));
+
+        bitmap.remove(70000);
+        bitmap.remove(42);
+        assertArrayEquals(new int[]{3, 5}, bitmap.toArray());
+        bitmap.remove(3);
+        bitmap.remove(5);
+        assertTrue(bitmap.isEmpty());
+    }
+
+    @Test
+    public void testDenseChunkConvertsBackWhenShrinking() {
+        FlowerBitmap bitmap = FlowerBitmap.range(0, 10000);
+        assertEquals(10000, bitmap.getCardinality());
+        for (int i = 0; i < 10000; i += 2) {
+            bitmap.remove(i);
+        }
+        assertEquals(5000, bitmap.getCardinality());
+        assertEquals(1, bitmap.nextSetBit(0));
+        assertEquals(9999, bitmap.nextSetBit(9998));
+        assertEquals(-1, bitmap.nextSetBit(10000));
+    }
+
+    @Test
+    public void testOperationsMatchBitSet() {
+        Random random = new Random(7);
+        // sparse and dense chunks, spread over several high keys
+        int[][] shapes = {{50, 1000}, {3000, 5000}, {20000, 30000}, {40000, 200000}};
+        for (int[] left : shapes) {
+            for (int[] right : shapes) {
+                BitSet a = new BitSet();
+                BitSet b = new BitSet();
+                FlowerBitmap x = randomBitmap(random, a, left[0], left[1]);
+                FlowerBitmap y = randomBitmap(random, b, right[0], right[1]);
+
+                BitSet and = (BitSet) a.clone();
+                and.and(b);
+                BitSet or = (BitSet) a.clone();
+                or.or(b);
+                BitSet andNot = (BitSet) a.clone();
+                andNot.andNot(b);
+
+                assertArrayEquals(toArray(and), FlowerBitmap.and(x, y).toArray());
+                assertEquals(and.cardinality(), FlowerBitmap.andCardinality(x, y));
+                assertArrayEquals(toArray(or), FlowerBitmap.or(x, y).toArray());
+                assertArrayEquals(toArray(andNot), FlowerBitmap.andNot(x, y).toArray());
+                assertEquals(a.cardinality(), x.getCardinality());
+            }
+        }
+    }
+
+    @Test
+    public void testNextSetBitWalksAllChunks() {
+        FlowerBitmap bitmap = FlowerBitmap.of(1, 65535, 65536, 300000);
+        List<Integer> walked = new ArrayList<>();
+        for (int i = bitmap.nextSetBit(0); i >= 0; i = bitmap.nextSetBit(i + 1)) {
+            walked.add(i);
+        }
+        assertEquals(Arrays.asList(1, 65535, 65536, 300000), walked);
+    }
+
+    @Test
+    public void testCopyIsIndependent() {
+        FlowerBitmap bitmap = FlowerBitmap.range(0, 5000);
+        FlowerBitmap copy = bitmap.copy();
+        copy.remove(10);
+        assertTrue(bitmap.contains(10));
+        assertEquals(4999, copy.getCardinality());
+    }
+}
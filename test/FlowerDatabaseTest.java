@@ -70,4 +70,50 @@ public class FlowerDatabaseTest {
         database.deleteFlower("Anthurium");
         assertFalse(database.hasFlower("Flamingo Flower"));
     }
+
+    @Test
+    public void testParallelLoadMatchesSequentialLoad() {
+        FlowerDatabase parallel = new FlowerDatabase();
+        // tiny chunks so that most records, including the multi-line descriptions, sit on a chunk edge
+        IngestionReport report = parallel.loadFlowersFromCSVParallel(TEST_CSV_PATH, 4, 256);
+        assertNotNull(report);
+        assertTrue(report.getChunks() > 1);
+        assertEquals(database.getFlowersMap().size(), report.getRecords());
+        assertEquals(database.getFlowersMap().keySet(), parallel.getFlowersMap().keySet());
+
+        for (Flower expected : database.getFlowersMap().values()) {
+            Flower actual = parallel.getFlower(expected.getPrimaryName());
+            assertEquals(expected.getAllDetails(), actual.getAllDetails());
+        }
+        assertSame(parallel.getFlower("Amsonia"), parallel.getFlower("Blue Star"));
+    }
+
+    @Test
+    public void testParallelLoadScansAcrossMappingWindows() {
+        FlowerDatabase parallel = new FlowerDatabase();
+        // 100-byte scan windows: quoted multi-line records and chunk edges straddle the windows
+        IngestionReport report = parallel.loadFlowersFromCSVParallel(TEST_CSV_PATH, 2, 1000, 100);
+        assertNotNull(report);
+        assertTrue(report.getChunks() > 1);
+        assertEquals(database.getFlowersMap().keySet(), parallel.getFlowersMap().keySet());
+        for (Flower expected : database.getFlowersMap().values()) {
+            assertEquals(expected.getAllDetails(), parallel.getFlower(expected.getPrimaryName()).getAllDetails());
+        }
+    }
+
+    @Test
+    public void testOffHeapDescriptions() {
+        for (boolean compressed : new boolean[]{false, true}) {
+            FlowerDatabase offHeap = new FlowerDatabase();
+            offHeap.useOffHeapDescriptions(compressed);
+            offHeap.loadFlowersFromCSV(TEST_CSV_PATH);
+
+            DescriptionStore store = offHeap.getDescriptionStore();
+            assertTrue(store.getRawBytes() > 0);
+            assertEquals(compressed, store.getStoredBytes() < store.getRawBytes());
+            for (Flower expected : database.getFlowersMap().values()) {
+                assertEquals(expected.getDesc(), offHeap.getFlower(expected.getPrimaryName()).getDesc());
+            }
+        }
+    }
 }
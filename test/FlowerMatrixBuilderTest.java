@@ -2,6 +2,12 @@ import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
 public class FlowerMatrixBuilderTest {
 
     private FlowerDatabase flowerDatabase;
@@ -83,4 +89,175 @@ public class FlowerMatrixBuilderTest {
         assertTrue(matrix[2][38] == 0);
         assertTrue(matrix[2][39] == 1);
     }
+
+    @Test
+    public void testBitMatrixMatchesDenseMatrix() {
+        int[][] dense = new FlowerMatrixBuilder(flowerDatabase).buildMatrix();
+        BitFeatureMatrix packed = matrixBuilder.buildBitMatrix();
+        assertArrayEquals(dense, packed.toIntMatrix());
+        assertEquals(8L * dense.length * ((dense[0].length + 63) / 64), packed.sizeInBytes());
+    }
+
+    @Test
+    public void testFlowerNamesAreStableAcrossBuilds() {
+        matrixBuilder.buildMatrix();
+        List<String> names = new ArrayList<>(matrixBuilder.getFlowerNames());
+        matrixBuilder.buildBitMatrix();
+        assertEquals(names, matrixBuilder.getFlowerNames());
+        assertEquals(flowerDatabase.getFlowersMap().size(), names.size());
+        assertEquals(names.size(), new HashSet<>(names).size());
+    }
+
+    @Test
+    public void testRowsMatchEveryFlowersAttributes() {
+        BitFeatureMatrix matrix = matrixBuilder.buildBitMatrix();
+        List<String> attributes = matrixBuilder.getAttributes();
+        for (int row = 0; row < matrix.rows(); row++) {
+            Flower flower = flowerDatabase.getFlower(matrixBuilder.getFlowerNames().get(row));
+            for (int column = 0; column < attributes.size(); column++) {
+                String attribute = attributes.get(column);
+                boolean expected;
+                if (attribute.startsWith("Zone")) {
+                    int zone = Integer.parseInt(attribute.substring(4));
+                    expected = zone >= flower.getMinZone() && zone <= flower.getMaxZone();
+                } else {
+                    String[] parts = attribute.split(":");
+                    AttributeCategory category = AttributeCategory.fromKey(parts[0]);
+                    expected = flower.hasAttribute(category, AttributeDictionary.getInstance().idOf(category, parts[1]));
+                }
+                assertEquals(attribute + " of " + flower.getPrimaryName(), expected, matrix.get(row, column));
+            }
+        }
+        assertEquals(34, matrixBuilder.getColumn("SunNeeds:full sun"));
+        assertEquals(-1, matrixBuilder.getColumn("SunNeeds:moonlight"));
+    }
+
+    private static Flower flower(String name, String plantType, String color, int minZone, int maxZone) {
+        return new Flower(name, Collections.emptyList(), null, Arrays.asList(plantType),
+                color, Arrays.asList(color), minZone, maxZone, Arrays.asList("spring"),
+                Arrays.asList("shade"), "low", "low");
+    }
+
+    @Test
+    public void testAddedFlowerAppendsRowAndColumns() {
+        int rows = matrixBuilder.getRowCount();
+        List<String> attributesBefore = new ArrayList<>(matrixBuilder.getAttributes());
+        long version = matrixBuilder.getVersion();
+
+        Flower added = flower("moonflower", "vines", "silver", 3, 5);
+        flowerDatabase.addFlower("moonflower", Collections.emptyList(), added);
+
+        assertEquals(rows + 1, matrixBuilder.getRowCount());
+        assertEquals(rows, matrixBuilder.getRow(added));
+        List<String> attributes = matrixBuilder.getAttributes();
+        assertEquals(attributesBefore, attributes.subList(0, attributesBefore.size()));
+        assertEquals(attributesBefore.size() + 2, attributes.size());
+        int vines = matrixBuilder.getColumn("PlantType:vines");
+        int silver = matrixBuilder.getColumn("Colors:silver");
+        assertTrue(vines >= attributesBefore.size() && silver >= attributesBefore.size());
+        assertEquals(34, matrixBuilder.getColumn("SunNeeds:full sun"));
+
+        MatrixRowChanges changes = matrixBuilder.getChangesSince(version);
+        assertFalse(changes.isRebuildRequired());
+        assertArrayEquals(new int[]{rows}, changes.getRows());
+        assertEquals(matrixBuilder.getVersion(), changes.getToVersion());
+        assertTrue(matrixBuilder.getChangesSince(changes.getToVersion()).isEmpty());
+
+        BitFeatureMatrix matrix = matrixBuilder.buildBitMatrix();
+        assertEquals(attributes.size(), matrix.columns());
+        assertEquals("moonflower", matrixBuilder.getFlowerNames().get(rows));
+        assertArrayEquals(matrixBuilder.getRowFeatures(rows), matrix.columnsOf(rows));
+        assertTrue(matrix.get(rows, vines) && matrix.get(rows, silver) && matrix.get(rows, 2) && !matrix.get(rows, 5));
+    }
+
+    @Test
+    public void testDeletedFlowerLeavesTombstoneUntilCompaction() {
+        matrixBuilder.buildBitMatrix();
+        Flower aster = flowerDatabase.getFlower("aster");
+        int asterRow = matrixBuilder.getRow(aster);
+        int rows = matrixBuilder.getRowCount();
+        long version = matrixBuilder.getVersion();
+
+        flowerDatabase.deleteFlower("aster");
+        assertEquals(rows, matrixBuilder.getRowCount());
+        assertEquals(1, matrixBuilder.getTombstoneCount());
+        assertFalse(matrixBuilder.isLive(asterRow));
+        assertNull(matrixBuilder.getFlower(asterRow));
+        assertEquals(0, matrixBuilder.getRowFeatures(asterRow).length);
+        assertEquals(-1, matrixBuilder.getRow(aster));
+        assertArrayEquals(new int[]{asterRow}, matrixBuilder.getChangesSince(version).getRows());
+
+        // building skips the tombstone without renumbering, so consumers keep their rows
+        BitFeatureMatrix matrix = matrixBuilder.buildBitMatrix();
+        List<String> names = matrixBuilder.getFlowerNames();
+        int[] liveRows = matrixBuilder.getLiveRows();
+        assertEquals(rows - 1, matrix.rows());
+        assertEquals(rows - 1, names.size());
+        assertEquals(rows - 1, liveRows.length);
+        assertFalse(names.contains("aster"));
+        for (int i = 0; i < liveRows.length; i++) {
+            assertEquals(matrixBuilder.getFlower(liveRows[i]).getPrimaryName(), names.get(i));
+            assertArrayEquals(matrixBuilder.getRowFeatures(liveRows[i]), matrix.columnsOf(i));
+        }
+        assertEquals(rows, matrixBuilder.getRowCount());
+        assertEquals(1, matrixBuilder.getTombstoneCount());
+        assertFalse(matrixBuilder.getChangesSince(version).isRebuildRequired());
+
+        // compacting renumbers the rows, so earlier versions have to rebuild
+        matrixBuilder.compact();
+        assertEquals(rows - 1, matrixBuilder.getRowCount());
+        assertEquals(0, matrixBuilder.getTombstoneCount());
+        assertEquals(names, matrixBuilder.getFlowerNames());
+        MatrixRowChanges changes = matrixBuilder.getChangesSince(version);
+        assertTrue(changes.isRebuildRequired());
+        assertEquals(rows - 1, changes.getRows().length);
+        assertTrue(matrixBuilder.getChangesSince(matrixBuilder.getVersion()).isEmpty());
+    }
+
+    @Test
+    public void testReplacedFlowerKeepsItsRow() {
+        Flower aster = flowerDatabase.getFlower("aster");
+        int asterRow = matrixBuilder.getRow(aster);
+        long version = matrixBuilder.getVersion();
+        Flower replacement = flower("aster", "annuals", "pink", 2, 4);
+        flowerDatabase.addFlower("aster", Collections.emptyList(), replacement);
+
+        assertEquals(asterRow, matrixBuilder.getRow(replacement));
+        assertArrayEquals(new int[]{asterRow}, matrixBuilder.getChangesSince(version).getRows());
+        assertArrayEquals(matrixBuilder.getFeatures(replacement), matrixBuilder.getRowFeatures(asterRow));
+        assertTrue(matrixBuilder.buildBitMatrix().get(asterRow, matrixBuilder.getColumn("Colors:pink")));
+    }
+
+    @Test
+    public void testManyDeletionsCompactAutomatically() {
+        int rows = matrixBuilder.getRowCount();
+        for (int i = 0; i < 40; i++) {
+            flowerDatabase.addFlower("synthetic " + i, Collections.emptyList(), flower("synthetic " + i, "annuals", "red", 4, 6));
+        }
+        assertEquals(rows + 40, matrixBuilder.getRowCount());
+        flowerDatabase.batchUpdate(() -> {
+            for (int i = 0; i < 40; i++) {
+                flowerDatabase.deleteFlower("synthetic " + i);
+            }
+        });
+        assertEquals(rows, matrixBuilder.getRowCount());
+        assertEquals(0, matrixBuilder.getTombstoneCount());
+    }
+
+    @Test
+    public void testConsumerFollowsChangedRows() {
+        // a MinHashIndex keyed by row, kept in sync through getChangesSince
+        MinHashIndex index = new MinHashIndex(8, 2, 1);
+        long seen = index.update(matrixBuilder, -1);
+        assertEquals(matrixBuilder.getRowCount(), index.size());
+        flowerDatabase.deleteFlower("aster");
+        flowerDatabase.addFlower("moonflower", Collections.emptyList(), flower("moonflower", "vines", "silver", 3, 5));
+
+        assertEquals(2, matrixBuilder.getChangesSince(seen).getRows().length);
+        seen = index.update(matrixBuilder, seen);
+        assertEquals(matrixBuilder.getVersion(), seen);
+        int moonflower = matrixBuilder.getRow(flowerDatabase.getFlower("moonflower"));
+        assertEquals(matrixBuilder.getRowCount() - 1, index.size());
+        assertEquals(moonflower, index.query(matrixBuilder.getRowFeatures(moonflower), 1)[0]);
+    }
 }
@@ -0,0 +1,100 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class FlowerSnapshotTest {
+    private static final String TEST_CSV_PATH = "test/FlowerDatabase_test.csv";
+
+    private Path workDir;
+    private Path csv;
+    private Path snapshot;
+
+    @Before
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("flower-snapshot");
+        csv = workDir.resolve("flowers.csv");
+        snapshot = workDir.resolve("flowers.snapshot");
+        Files.copy(Paths.get(TEST_CSV_PATH), csv);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(csv);
+        Files.deleteIfExists(snapshot);
+        Files.deleteIfExists(workDir);
+    }
+
+    @Test
+    public void testSnapshotIsWrittenThenReused() {
+        FlowerDatabase first = new FlowerDatabase();
+        assertFalse("First load has to parse the CSV", first.loadFlowersWithSnapshot(csv.toString(), snapshot.toString()));
+        assertTrue(Files.exists(snapshot));
+
+        FlowerDatabase second = new FlowerDatabase();
+        assertTrue("Second load should come from the snapshot", second.loadFlowersWithSnapshot(csv.toString(), snapshot.toString()));
+        assertEquals(first.getFlowersMap().keySet(), second.getFlowersMap().keySet());
+        for (Flower expected : first.getFlowersMap().values()) {
+            assertEquals(expected.getAllDetails(), second.getFlower(expected.getPrimaryName()).getAllDetails());
+        }
+        assertSame(second.getFlower("Amsonia"), second.getFlower("Blue Star"));
+    }
+
+    @Test
+    public void testStaleSnapshotFallsBackToCSV() throws IOException {
+        new FlowerDatabase().loadFlowersWithSnapshot(csv.toString(), snapshot.toString());
+        Files.write(csv, Files.readAllLines(Paths.get(TEST_CSV_PATH)).subList(0, 3), StandardOpenOption.TRUNCATE_EXISTING);
+
+        FlowerDatabase reloaded = new FlowerDatabase();
+        assertFalse("A changed CSV must not be served from the old snapshot",
+                reloaded.loadFlowersWithSnapshot(csv.toString(), snapshot.toString()));
+        assertEquals(1, reloaded.getFlowersMap().size());
+        assertTrue(new FlowerDatabase().loadFlowersWithSnapshot(csv.toString(), snapshot.toString()));
+    }
+
+    @Test
+    public void testReadsCrossSegmentBoundaries() throws IOException {
+        FlowerDatabase parsed = new FlowerDatabase();
+        parsed.loadFlowersFromCSV(csv.toString());
+        FlowerSnapshot.write(snapshot, FlowerSnapshot.hashFile(csv), FlowerDatabase.PARSER_REVISION,
+                parsed.getFlowersMap().values());
+
+        // 64-byte mappings split offsets, numbers and strings between segments
+        FlowerSnapshot small = FlowerSnapshot.open(snapshot, 6);
+        assertEquals(parsed.getFlowersMap().size(), small.size());
+        for (int i = 0; i < small.size(); i++) {
+            Flower flower = small.getFlower(i);
+            Flower expected = parsed.getFlower(flower.getPrimaryName());
+            assertEquals(expected.getAllDetails(), flower.getAllDetails());
+            assertEquals(expected.getMaxSoilPh(), flower.getMaxSoilPh(), 0);
+        }
+    }
+
+    @Test
+    public void testSnapshotOfAnotherParserRevisionIsNotReused() throws IOException {
+        FlowerDatabase parsed = new FlowerDatabase();
+        parsed.loadFlowersFromCSV(csv.toString());
+        byte[] csvHash = FlowerSnapshot.hashFile(csv);
+        FlowerSnapshot.write(snapshot, csvHash, FlowerDatabase.PARSER_REVISION - 1, parsed.getFlowersMap().values());
+        assertFalse(FlowerSnapshot.open(snapshot).matches(csvHash, FlowerDatabase.PARSER_REVISION));
+
+        FlowerDatabase reloaded = new FlowerDatabase();
+        assertFalse("A snapshot of an older parser must be rebuilt",
+                reloaded.loadFlowersWithSnapshot(csv.toString(), snapshot.toString()));
+        assertTrue(FlowerSnapshot.open(snapshot).matches(csvHash, FlowerDatabase.PARSER_REVISION));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotFlowersAreReadOnly() {
+        new FlowerDatabase().loadFlowersWithSnapshot(csv.toString(), snapshot.toString());
+        FlowerDatabase database = new FlowerDatabase();
+        database.loadFlowersWithSnapshot(csv.toString(), snapshot.toString());
+        database.getFlower("Amsonia").setMaintenance("hard");
+    }
+}
@@ -64,4 +64,26 @@ public class FlowerTest {
         assertEquals("average", flower.getWaterNeeds());
         assertEquals("medium", flower.getMaintenance());
     }
+
+    @Test
+    public void testAttributesShareDictionaryIds() {
+        Flower first = new Flower("Aster", null, null, Arrays.asList("perennials"), "blue",
+                Arrays.asList("blue", "purple"), 3, 8, Arrays.asList("autumn"),
+                Arrays.asList("full sun"), "average", "low");
+        Flower second = new Flower("Salvia", null, null, Arrays.asList("perennials", "shrubs"), "purple",
+                Arrays.asList("purple"), 5, 10, Arrays.asList("summer"),
+                Arrays.asList("full sun", "partial sun"), "low", "low");
+
+        AttributeDictionary dictionary = AttributeDictionary.getInstance();
+        int perennials = dictionary.idOf(AttributeCategory.PLANT_TYPE, "perennials");
+        int purple = dictionary.idOf(AttributeCategory.COLORS, "purple");
+        assertTrue(first.hasAttribute(AttributeCategory.PLANT_TYPE, perennials));
+        assertTrue(second.hasAttribute(AttributeCategory.PLANT_TYPE, perennials));
+        assertTrue(second.hasAttribute(AttributeCategory.COLORS, purple));
+        assertFalse(first.hasAttribute(AttributeCategory.PLANT_TYPE, dictionary.idOf(AttributeCategory.PLANT_TYPE, "shrubs")));
+        assertFalse(first.hasAttribute(AttributeCategory.COLORS, -1));
+        assertEquals(first.getAttributeIds(AttributeCategory.MAINTENANCE)[0], second.getAttributeIds(AttributeCategory.MAINTENANCE)[0]);
+        assertSame(first.getMaintenance(), second.getMaintenance());
+        assertEquals(Arrays.asList("blue", "purple"), first.getColorList());
+    }
 }
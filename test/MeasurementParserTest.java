@@ -0,0 +1,45 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MeasurementParserTest {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void testParsesMetricHeightRanges() {
+        assertArrayEquals(new double[]{30, 90},
+                MeasurementParser.parseHeightCm("This plant usually grows between 30 and 90 cm (1 to 3 ft) in height."), DELTA);
+        assertArrayEquals(new double[]{30, 90}, MeasurementParser.parseHeightCm("30 to 90 cm"), DELTA);
+        assertArrayEquals(new double[]{50, 150},
+                MeasurementParser.parseHeightCm("The plant can grow from 50 cm to 1,5 metres (2 to 5 ft) in height."), DELTA);
+        assertArrayEquals(new double[]{60, 60}, MeasurementParser.parseHeightCm("Leucojum grows up to 60 cm (2 ft) high."), DELTA);
+    }
+
+    @Test
+    public void testIgnoresBlossomSizes() {
+        assertArrayEquals(new double[]{30, 90}, MeasurementParser.parseHeightCm("Amaryllis has stem that can reach 30 - 90 cm "
+                + "(1-3 ft) in height and each flower is 6-11 cm (2-4 inches) in diameter."), DELTA);
+    }
+
+    @Test
+    public void testOnlyTheWordsAroundAFigureMarkItAsAWidth() {
+        assertArrayEquals(new double[]{60, 60}, MeasurementParser.parseHeightCm("grows 60 cm tall and 30 cm wide"), DELTA);
+        assertArrayEquals(new double[]{90, 90},
+                MeasurementParser.parseHeightCm("It grows to 90 cm, about 45 cm across."), DELTA);
+        assertArrayEquals(new double[]{120, 120}, MeasurementParser.parseHeightCm("Height 1.2 m, spread 50 cm"), DELTA);
+    }
+
+    @Test
+    public void testParsesSoilPh() {
+        assertArrayEquals(new double[]{5.5, 7.0},
+                MeasurementParser.parseSoilPh("Achillea will grow best in well drained soil, with a pH between 5.5 and 7.0."), DELTA);
+        assertArrayEquals(new double[]{6.0, 7.0},
+                MeasurementParser.parseSoilPh("Average soil with a pH value between 6.0 to 7.0."), DELTA);
+    }
+
+    @Test
+    public void testTextWithoutFiguresGivesNull() {
+        assertNull(MeasurementParser.parseHeightCm("Grows to about 3 ft."));
+        assertNull(MeasurementParser.parseSoilPh("Crocosmia likes soil of any pH. It grows in 2 weeks."));
+        assertNull(MeasurementParser.parseSoilPh(null));
+    }
+}
@@ -0,0 +1,182 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.*;
+
+public class MinHashIndexTest {
+
+    private static int[] randomSet(Random random, int universe, int size) {
+        Set<Integer> set = new TreeSet<>();
+        while (set.size() < size) {
+            set.add(random.nextInt(universe));
+        }
+        return set.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // a copy of base with one feature swapped for one outside the universe of the random sets
+    private static int[] mutate(int[] base, int replacement) {
+        int[] copy = base.clone();
+        copy[0] = replacement;
+        return copy;
+    }
+
+    @Test
+    public void testJaccard() {
+        assertEquals(2.0 / 5, MinHashIndex.jaccard(new int[]{1, 2, 3}, new int[]{2, 3, 4, 5}), 1e-9);
+        assertEquals(1.0, MinHashIndex.jaccard(new int[]{7}, new int[]{7}), 1e-9);
+        assertEquals(0.0, MinHashIndex.jaccard(new int[0], new int[0]), 1e-9);
+    }
+
+    @Test
+    public void testSignatureAgreementEstimatesJaccard() {
+        MinHashIndex index = new MinHashIndex(50, 10, 1);
+        int[] a = new int[60];
+        int[] b = new int[60];
+        for (int i = 0; i < 60; i++) {
+            a[i] = i;
+            b[i] = i + 20; // 40 shared of 80, Jaccard 0.5
+        }
+        int[] signatureA = index.signature(a);
+        int[] signatureB = index.signature(b);
+        int agree = 0;
+        for (int i = 0; i < signatureA.length; i++) {
+            if (signatureA[i] == signatureB[i]) {
+                agree++;
+            }
+        }
+        assertEquals(0.5, (double) agree / signatureA.length, 0.08);
+    }
+
+    @Test
+    public void testFindsNearDuplicatesAmongRandomSets() {
+        Random random = new Random(3);
+        MinHashIndex index = new MinHashIndex(16, 4, 42);
+        int[] base = randomSet(random, 1000, 20);
+        for (int id = 0; id < 2000; id++) {
+            index.add(id, randomSet(random, 1000, 20));
+        }
+        index.add(5000, mutate(base, 2000));
+        index.add(5001, base);
+
+        int[] result = index.query(base, 2);
+        assertArrayEquals(new int[]{5001, 5000}, result);
+        assertTrue(index.candidates(base).length < 200);
+        assertArrayEquals(new int[]{5000}, index.similarTo(5001, 1));
+    }
+
+    @Test
+    public void testIncrementalAddAndRemove() {
+        MinHashIndex index = new MinHashIndex(8, 2, 7);
+        int[] set = {1, 2, 3, 4, 5};
+        index.add(1, set);
+        index.add(2, set);
+        index.add(3, new int[]{5, 4, 3, 2, 1, 1}); // same set, unsorted with a duplicate
+        assertEquals(3, index.size());
+        assertArrayEquals(new int[]{1, 2, 3}, index.query(set, 10));
+
+        assertTrue(index.remove(2));
+        assertFalse(index.remove(2));
+        assertFalse(index.contains(2));
+        assertArrayEquals(new int[]{1, 3}, index.query(set, 10));
+
+        // re-adding an id moves it to its new buckets, freed slots are reused
+        index.add(1, new int[]{100, 101, 102});
+        index.add(4, set);
+        assertArrayEquals(new int[]{3, 4}, index.query(set, 10));
+        assertArrayEquals(new int[]{1}, index.query(new int[]{100, 101, 102}, 10));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void testManyRemovalsKeepBucketsConsistent() {
+        Random random = new Random(5);
+        MinHashIndex index = new MinHashIndex(4, 3, 9);
+        Map<Integer, int[]> live = new HashMap<>();
+        for (int round = 0; round < 5000; round++) {
+            int id = random.nextInt(300);
+            if (random.nextBoolean()) {
+                int[] set = randomSet(random, 30, 4);
+                index.add(id, set);
+                live.put(id, set);
+            } else {
+                assertEquals(live.remove(id) != null, index.remove(id));
+            }
+        }
+        assertEquals(live.size(), index.size());
+        for (Map.Entry<Integer, int[]> entry : live.entrySet()) {
+            // an identical set always shares every bucket, so every flower finds itself
+            int[] candidates = index.candidates(entry.getValue());
+            assertTrue(Arrays.stream(candidates).anyMatch(c -> c == entry.getKey()));
+            assertTrue(Arrays.stream(candidates).allMatch(live::containsKey));
+        }
+    }
+
+    @Test
+    public void testFlowerFeaturesMatchMatrixRows() {
+        FlowerDatabase database = new FlowerDatabase();
+        database.loadFlowersFromCSV("test/FlowerDatabase_test.csv");
+        FlowerMatrixBuilder builder = new FlowerMatrixBuilder(database);
+        BitFeatureMatrix matrix = builder.buildBitMatrix();
+        List<Flower> flowers = new ArrayList<>(database.getFlowersMap().values()); // matrix row order
+        MinHashIndex index = new MinHashIndex(10, 3, 1);
+        for (int row = 0; row < flowers.size(); row++) {
+            assertArrayEquals(matrix.columnsOf(row), builder.getFeatures(flowers.get(row)));
+            index.add(row, builder.getFeatures(flowers.get(row)));
+        }
+        for (int row = 0; row < flowers.size(); row++) {
+            int[] similar = index.similarTo(row, 3);
+            for (int i = 1; i < similar.length; i++) {
+                assertTrue(matrix.jaccard(row, similar[i - 1]) >= matrix.jaccard(row, similar[i]));
+            }
+        }
+    }
+
+    @Test
+    public void testUpdateRebuildsAfterCompaction() {
+        FlowerDatabase database = new FlowerDatabase();
+        database.loadFlowersFromCSV("test/FlowerDatabase_test.csv");
+        FlowerMatrixBuilder builder = new FlowerMatrixBuilder(database);
+        List<Flower> flowers = new ArrayList<>(database.getFlowersMap().values());
+        for (int i = 0; i < 40; i++) {
+            Flower copy = flowers.get(i % flowers.size());
+            database.addFlower("copy " + i, Collections.emptyList(), new Flower("copy " + i, Collections.emptyList(),
+                    null, copy.getPlantTypes(), copy.getColors(), copy.getColorList(), copy.getMinZone(),
+                    copy.getMaxZone(), copy.getBloomsSeasons(), copy.getSunNeeds(), copy.getWaterNeeds(),
+                    copy.getMaintenance()));
+        }
+        MinHashIndex index = new MinHashIndex(8, 2, 1);
+        long seen = index.update(builder, -1);
+
+        // deleting the copies compacts the builder, which renumbers every row
+        database.batchUpdate(() -> {
+            for (int i = 0; i < 40; i++) {
+                database.deleteFlower("copy " + i);
+            }
+        });
+        assertTrue(builder.getChangesSince(seen).isRebuildRequired());
+        index.update(builder, seen);
+        assertEquals(builder.getRowCount(), index.size());
+        for (int row = 0; row < builder.getRowCount(); row++) {
+            int[] features = builder.getRowFeatures(row);
+            assertEquals(1.0, MinHashIndex.jaccard(features, builder.getRowFeatures(index.query(features, 1)[0])), 0);
+        }
+        assertFalse(index.contains(builder.getRowCount()));
+    }
+
+    @Test
+    public void testIdsNeedNotBeDense() {
+        MinHashIndex index = new MinHashIndex(4, 2, 3);
+        int[] ids = {-7, 0, Integer.MAX_VALUE, Integer.MIN_VALUE, 1 << 20};
+        for (int id : ids) {
+            index.add(id, new int[]{id & 15, 100});
+        }
+        for (int id : ids) {
+            assertTrue(index.contains(id));
+        }
+        assertTrue(index.remove(Integer.MAX_VALUE));
+        assertFalse(index.contains(Integer.MAX_VALUE));
+        assertEquals(ids.length - 1, index.size());
+        index.clear();
+        assertEquals(0, index.size());
+        assertEquals(0, index.query(new int[]{100}, 5).length);
+    }
+}
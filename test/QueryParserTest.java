@@ -0,0 +1,52 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class QueryParserTest {
+
+    @Test
+    public void testPrecedenceAndFlattening() {
+        assertEquals("(PlantType:bulbs OR (PlantType:perennials AND SunNeeds:\"full sun\"))",
+                QueryParser.parse("PlantType:bulbs OR PlantType:perennials AND SunNeeds:full sun").toString());
+        assertEquals("(a AND b AND c AND d)", QueryParser.parse("a AND (b AND c) AND d").toString());
+        assertEquals("((a OR b) AND NOT c)", QueryParser.parse("(a or b) and not c").toString());
+        assertEquals("a", QueryParser.parse("NOT NOT a").toString());
+    }
+
+    @Test
+    public void testValuesAndZones() {
+        QueryNode term = QueryParser.parse("PlantType: \"Cactus - Succulents\"");
+        assertTrue(term instanceof QueryNode.Term);
+        assertEquals("PlantType", ((QueryNode.Term) term).getCategory());
+        assertEquals("cactus - succulents", ((QueryNode.Term) term).getValue());
+
+        assertEquals("(Zone:5-7 AND ZoneAll:3 AND \"partial sun\")",
+                QueryParser.parse("zone:5-7 AND ZoneAll:3 AND partial sun").toString());
+    }
+
+    @Test
+    public void testSyntaxErrors() {
+        String[] invalid = {"", "(a OR b", "a OR", "Zone:7-5", "Zone:x", "PlantType:\"bulbs", "a b:c", "NOT",
+                "Colour:blue", "bulbs OR (NOT Colour:blue)"};
+        for (String query : invalid) {
+            try {
+                QueryParser.parse(query);
+                fail("Expected a syntax error for: " + query);
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("position"));
+            }
+        }
+    }
+
+    @Test
+    public void testParsesMeasureRanges() {
+        QueryNode query = QueryParser.parse("Color:blue AND Height:0-60 AND SoilPh: 5.5 - 7");
+        assertEquals("(Color:blue AND Height:0-60 AND SoilPh:5.5-7)", query.toString());
+        RangeFilter height = ((QueryNode.NumericRange) ((QueryNode.And) query).getOperands().get(1)).getFilter();
+        assertEquals(RangeFilter.Match.WITHIN, height.getMatch());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsEmptyMeasureRange() {
+        QueryParser.parse("Height:60-0");
+    }
+}
@@ -0,0 +1,67 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.*;
+
+public class QueryResultCacheTest {
+
+    private static SearchQuery query(String... keyValues) {
+        Map<String, String> criteria = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            criteria.put(keyValues[i], keyValues[i + 1]);
+        }
+        return new SearchQuery(criteria);
+    }
+
+    @Test
+    public void testKeyIgnoresCriteriaOrderAndValueCase() {
+        SearchQuery first = query("SunNeeds", "Full Sun", "PlantType", "perennials");
+        SearchQuery second = query("PlantType", "Perennials", "SunNeeds", "full sun");
+        assertEquals(first.getNormalizedKey(), second.getNormalizedKey());
+        assertEquals(first.getNormalizedKey(), query("sunneeds", "full sun", "planttype", "perennials").getNormalizedKey());
+        assertNotEquals(first.getNormalizedKey(), new SearchQuery(5, first.getCriteria()).getNormalizedKey());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAliasesOfOneCategoryAreRejected() {
+        query("Colors", "blue", "Color", "red");
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        QueryResultCache<FlowerBitmap> cache = new QueryResultCache<>(2, 0);
+        cache.put(query("PlantType", "bulbs"), FlowerBitmap.of(1));
+        cache.put(query("PlantType", "herbs"), FlowerBitmap.of(2));
+        assertNotNull(cache.get(query("PlantType", "bulbs"))); // herbs is now the eldest
+        cache.put(query("PlantType", "trees"), FlowerBitmap.of(3));
+
+        assertNull(cache.get(query("PlantType", "herbs")));
+        assertNotNull(cache.get(query("PlantType", "bulbs")));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testEntriesExpireAfterTtl() {
+        long[] now = {0};
+        QueryResultCache<FlowerBitmap> cache = new QueryResultCache<>(10, 5, () -> now[0]);
+        cache.put(query("PlantType", "bulbs"), FlowerBitmap.of(1));
+        now[0] = 4_000_000L;
+        assertNotNull(cache.get(query("PlantType", "bulbs")));
+        now[0] = 5_000_000L;
+        assertNull(cache.get(query("PlantType", "bulbs")));
+        assertEquals(1, cache.getExpirations());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidateIf() {
+        QueryResultCache<FlowerBitmap> cache = new QueryResultCache<>(10, 0);
+        cache.put(query("PlantType", "bulbs"), FlowerBitmap.of(1));
+        cache.put(query("SunNeeds", "shade"), FlowerBitmap.of(2));
+        cache.invalidateIf(q -> q.getCriteria().containsKey("SunNeeds"));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getInvalidations());
+        assertNotNull(cache.get(query("PlantType", "bulbs")));
+    }
+}
@@ -1,7 +1,11 @@
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 public class SearchEngineTest {
     private FlowerDatabase database;
@@ -44,6 +48,41 @@ public class SearchEngineTest {
         assertTrue(searchEngine.searchByZone(100).isEmpty());
     }
 
+    @Test
+    public void testSearchByZoneMatchesHardinessRanges() {
+        for (int zone = 0; zone <= 14; zone++) {
+            List<Flower> expected = new ArrayList<>();
+            for (Flower flower : database.getFlowersMap().values()) {
+                if (flower.getMinZone() <= zone && zone <= flower.getMaxZone()) {
+                    expected.add(flower);
+                }
+            }
+            assertEquals("zone " + zone, expected, searchEngine.searchByZone(zone));
+        }
+    }
+
+    @Test
+    public void testSearchByZoneRange() {
+        Set<Flower> anywhere = new HashSet<>(searchEngine.searchByZoneRange(5, 7, false));
+        Set<Flower> everywhere = new HashSet<>(searchEngine.searchByZoneRange(5, 7, true));
+
+        Set<Flower> union = new HashSet<>();
+        Set<Flower> intersection = new HashSet<>(searchEngine.searchByZone(5));
+        for (int zone = 5; zone <= 7; zone++) {
+            union.addAll(searchEngine.searchByZone(zone));
+            intersection.retainAll(searchEngine.searchByZone(zone));
+        }
+        assertEquals(union, anywhere);
+        assertEquals(intersection, everywhere);
+        assertFalse(everywhere.isEmpty());
+        assertTrue(searchEngine.searchByZoneRange(50, 60, false).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSearchByZoneRangeRejectsEmptyRange() {
+        searchEngine.searchByZoneRange(7, 5, false);
+    }
+
     @Test
     public void testSearchByCategory() {
         assertFalse(searchEngine.searchByCategory("SunNeeds", "Full sun").isEmpty());
@@ -65,6 +104,573 @@ public class SearchEngineTest {
         assertTrue("Search by multiple categories should return empty for conflicting criteria", results.isEmpty());
     }
 
+    @Test
+    public void testMultipleCategoriesMatchesFiltering() {
+        Map<String, String> criteria = new HashMap<>();
+        criteria.put("SunNeeds", "Full sun");
+        criteria.put("PlantType", "perennials");
+        criteria.put("Maintenance", "low");
+
+        Set<Flower> expected = new HashSet<>();
+        for (Flower flower : database.getFlowersMap().values()) {
+            if (flower.getSunNeeds().contains("full sun") && flower.getPlantTypes().contains("perennials")
+                    && "low".equals(flower.getMaintenance())) {
+                expected.add(flower);
+            }
+        }
+        Set<Flower> results = searchEngine.searchByMultipleCategories(criteria);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, new HashSet<>(results));
+        assertEquals(expected.size(), results.size());
+        for (Flower flower : expected) {
+            assertTrue(results.contains(flower));
+        }
+    }
+
+    @Test
+    public void testPlannerAppliesMostSelectiveFilterFirst() {
+        Map<String, String> criteria = new LinkedHashMap<>();
+        criteria.put("SunNeeds", "Full sun");
+        criteria.put("PlantType", "bulbs");
+        criteria.put("WaterNeeds", "low");
+
+        QueryPlan plan = searchEngine.explain(new SearchQuery(criteria));
+        List<QueryPlan.Step> steps = plan.getSteps();
+        assertEquals(3, steps.size());
+        for (int i = 1; i < steps.size(); i++) {
+            assertTrue(steps.get(i - 1).getEstimatedCardinality() <= steps.get(i).getEstimatedCardinality());
+        }
+        int smallest = Integer.MAX_VALUE;
+        for (Map.Entry<String, String> criterion : criteria.entrySet()) {
+            smallest = Math.min(smallest, searchEngine.searchByCategory(criterion.getKey(), criterion.getValue()).size());
+        }
+        assertEquals(smallest, steps.get(0).getEstimatedCardinality());
+        assertEquals(searchEngine.searchByMultipleCategories(criteria).size(), plan.getResultCardinality());
+    }
+
+    @Test
+    public void testPlannerStopsOnEmptyResult() {
+        Map<String, String> criteria = new LinkedHashMap<>();
+        criteria.put("SunNeeds", "Full sun");
+        criteria.put("Color", "Invisible");
+
+        QueryPlan plan = searchEngine.explain(new SearchQuery(criteria));
+        assertEquals("Color:invisible", plan.getSteps().get(0).getFilter());
+        assertEquals(0, plan.getSteps().get(0).getActualCardinality());
+        assertEquals(QueryPlan.NOT_EXECUTED, plan.getSteps().get(1).getActualCardinality());
+        assertEquals(0, plan.getResultCardinality());
+    }
+
+    @Test
+    public void testSearchCombinesZoneAndCategories() {
+        Map<String, String> criteria = new HashMap<>();
+        criteria.put("SunNeeds", "full sun");
+        Set<Flower> results = searchEngine.search(new SearchQuery(7, criteria));
+
+        Set<Flower> expected = new HashSet<>(searchEngine.searchByZone(7));
+        expected.retainAll(searchEngine.searchByCategory("SunNeeds", "full sun"));
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, new HashSet<>(results));
+
+        QueryPlan plan = searchEngine.explain(new SearchQuery(7, criteria));
+        assertEquals(2, plan.getSteps().size());
+        assertEquals(expected.size(), plan.getResultCardinality());
+        for (QueryPlan.Step step : plan.getSteps()) {
+            assertTrue(step.getEstimatedCardinality() >= step.getActualCardinality());
+        }
+    }
+
+    private static Flower newFlower(String name, String plantType, int minZone, int maxZone, String sunNeeds) {
+        return new Flower(name, Collections.singletonList(name + " alias"), "desc", Arrays.asList(plantType),
+                "red", Arrays.asList("red"), minZone, maxZone, Arrays.asList("summer"),
+                Arrays.asList(sunNeeds), "low", "low");
+    }
+
+    // the incrementally maintained engine must answer like one built from scratch
+    private void assertMatchesRebuiltEngine() {
+        SearchEngine rebuilt = new SearchEngine(database);
+        for (int zone = 0; zone <= 13; zone++) {
+            assertEquals(new HashSet<>(rebuilt.searchByZone(zone)), new HashSet<>(searchEngine.searchByZone(zone)));
+        }
+        String[][] postings = {{"PlantType", "perennials"}, {"PlantType", "cactus"}, {"SunNeeds", "full sun"},
+                {"SunNeeds", "shade"}, {"WaterNeeds", "low"}, {"Maintenance", "low"}, {"BloomSeasons", "summer"}};
+        for (String[] posting : postings) {
+            assertEquals(rebuilt.searchByCategory(posting[0], posting[1]),
+                    searchEngine.searchByCategory(posting[0], posting[1]));
+        }
+        for (Flower flower : database.getFlowersMap().values()) {
+            assertSame(flower, searchEngine.searchByName(flower.getPrimaryName()));
+        }
+        rebuilt.detach();
+    }
+
+    @Test
+    public void testIndexesFollowDatabaseChanges() {
+        Flower cactus = newFlower("saguaro", "cactus", 9, 11, "full sun");
+        database.addFlower("saguaro", cactus.getAlias(), cactus);
+        assertSame(cactus, searchEngine.searchByName("Saguaro Alias"));
+        assertTrue(searchEngine.searchByCategory("PlantType", "cactus").contains(cactus));
+        assertTrue(searchEngine.searchByZone(10).contains(cactus));
+
+        database.deleteFlower("Blue Star");
+        assertNull(searchEngine.searchByName("Amsonia"));
+        assertNull(searchEngine.searchByName("Blue Star"));
+
+        Flower aster = searchEngine.searchByName("aster");
+        Flower replacement = newFlower("aster", "annuals", 1, 2, "shade");
+        database.addFlower("aster", replacement.getAlias(), replacement);
+        assertSame(replacement, searchEngine.searchByName("aster"));
+        assertFalse(searchEngine.searchByZone(7).contains(aster));
+        assertTrue(searchEngine.searchByCategory("SunNeeds", "shade").contains(replacement));
+
+        assertMatchesRebuiltEngine();
+    }
+
+    @Test
+    public void testBatchUpdateIsAppliedOnce() {
+        List<Integer> batchSizes = new ArrayList<>();
+        database.addListener(changes -> batchSizes.add(changes.size()));
+        database.batchUpdate(() -> {
+            for (int i = 0; i < 10; i++) {
+                Flower flower = newFlower("hybrid " + i, "perennials", 4, 6, "partial sun");
+                database.addFlower(flower.getPrimaryName(), flower.getAlias(), flower);
+            }
+            database.deleteFlower("hybrid 3");
+            database.deleteFlower("aster");
+        });
+        assertEquals(Collections.singletonList(12), batchSizes);
+        assertNull(searchEngine.searchByName("hybrid 3"));
+        assertNotNull(searchEngine.searchByName("hybrid 4"));
+        assertMatchesRebuiltEngine();
+    }
+
+    @Test
+    public void testRepeatedQueriesAreServedFromCache() {
+        Map<String, String> criteria = new LinkedHashMap<>();
+        criteria.put("SunNeeds", "Full sun");
+        criteria.put("WaterNeeds", "low");
+        Map<String, String> reordered = new LinkedHashMap<>();
+        reordered.put("WaterNeeds", "LOW");
+        reordered.put("SunNeeds", "full sun");
+
+        QueryResultCache<?> cache = searchEngine.getResultCache();
+        Set<Flower> first = searchEngine.searchByMultipleCategories(criteria);
+        Set<Flower> second = searchEngine.searchByMultipleCategories(reordered);
+        assertEquals(first, second);
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testCacheIsInvalidatedOnlyByMatchingFlowers() {
+        Map<String, String> criteria = new HashMap<>();
+        criteria.put("PlantType", "cactus");
+        Set<Flower> before = searchEngine.searchByMultipleCategories(criteria);
+        searchEngine.searchByZone(12);
+        QueryResultCache<?> cache = searchEngine.getResultCache();
+        assertEquals(2, cache.size());
+
+        // matches neither query: both entries survive
+        Flower shrub = newFlower("boxwood", "shrubs", 5, 8, "shade");
+        database.addFlower("boxwood", shrub.getAlias(), shrub);
+        assertEquals(2, cache.size());
+        assertEquals(0, cache.getInvalidations());
+
+        // matches the cactus query only
+        Flower cactus = newFlower("saguaro", "cactus", 9, 11, "full sun");
+        database.addFlower("saguaro", cactus.getAlias(), cactus);
+        assertEquals(1, cache.getInvalidations());
+        Set<Flower> after = searchEngine.searchByMultipleCategories(criteria);
+        assertEquals(before.size() + 1, after.size());
+        assertTrue(after.contains(cactus));
+
+        database.deleteFlower("saguaro");
+        assertFalse(searchEngine.searchByMultipleCategories(criteria).contains(cactus));
+    }
+
+    @Test
+    public void testFlowerChangedInPlaceIsReindexed() {
+        Flower aster = database.getFlower("aster");
+        assertTrue(searchEngine.searchByCategory("WaterNeeds", "avarage").contains(aster));
+        assertTrue(searchEngine.searchByZone(3).contains(aster));
+
+        // the only update path: change the flower itself, then add it again
+        aster.setWaterNeeds("low");
+        aster.setMinZone(12);
+        aster.setMaxZone(13);
+        aster.setAlias(Collections.singletonList("sea star"));
+        database.addFlower("aster", aster.getAlias(), aster);
+
+        assertFalse(searchEngine.searchByCategory("WaterNeeds", "avarage").contains(aster));
+        assertTrue(searchEngine.searchByCategory("WaterNeeds", "low").contains(aster));
+        assertFalse(searchEngine.searchByZone(3).contains(aster));
+        assertTrue(searchEngine.searchByZone(12).contains(aster));
+        assertNull(searchEngine.searchByName("starwort"));
+        assertSame(aster, searchEngine.searchByName("sea star"));
+        assertMatchesRebuiltEngine();
+    }
+
+    @Test
+    public void testCacheIsInvalidatedByTheOldFieldsOfAChangedFlower() {
+        Flower aster = database.getFlower("aster");
+        SearchQuery avarage = new SearchQuery(Collections.singletonMap("WaterNeeds", "avarage"));
+        assertTrue(searchEngine.search(avarage).contains(aster));
+        assertTrue(searchEngine.searchByZone(3).contains(aster));
+
+        // the changed flower matches neither query any more, only what it was indexed under does
+        aster.setWaterNeeds("low");
+        aster.setMinZone(12);
+        aster.setMaxZone(13);
+        database.addFlower("aster", aster.getAlias(), aster);
+
+        assertEquals(2, searchEngine.getResultCache().getInvalidations());
+        assertFalse(searchEngine.search(avarage).contains(aster));
+        assertFalse(searchEngine.searchByZone(3).contains(aster));
+    }
+
+    @Test
+    public void testBulkChangesClearTheCache() {
+        for (int zone = 1; zone <= 13; zone++) {
+            searchEngine.searchByZone(zone);
+        }
+        QueryResultCache<?> cache = searchEngine.getResultCache();
+        assertEquals(13, cache.size());
+        int shrubs = searchEngine.searchByCategory("PlantType", "shrubs").size();
+        database.batchUpdate(() -> {
+            for (int i = 0; i < 40_000; i++) {
+                Flower flower = newFlower("bulk " + i, "shrubs", 5, 6, "shade");
+                database.addFlower(flower.getPrimaryName(), flower.getAlias(), flower);
+            }
+        });
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getInvalidations()); // cleared, not matched query by query
+        assertEquals(shrubs + 40_000, searchEngine.searchByCategory("PlantType", "shrubs").size());
+        assertTrue(searchEngine.searchByZone(5).contains(database.getFlower("bulk 0")));
+    }
+
+    @Test
+    public void testCacheCanBeTurnedOff() {
+        SearchEngine uncached = new SearchEngine(database, 0, 0);
+        assertNull(uncached.getResultCache());
+        assertEquals(searchEngine.searchByZone(5), uncached.searchByZone(5));
+        uncached.detach();
+    }
+
+    @Test
+    public void testDetachedEngineStopsFollowingDatabase() {
+        SearchEngine detached = new SearchEngine(database);
+        detached.detach();
+        Flower cactus = newFlower("saguaro", "cactus", 9, 11, "full sun");
+        database.addFlower("saguaro", cactus.getAlias(), cactus);
+        assertSame(cactus, searchEngine.searchByName("saguaro"));
+        assertNull(detached.searchByName("saguaro"));
+    }
+
+    @Test
+    public void testBooleanQueryMatchesSetAlgebra() {
+        Set<Flower> expected = new HashSet<>(searchEngine.searchByCategory("PlantType", "bulbs"));
+        expected.addAll(searchEngine.searchByCategory("PlantType", "perennials"));
+        expected.retainAll(searchEngine.searchByZoneRange(5, 7, false));
+        expected.removeAll(searchEngine.searchByCategory("Maintenance", "hard"));
+        assertFalse(expected.isEmpty());
+
+        Set<Flower> results = searchEngine.query(
+                "(PlantType:bulbs OR plantType:Perennials) AND Zone:5-7 AND NOT Maintenance:hard");
+        assertEquals(expected, new HashSet<>(results));
+        assertEquals(expected.size(), results.size());
+    }
+
+    @Test
+    public void testBooleanQueryNegationAndBareValues() {
+        Set<Flower> notLow = searchEngine.query("NOT WaterNeeds:low");
+        assertEquals(database.getFlowersMap().size() - searchEngine.searchByCategory("WaterNeeds", "low").size(),
+                notLow.size());
+
+        // "shade" only appears under SunNeeds
+        assertEquals(searchEngine.searchByCategory("SunNeeds", "shade"), searchEngine.query("shade"));
+        assertTrue(searchEngine.query("Color:invisible OR PlantType:nothing").isEmpty());
+    }
+
+    @Test
+    public void testCompiledQueriesAreCachedByText() {
+        String text = "SunNeeds:full sun AND NOT PlantType:annuals";
+        assertSame(searchEngine.compile(text), searchEngine.compile(text));
+
+        // a compiled query still sees later changes to the catalog
+        int before = searchEngine.query(text).size();
+        Flower cactus = newFlower("saguaro", "cactus", 9, 11, "full sun");
+        database.addFlower("saguaro", cactus.getAlias(), cactus);
+        assertEquals(before + 1, searchEngine.query(text).size());
+    }
+
+    @Test
+    public void testFacetCountsMatchPerValueQueries() {
+        Map<String, String> criteria = new HashMap<>();
+        criteria.put("PlantType", "perennials");
+        FacetedResult result = searchEngine.searchWithFacets(new SearchQuery(criteria),
+                Arrays.asList("SunNeeds", "BloomSeasons", "Color"));
+        assertEquals(searchEngine.searchByCategory("PlantType", "perennials"), result.getFlowers());
+
+        Map<String, Integer> sunCounts = result.getCounts("SunNeeds");
+        assertFalse(sunCounts.isEmpty());
+        int previous = Integer.MAX_VALUE;
+        for (Map.Entry<String, Integer> count : sunCounts.entrySet()) {
+            Map<String, String> refined = new HashMap<>(criteria);
+            refined.put("SunNeeds", count.getKey());
+            assertEquals(count.getKey(), searchEngine.searchByMultipleCategories(refined).size(), (int) count.getValue());
+            assertTrue(count.getValue() <= previous);
+            previous = count.getValue();
+        }
+        assertTrue(result.getCounts("BloomSeasons").containsKey("summer"));
+        for (Map.Entry<String, Integer> count : result.getCounts("Color").entrySet()) {
+            Map<String, String> refined = new HashMap<>(criteria);
+            refined.put("Color", count.getKey());
+            assertEquals(searchEngine.searchByMultipleCategories(refined).size(), (int) count.getValue());
+        }
+        assertFalse(result.getCounts("Color").isEmpty());
+        assertTrue(result.getCounts("Maintenance").isEmpty());
+    }
+
+    @Test
+    public void testFacetsOfBooleanQuery() {
+        FacetedResult result = searchEngine.searchWithFacets("Zone:7 AND NOT PlantType:annuals",
+                Collections.singletonList("WaterNeeds"));
+        int total = 0;
+        for (int count : result.getCounts("WaterNeeds").values()) {
+            total += count;
+        }
+        // every flower has exactly one water need
+        assertEquals(result.getFlowers().size(), total);
+    }
+
+    @Test
+    public void testPagesCoverResultsInOrder() {
+        Map<String, String> criteria = new HashMap<>();
+        criteria.put("SunNeeds", "full sun");
+        SearchQuery query = new SearchQuery(criteria);
+        Set<Flower> all = searchEngine.search(query);
+
+        for (ResultPage.Order order : ResultPage.Order.values()) {
+            List<Flower> walked = new ArrayList<>();
+            String cursor = null;
+            do {
+                ResultPage page = searchEngine.searchPage(query, order, cursor, 4);
+                assertTrue(page.getFlowers().size() <= 4);
+                assertEquals(all.size(), page.getTotalMatches());
+                walked.addAll(page.getFlowers());
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+            assertEquals(all.size(), walked.size());
+            assertEquals(all, new HashSet<>(walked));
+
+            List<Flower> iterated = new ArrayList<>();
+            searchEngine.searchIterator(query, order).forEachRemaining(iterated::add);
+            assertEquals(walked, iterated);
+        }
+
+        List<Flower> byName = new ArrayList<>();
+        searchEngine.searchIterator(query, ResultPage.Order.PRIMARY_NAME).forEachRemaining(byName::add);
+        for (int i = 1; i < byName.size(); i++) {
+            assertTrue(byName.get(i - 1).getPrimaryName().compareTo(byName.get(i).getPrimaryName()) <= 0);
+        }
+    }
+
+    @Test
+    public void testCursorSurvivesCatalogChanges() {
+        SearchQuery query = new SearchQuery(5, Collections.emptyMap());
+        ResultPage first = searchEngine.searchPage(query, ResultPage.Order.PRIMARY_NAME, null, 3);
+        Flower last = first.getFlowers().get(2);
+        database.deleteFlower(last.getPrimaryName());
+        database.deleteFlower(first.getFlowers().get(0).getPrimaryName());
+
+        ResultPage second = searchEngine.searchPage(query, ResultPage.Order.PRIMARY_NAME, first.getNextCursor(), 3);
+        for (Flower flower : second.getFlowers()) {
+            assertFalse(first.getFlowers().contains(flower));
+            assertTrue(flower.getPrimaryName().compareTo(last.getPrimaryName()) > 0);
+        }
+    }
+
+    @Test
+    public void testBareValueEstimateSumsPostings() {
+        QueryNode bare = QueryParser.parse("low");
+        int sum = searchEngine.searchByCategory("WaterNeeds", "low").size()
+                + searchEngine.searchByCategory("Maintenance", "low").size();
+        assertEquals(sum, bare.estimate(searchEngine));
+        assertTrue(bare.estimate(searchEngine) >= searchEngine.query("low").size());
+        assertEquals(searchEngine.searchByCategory("WaterNeeds", "low").size(),
+                QueryParser.parse("WaterNeeds:low").estimate(searchEngine));
+        assertEquals(0, QueryParser.parse("WaterNeeds:none").estimate(searchEngine));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCursorOfAnotherOrderIsRejected() {
+        SearchQuery query = new SearchQuery(5, Collections.emptyMap());
+        ResultPage first = searchEngine.searchPage(query, ResultPage.Order.ORDINAL, null, 3);
+        searchEngine.searchPage(query, ResultPage.Order.PRIMARY_NAME, first.getNextCursor(), 3);
+    }
+
+    @Test
+    public void testResultsAreReadOnly() {
+        List<Flower> zone = searchEngine.searchByZone(5);
+        Set<Flower> category = searchEngine.searchByCategory("SunNeeds", "full sun");
+        try {
+            zone.remove(0);
+            fail("searchByZone results must be read-only");
+        } catch (UnsupportedOperationException expected) {
+            // expected
+        }
+        try {
+            category.clear();
+            fail("searchByCategory results must be read-only");
+        } catch (UnsupportedOperationException expected) {
+            // expected
+        }
+        assertEquals(zone.size(), zone.stream().count());
+        assertSame(zone.get(zone.size() - 1), new ArrayList<>(zone).get(zone.size() - 1));
+    }
 
     // Add more tests for edge cases and complex scenarios
+
+    @Test
+    public void testCategoryAliasesAndCaseResolveToTheSamePosting() {
+        Set<Flower> canonical = searchEngine.searchByCategory(AttributeCategory.BLOOMS_SEASONS, "summer");
+        assertFalse(canonical.isEmpty());
+        assertSame(canonical, searchEngine.searchByCategory("BloomSeasons", "SUMMER"));
+        assertSame(canonical, searchEngine.searchByCategory("bloomsseasons", "Summer"));
+    }
+
+    @Test
+    public void testSteadyStateLookupsDoNotAllocate() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        Map<String, String> criteria = new HashMap<>();
+        criteria.put("SunNeeds", "full sun");
+        SearchQuery query = new SearchQuery(criteria);
+        int sizes = 0;
+        for (int i = 0; i < 20_000; i++) { // warm up so the JIT has compiled the lookup paths
+            sizes += lookups(query);
+        }
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 10_000; i++) {
+            sizes += lookups(query);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertTrue(sizes > 0);
+        assertTrue("steady-state lookups allocated " + allocated + " bytes", allocated < 4096);
+
+        // builds a SearchQuery per call, but must not grow with the catalog or the result
+        for (int i = 0; i < 20_000; i++) {
+            sizes += searchEngine.searchByMultipleCategories(criteria).size();
+        }
+        before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 10_000; i++) {
+            sizes += searchEngine.searchByMultipleCategories(criteria).size();
+        }
+        long perCall = (threads.getThreadAllocatedBytes(thread) - before) / 10_000;
+        assertTrue("searchByMultipleCategories allocated " + perCall + " bytes per call", perCall < 2048);
+    }
+
+    private int lookups(SearchQuery query) {
+        return searchEngine.searchByCategory("sunneeds", "FULL SUN").size()
+                + searchEngine.searchByCategory(AttributeCategory.WATER_NEEDS, "avarage").size()
+                + searchEngine.search(query).size()
+                + searchEngine.searchByZone(5).size()
+                + searchEngine.searchByZoneRange(4, 6, true).size();
+    }
+
+    @Test
+    public void testSearchBatchMatchesSingleSearchesInInputOrder() {
+        SearchEngine uncached = new SearchEngine(database, 0, 0);
+        Map<String, String> sun = new HashMap<>();
+        sun.put("SunNeeds", "full sun");
+        Map<String, String> sunAndWater = new HashMap<>(sun);
+        sunAndWater.put("WaterNeeds", "avarage");
+        Map<String, String> sunWaterAndPerennials = new HashMap<>(sunAndWater);
+        sunWaterAndPerennials.put("plantType", "Perennials");
+        List<SearchQuery> queries = Arrays.asList(
+                new SearchQuery(sunAndWater),
+                new SearchQuery(7, Collections.emptyMap()),
+                new SearchQuery(sunWaterAndPerennials),
+                new SearchQuery(sunAndWater), // duplicate
+                new SearchQuery(7, sun),
+                new SearchQuery(Collections.singletonMap("Color", "invisible")),
+                new SearchQuery(Collections.emptyMap()));
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            List<Set<Flower>> results = uncached.searchBatch(queries, pool);
+            assertEquals(queries.size(), results.size());
+            for (int i = 0; i < queries.size(); i++) {
+                assertEquals(uncached.search(queries.get(i)), results.get(i));
+            }
+            assertFalse(results.get(2).isEmpty());
+            assertTrue(results.get(5).isEmpty());
+            assertTrue(results.get(6).isEmpty());
+        } finally {
+            pool.shutdown();
+            uncached.detach();
+        }
+    }
+
+    @Test
+    public void testSearchBatchUsesAndFillsTheResultCache() {
+        Map<String, String> criteria = new HashMap<>();
+        criteria.put("SunNeeds", "full sun");
+        SearchQuery query = new SearchQuery(criteria);
+        Set<Flower> first = searchEngine.searchBatch(Arrays.asList(query, query)).get(0);
+        assertEquals(1, searchEngine.getResultCache().getMisses());
+        assertSame(first, searchEngine.search(query));
+        assertEquals(1, searchEngine.getResultCache().getHits());
+    }
+
+    @Test
+    public void testSearchByColor() {
+        Set<Flower> blue = searchEngine.searchByCategory("Color", "blue");
+        assertFalse(blue.isEmpty());
+        for (Flower flower : database.getFlowersMap().values()) {
+            assertEquals(flower.getColorList().contains("blue"), blue.contains(flower));
+        }
+    }
+
+    @Test
+    public void testColorHeightAndSoilPhAreAnsweredFromTheIndexes() {
+        SearchQuery query = new SearchQuery(Collections.singletonMap("Color", "blue"))
+                .withRange(new RangeFilter(RangeFilter.Measure.HEIGHT_CM, 0, 60, RangeFilter.Match.WITHIN))
+                .withRange(new RangeFilter(RangeFilter.Measure.SOIL_PH, 6, 7, RangeFilter.Match.OVERLAPS));
+        Set<Flower> expected = new HashSet<>();
+        for (Flower flower : database.getFlowersMap().values()) {
+            if (flower.getColorList().contains("blue") && flower.getMaxHeightCm() <= 60
+                    && flower.getMinSoilPh() <= 7 && flower.getMaxSoilPh() >= 6) {
+                expected.add(flower);
+            }
+        }
+        assertTrue(expected.contains(database.getFlower("Ageratum")));
+        assertEquals(expected, searchEngine.search(query));
+        assertEquals(expected, searchEngine.query("Color:blue AND Height:0-60 AND SoilPh:6-7"));
+        assertEquals(3, searchEngine.explain(query).getSteps().size());
+    }
+
+    @Test
+    public void testRangeIndexFollowsDatabaseChanges() {
+        SearchQuery query = new SearchQuery(Collections.emptyMap())
+                .withRange(new RangeFilter(RangeFilter.Measure.HEIGHT_CM, 0, 25, RangeFilter.Match.WITHIN));
+        int before = searchEngine.search(query).size();
+
+        Flower dwarf = new Flower("dwarf test flower", new ArrayList<>(), "", Collections.singletonList("annuals"), "",
+                Collections.emptyList(), 5, 7, Collections.singletonList("summer"), Collections.singletonList("full sun"),
+                "low", "low");
+        dwarf.setHeightCm(5, 10);
+        database.addFlower("dwarf test flower", new ArrayList<>(), dwarf);
+        assertEquals(before + 1, searchEngine.search(query).size());
+
+        database.deleteFlower("dwarf test flower");
+        assertEquals(before, searchEngine.search(query).size());
+    }
 }
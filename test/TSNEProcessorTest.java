@@ -3,6 +3,10 @@ import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
 
@@ -52,4 +56,122 @@ public class TSNEProcessorTest {
                     Double.isFinite(result[0]) && Double.isFinite(result[1]));
         }
     }
+
+    @Test
+    public void testAcceptsPackedMatrix() {
+        FlowerMatrixBuilder flowerMatrixBuilder = new FlowerMatrixBuilder(flowerDatabase);
+        BitFeatureMatrix flowerMatrix = flowerMatrixBuilder.buildBitMatrix();
+        TSNEProcessor packed = new TSNEProcessor(flowerMatrix, flowerMatrixBuilder.getFlowerNames());
+        assertEquals(flowerMatrix.rows(), packed.getTsneResults().length);
+        assertEquals(2, packed.getTsneResults()[0].length);
+    }
+
+    @Test
+    public void testEmbeddingIsCachedThenReused() throws Exception {
+        Path workDir = Files.createTempDirectory("tsne-cache");
+        Path cache = workDir.resolve("flowers.tsne");
+        try {
+            FlowerMatrixBuilder flowerMatrixBuilder = new FlowerMatrixBuilder(flowerDatabase);
+            BitFeatureMatrix flowerMatrix = flowerMatrixBuilder.buildBitMatrix();
+            List<String> flowerNames = flowerMatrixBuilder.getFlowerNames();
+
+            TSNEProcessor first = TSNEProcessor.loadOrRun(flowerMatrix, flowerNames, cache.toString());
+            assertFalse(first.isLoadedFromCache());
+            assertTrue(Files.exists(cache));
+
+            TSNEProcessor second = TSNEProcessor.loadOrRun(flowerMatrix, flowerNames, cache.toString());
+            assertTrue(second.isLoadedFromCache());
+            assertArrayEquals(first.getTsneResults(), second.getTsneResults());
+            assertArrayEquals(first.getMinTsneValues(), second.getMinTsneValues(), 0);
+            assertArrayEquals(first.getMaxTsneValues(), second.getMaxTsneValues(), 0);
+
+            // a different matrix misses the cache and replaces it
+            flowerDatabase.deleteFlower("aster");
+            BitFeatureMatrix smaller = flowerMatrixBuilder.buildBitMatrix();
+            List<String> smallerNames = flowerMatrixBuilder.getFlowerNames();
+            assertFalse(Arrays.equals(TSNEProcessor.cacheKey(flowerMatrix), TSNEProcessor.cacheKey(smaller)));
+            TSNEProcessor third = TSNEProcessor.loadOrRun(smaller, smallerNames, cache.toString());
+            assertFalse(third.isLoadedFromCache());
+            assertEquals(smaller.rows(), third.getTsneResults().length);
+            assertTrue(TSNEProcessor.loadOrRun(smaller, smallerNames, cache.toString()).isLoadedFromCache());
+        } finally {
+            Files.deleteIfExists(cache);
+            Files.deleteIfExists(workDir);
+        }
+    }
+
+    @Test
+    public void testCorruptCacheIsRecomputed() throws Exception {
+        Path workDir = Files.createTempDirectory("tsne-cache");
+        Path cache = workDir.resolve("flowers.tsne");
+        try {
+            FlowerMatrixBuilder flowerMatrixBuilder = new FlowerMatrixBuilder(flowerDatabase);
+            BitFeatureMatrix flowerMatrix = flowerMatrixBuilder.buildBitMatrix();
+            List<String> flowerNames = flowerMatrixBuilder.getFlowerNames();
+            TSNEProcessor.loadOrRun(flowerMatrix, flowerNames, cache.toString());
+            byte[] bytes = Files.readAllBytes(cache);
+            Files.write(cache, Arrays.copyOf(bytes, bytes.length / 2));
+
+            assertFalse(TSNEProcessor.loadOrRun(flowerMatrix, flowerNames, cache.toString()).isLoadedFromCache());
+            assertTrue(TSNEProcessor.loadOrRun(flowerMatrix, flowerNames, cache.toString()).isLoadedFromCache());
+        } finally {
+            Files.deleteIfExists(cache);
+            Files.deleteIfExists(workDir);
+        }
+    }
+
+    @Test
+    public void testCacheFileRoundTrip() throws Exception {
+        Path file = Files.createTempFile("embedding", ".tsne");
+        try {
+            byte[] key = new byte[32];
+            key[0] = 7;
+            double[][] points = {{1.5, 2.5}, {0, 100}};
+            List<String> names = Arrays.asList("aster", "cosmos \u00e9");
+            TSNEEmbeddingCache.write(file, key, points, new double[]{0, 0}, new double[]{100, 100}, names);
+
+            TSNEEmbeddingCache cache = TSNEEmbeddingCache.read(file);
+            assertTrue(cache.matches(key, names));
+            assertFalse(cache.matches(new byte[32], names));
+            assertFalse(cache.matches(key, Arrays.asList("cosmos \u00e9", "aster")));
+            assertArrayEquals(points, cache.getCoordinates());
+            assertArrayEquals(new double[]{100, 100}, cache.getMaxValues(), 0);
+            assertEquals(names, cache.getFlowerNames());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testCacheWithImpossibleCountsIsRejected() throws Exception {
+        Path file = Files.createTempFile("embedding", ".tsne");
+        try {
+            List<String> names = Arrays.asList("aster", "cosmos");
+            TSNEEmbeddingCache.write(file, new byte[32], new double[][]{{1, 2}, {3, 4}}, new double[]{1, 2},
+                    new double[]{3, 4}, names);
+            byte[] bytes = Files.readAllBytes(file);
+            int counts = 4 + 4 + 32;
+
+            ByteBuffer.wrap(bytes).putInt(counts, Integer.MAX_VALUE).putInt(counts + 4, Integer.MAX_VALUE);
+            Files.write(file, bytes);
+            assertUnreadable(file);
+
+            bytes = Files.readAllBytes(file);
+            ByteBuffer.wrap(bytes).putInt(counts, 2).putInt(counts + 4, 2)
+                    .putInt(counts + 8 + 8 * Double.BYTES, Integer.MAX_VALUE);
+            Files.write(file, bytes);
+            assertUnreadable(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void assertUnreadable(Path file) {
+        try {
+            TSNEEmbeddingCache.read(file);
+            fail("expected an IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Corrupt t-SNE embedding cache"));
+        }
+    }
 }
@@ -0,0 +1,57 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.*;
+
+public class TopKSimilarityTest {
+
+    // the k best by brute force over the full matrix, strongest first and ties by lower id
+    private static List<Integer> bruteForce(BitFeatureMatrix matrix, int row, int k) {
+        List<Integer> others = new ArrayList<>();
+        for (int j = 0; j < matrix.rows(); j++) {
+            if (j != row) {
+                others.add(j);
+            }
+        }
+        others.sort(Comparator.comparingDouble((Integer j) -> -(float) matrix.cosine(row, j)).thenComparingInt(j -> j));
+        return others.subList(0, Math.min(k, others.size()));
+    }
+
+    @Test
+    public void testMatchesBruteForceAcrossBlocks() {
+        Random random = new Random(11);
+        int[][] dense = new int[200][30];
+        for (int i = 1; i < dense.length; i++) { // row 0 stays empty
+            for (int j = 0; j < dense[i].length; j++) {
+                dense[i][j] = random.nextInt(3) == 0 ? 1 : 0;
+            }
+        }
+        BitFeatureMatrix matrix = BitFeatureMatrix.fromIntMatrix(dense);
+        NeighborLists neighbors = TopKSimilarity.build(matrix, 10);
+        assertEquals(200, neighbors.size());
+        for (int row = 0; row < matrix.rows(); row++) {
+            List<Integer> expected = bruteForce(matrix, row, 10);
+            assertEquals(10, neighbors.count(row));
+            for (int rank = 0; rank < expected.size(); rank++) {
+                assertEquals("row " + row + " rank " + rank, (int) expected.get(rank), neighbors.neighbor(row, rank));
+                assertEquals(matrix.cosine(row, expected.get(rank)), neighbors.score(row, rank), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void testFlowerNeighborsWithKLargerThanTheCatalog() {
+        FlowerDatabase database = new FlowerDatabase();
+        database.loadFlowersFromCSV("test/FlowerDatabase_test.csv");
+        FlowerMatrixBuilder builder = new FlowerMatrixBuilder(database);
+        BitFeatureMatrix matrix = builder.buildBitMatrix();
+        NeighborLists neighbors = TopKSimilarity.build(matrix, 50);
+        for (int row = 0; row < matrix.rows(); row++) {
+            assertEquals(matrix.rows() - 1, neighbors.count(row));
+            assertEquals(bruteForce(matrix, row, 50).get(0).intValue(), neighbors.neighbor(row, 0));
+            for (int rank = 1; rank < neighbors.count(row); rank++) {
+                assertTrue(neighbors.score(row, rank) <= neighbors.score(row, rank - 1));
+            }
+        }
+        assertEquals(0, TopKSimilarity.build(matrix, 0).count(0));
+    }
+}